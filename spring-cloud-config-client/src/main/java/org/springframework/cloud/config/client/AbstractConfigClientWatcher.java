@@ -0,0 +1,104 @@
+/*
+ * Copyright 2013-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.config.client;
+
+import java.util.Collections;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.cloud.config.environment.Environment;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.util.StringUtils;
+import org.springframework.web.client.RestTemplate;
+
+import static org.springframework.cloud.config.client.ConfigClientProperties.TOKEN_HEADER;
+
+/**
+ * Base class for {@link ConfigClientWatcher watchers} talking HTTP to the config server
+ * with the same settings and credentials as the requests fetching the configuration.
+ */
+public abstract class AbstractConfigClientWatcher implements ConfigClientWatcher {
+
+	protected final Log log = LogFactory.getLog(getClass());
+
+	private final ConfigClientProperties properties;
+
+	private final ConfigClientRequestTemplateFactory requestTemplateFactory;
+
+	private final RestTemplate restTemplate;
+
+	protected AbstractConfigClientWatcher(ConfigClientProperties properties) {
+		this.properties = properties;
+		this.requestTemplateFactory = new ConfigClientRequestTemplateFactory(this.log, properties);
+		this.restTemplate = this.requestTemplateFactory.create();
+	}
+
+	protected AbstractConfigClientWatcher(ConfigClientProperties properties, RestTemplate restTemplate) {
+		this.properties = properties;
+		this.requestTemplateFactory = new ConfigClientRequestTemplateFactory(this.log, properties);
+		this.restTemplate = restTemplate;
+	}
+
+	protected ConfigClientProperties getProperties() {
+		return this.properties;
+	}
+
+	protected RestTemplate getRestTemplate() {
+		return this.restTemplate;
+	}
+
+	/**
+	 * The first of the configured labels, as it appears in a URL.
+	 * @return the label or null if the server should use its default label
+	 */
+	protected String getLabel() {
+		String label = this.properties.getLabel();
+		if (!StringUtils.hasText(label)) {
+			return null;
+		}
+		return Environment.denormalize(StringUtils.commaDelimitedListToStringArray(label)[0].trim());
+	}
+
+	/**
+	 * The path of the application's environment, relative to the server URI.
+	 * @return the path
+	 */
+	protected String getEnvironmentPath() {
+		String path = "/" + this.properties.getName() + "/" + this.properties.getProfile();
+		String label = getLabel();
+		return label != null ? path + "/" + label : path;
+	}
+
+	protected String getBaseUri(ConfigClientProperties.Credentials credentials) {
+		String uri = credentials.getUri();
+		return uri.endsWith("/") ? uri.substring(0, uri.length() - 1) : uri;
+	}
+
+	protected HttpHeaders createHeaders(ConfigClientProperties.Credentials credentials, MediaType accept) {
+		HttpHeaders headers = new HttpHeaders();
+		headers.setAccept(Collections.singletonList(accept));
+		this.requestTemplateFactory.addAuthorizationToken(headers, credentials.getUsername(),
+				credentials.getPassword());
+		if (StringUtils.hasText(this.properties.getToken())) {
+			headers.add(TOKEN_HEADER, this.properties.getToken());
+		}
+		return headers;
+	}
+
+}
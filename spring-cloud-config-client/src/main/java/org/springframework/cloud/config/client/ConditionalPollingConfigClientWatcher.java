@@ -0,0 +1,77 @@
+/*
+ * Copyright 2013-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.config.client;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.springframework.cloud.config.environment.Environment;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Fetches the environment at a jittered interval with the ETag of the previous response,
+ * so the server only sends it again when its version changed. Suitable for servers
+ * without a watch endpoint, but only detects changes of backends that report versions.
+ */
+public class ConditionalPollingConfigClientWatcher extends AbstractConfigClientWatcher {
+
+	private final Map<String, String> etags = new ConcurrentHashMap<>();
+
+	private final long interval;
+
+	public ConditionalPollingConfigClientWatcher(ConfigClientProperties properties, long interval) {
+		super(properties);
+		this.interval = interval;
+	}
+
+	public ConditionalPollingConfigClientWatcher(ConfigClientProperties properties, RestTemplate restTemplate,
+			long interval) {
+		super(properties, restTemplate);
+		this.interval = interval;
+	}
+
+	@Override
+	public String awaitChange(ConfigClientProperties.Credentials credentials, String version)
+			throws InterruptedException {
+		// spread the requests of many clients started at the same time
+		Thread.sleep((long) (this.interval * (0.75 + ThreadLocalRandom.current().nextDouble(0.5))));
+		String uri = getBaseUri(credentials);
+		HttpHeaders headers = createHeaders(credentials, MediaType.APPLICATION_JSON);
+		String etag = this.etags.get(uri);
+		if (etag != null) {
+			headers.setIfNoneMatch(etag);
+		}
+		ResponseEntity<Environment> response = getRestTemplate().exchange(uri + getEnvironmentPath(), HttpMethod.GET,
+				new HttpEntity<Void>(headers), Environment.class);
+		if (response.getStatusCode() != HttpStatus.OK || response.getBody() == null) {
+			return null;
+		}
+		if (response.getHeaders().getETag() != null) {
+			this.etags.put(uri, response.getHeaders().getETag());
+		}
+		String newVersion = response.getBody().getVersion();
+		return newVersion != null && !newVersion.equals(version) ? newVersion : null;
+	}
+
+}
@@ -22,6 +22,7 @@ import org.springframework.boot.actuate.autoconfigure.health.ConditionalOnEnable
 import org.springframework.boot.actuate.health.HealthIndicator;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.event.ApplicationStartedEvent;
@@ -86,12 +87,51 @@ public class ConfigClientAutoConfiguration {
 	protected static class ConfigClientWatchConfiguration {
 
 		@Bean
+		public ConfigClientWatchProperties configClientWatchProperties() {
+			return new ConfigClientWatchProperties();
+		}
+
+		@Bean
+		@ConditionalOnProperty(name = "spring.cloud.config.watch.mode", havingValue = "state", matchIfMissing = true)
 		public ConfigClientWatch configClientWatch(ContextRefresher contextRefresher) {
 			return new ConfigClientWatch(contextRefresher);
 		}
 
 	}
 
+	@Configuration(proxyBeanMethods = false)
+	@ConditionalOnClass(ContextRefresher.class)
+	@ConditionalOnBean(ContextRefresher.class)
+	@ConditionalOnExpression("${spring.cloud.config.watch.enabled:false} "
+			+ "&& !'${spring.cloud.config.watch.mode:state}'.equalsIgnoreCase('state')")
+	protected static class ConfigClientVersionWatchConfiguration {
+
+		@Bean
+		@ConditionalOnMissingBean
+		public ConfigClientWatcher configClientWatcher(ConfigClientWatchProperties watch,
+				ConfigClientProperties properties) {
+			switch (watch.getMode()) {
+			case SSE:
+				return new ServerSentEventsConfigClientWatcher(properties);
+			case POLL:
+				return new ConditionalPollingConfigClientWatcher(properties, watch.getPollInterval());
+			default:
+				return new LongPollingConfigClientWatcher(properties);
+			}
+		}
+
+		@Bean
+		public ConfigClientVersionWatch configClientVersionWatch(ContextRefresher contextRefresher,
+				ConfigClientProperties properties, ConfigClientWatchProperties watch, ConfigClientWatcher watcher) {
+			ConfigClientVersionWatch versionWatch = new ConfigClientVersionWatch(contextRefresher, properties,
+					watcher);
+			versionWatch.setInitialBackoff(watch.getInitialBackoff());
+			versionWatch.setMaxBackoff(watch.getMaxBackoff());
+			return versionWatch;
+		}
+
+	}
+
 	@Configuration(proxyBeanMethods = false)
 	protected class ConfigClientFailFastListener implements ApplicationListener<ApplicationStartedEvent> {
 
@@ -152,6 +152,30 @@ public class ConfigClientProperties {
 	 */
 	private boolean sendState = true;
 
+	/**
+	 * Time (in milliseconds) to wait for a config server before also asking the next one
+	 * in the list, taking whichever answers first. Negative (the default) to only ask the
+	 * next server once the previous one failed.
+	 */
+	private int hedgeDelay = -1;
+
+	/**
+	 * Flag to indicate that all the labels in a comma-separated list should be fetched
+	 * at the same time instead of one after the other. The first label that is found
+	 * still wins. Default false.
+	 */
+	private boolean parallelLabels = false;
+
+	/**
+	 * Connection pool for requests to the config server.
+	 */
+	private Pool pool = new Pool();
+
+	/**
+	 * Local snapshot of the last fetched environment.
+	 */
+	private Snapshot snapshot = new Snapshot();
+
 	/**
 	 * Additional headers used to create the client request.
 	 */
@@ -297,6 +321,38 @@ public class ConfigClientProperties {
 		this.sendState = sendState;
 	}
 
+	public int getHedgeDelay() {
+		return this.hedgeDelay;
+	}
+
+	public void setHedgeDelay(int hedgeDelay) {
+		this.hedgeDelay = hedgeDelay;
+	}
+
+	public boolean isParallelLabels() {
+		return this.parallelLabels;
+	}
+
+	public void setParallelLabels(boolean parallelLabels) {
+		this.parallelLabels = parallelLabels;
+	}
+
+	public Pool getPool() {
+		return this.pool;
+	}
+
+	public void setPool(Pool pool) {
+		this.pool = pool;
+	}
+
+	public Snapshot getSnapshot() {
+		return this.snapshot;
+	}
+
+	public void setSnapshot(Snapshot snapshot) {
+		this.snapshot = snapshot;
+	}
+
 	public Map<String, String> getHeaders() {
 		return this.headers;
 	}
@@ -393,7 +449,8 @@ public class ConfigClientProperties {
 				+ Arrays.toString(this.uri) + ", mediaType=" + this.mediaType + ", discovery=" + this.discovery
 				+ ", failFast=" + this.failFast + ", token=" + this.token + ", requestConnectTimeout="
 				+ this.requestConnectTimeout + ", requestReadTimeout=" + this.requestReadTimeout + ", sendState="
-				+ this.sendState + ", headers=" + this.headers + "]";
+				+ this.sendState + ", hedgeDelay=" + this.hedgeDelay + ", parallelLabels=" + this.parallelLabels
+				+ ", pool=" + this.pool + ", snapshot=" + this.snapshot + ", headers=" + this.headers + "]";
 	}
 
 	/**
@@ -460,4 +517,131 @@ public class ConfigClientProperties {
 
 	}
 
+	/**
+	 * Connection pool properties.
+	 */
+	public static class Pool {
+
+		/**
+		 * Flag to indicate that connections to the config server should be pooled and
+		 * kept alive, so that retries, health checks and refreshes do not open a new
+		 * connection (and do a new TLS handshake) each time. The pool is shared by all
+		 * clients with the same pool and TLS settings in the JVM. Default false.
+		 */
+		private boolean enabled;
+
+		/**
+		 * Maximum number of connections in the pool.
+		 */
+		private int maxTotal = 20;
+
+		/**
+		 * Maximum number of connections to each config server.
+		 */
+		private int maxPerRoute = 5;
+
+		/**
+		 * Time (in milliseconds) after which an idle connection is closed.
+		 */
+		private long idleTimeout = 30000;
+
+		/**
+		 * Time (in milliseconds) after which a connection is no longer reused, however
+		 * busy it is. Negative for no limit.
+		 */
+		private long timeToLive = -1;
+
+		public boolean isEnabled() {
+			return this.enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public int getMaxTotal() {
+			return this.maxTotal;
+		}
+
+		public void setMaxTotal(int maxTotal) {
+			this.maxTotal = maxTotal;
+		}
+
+		public int getMaxPerRoute() {
+			return this.maxPerRoute;
+		}
+
+		public void setMaxPerRoute(int maxPerRoute) {
+			this.maxPerRoute = maxPerRoute;
+		}
+
+		public long getIdleTimeout() {
+			return this.idleTimeout;
+		}
+
+		public void setIdleTimeout(long idleTimeout) {
+			this.idleTimeout = idleTimeout;
+		}
+
+		public long getTimeToLive() {
+			return this.timeToLive;
+		}
+
+		public void setTimeToLive(long timeToLive) {
+			this.timeToLive = timeToLive;
+		}
+
+		@Override
+		public String toString() {
+			return "Pool [enabled=" + this.enabled + ", maxTotal=" + this.maxTotal + ", maxPerRoute="
+					+ this.maxPerRoute + ", idleTimeout=" + this.idleTimeout + ", timeToLive=" + this.timeToLive
+					+ "]";
+		}
+
+	}
+
+	/**
+	 * Snapshot properties.
+	 */
+	public static class Snapshot {
+
+		/**
+		 * Flag to indicate that the last environment fetched from the config server
+		 * should be kept on the local disk. The application then starts from the
+		 * snapshot straight away and refreshes it from the server in the background, and
+		 * falls back to it when no server can be reached. Default false.
+		 */
+		private boolean enabled;
+
+		/**
+		 * Directory to keep the snapshots in. Snapshots hold the values the server sent,
+		 * decrypted ones included, so the directory has to belong to the user the
+		 * application runs as and be inaccessible to anyone else (it is created that
+		 * way). Defaults to a directory in the home of that user.
+		 */
+		private String directory = System.getProperty("user.home") + "/.config-client/snapshots";
+
+		public boolean isEnabled() {
+			return this.enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public String getDirectory() {
+			return this.directory;
+		}
+
+		public void setDirectory(String directory) {
+			this.directory = directory;
+		}
+
+		@Override
+		public String toString() {
+			return "Snapshot [enabled=" + this.enabled + ", directory=" + this.directory + "]";
+		}
+
+	}
+
 }
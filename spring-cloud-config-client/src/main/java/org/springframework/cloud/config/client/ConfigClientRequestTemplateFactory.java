@@ -18,26 +18,37 @@ package org.springframework.cloud.config.client;
 
 import java.io.IOException;
 import java.security.GeneralSecurityException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 import javax.net.ssl.SSLContext;
 
 import org.apache.commons.logging.Log;
 import org.apache.http.client.HttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.impl.client.HttpClients;
 
+import org.springframework.cloud.config.environment.EnvironmentMediaType;
 import org.springframework.cloud.configuration.SSLContextFactory;
+import org.springframework.cloud.configuration.TlsProperties;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpRequest;
+import org.springframework.http.MediaType;
 import org.springframework.http.client.ClientHttpRequestExecution;
 import org.springframework.http.client.ClientHttpRequestFactory;
 import org.springframework.http.client.ClientHttpRequestInterceptor;
 import org.springframework.http.client.ClientHttpResponse;
 import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
 import org.springframework.util.Base64Utils;
+import org.springframework.util.ClassUtils;
 import org.springframework.web.client.RestTemplate;
 
 import static org.springframework.cloud.config.client.ConfigClientProperties.AUTHORIZATION;
@@ -47,6 +58,15 @@ import static org.springframework.cloud.config.client.ConfigClientProperties.AUT
  */
 public class ConfigClientRequestTemplateFactory {
 
+	private static final boolean JACKSON_CBOR_PRESENT = ClassUtils
+			.isPresent("com.fasterxml.jackson.dataformat.cbor.CBORFactory", null);
+
+	/**
+	 * Pooled clients by pool and TLS settings. They outlive the factory so that the
+	 * connections opened while bootstrapping are still there for later refreshes.
+	 */
+	private static final Map<List<Object>, HttpClient> SHARED_CLIENTS = new ConcurrentHashMap<>();
+
 	private final Log log;
 
 	private final ConfigClientProperties properties;
@@ -74,6 +94,11 @@ public class ConfigClientRequestTemplateFactory {
 
 		ClientHttpRequestFactory requestFactory = createHttpRequestFactory(properties);
 		RestTemplate template = new RestTemplate(requestFactory);
+		if (JACKSON_CBOR_PRESENT) {
+			MappingJackson2CborHttpMessageConverter cbor = new MappingJackson2CborHttpMessageConverter();
+			cbor.setSupportedMediaTypes(Collections.singletonList(MediaType.valueOf(EnvironmentMediaType.V2_CBOR)));
+			template.getMessageConverters().add(cbor);
+		}
 		Map<String, String> headers = new HashMap<>(properties.getHeaders());
 		headers.remove(AUTHORIZATION); // To avoid redundant addition of header
 		if (!headers.isEmpty()) {
@@ -84,6 +109,13 @@ public class ConfigClientRequestTemplateFactory {
 	}
 
 	private ClientHttpRequestFactory createHttpRequestFactory(ConfigClientProperties client) {
+		if (client.getPool().isEnabled()) {
+			HttpClient httpClient = SHARED_CLIENTS.computeIfAbsent(poolKey(client), key -> createPooledClient(client));
+			HttpComponentsClientHttpRequestFactory result = new HttpComponentsClientHttpRequestFactory(httpClient);
+			result.setReadTimeout(client.getRequestReadTimeout());
+			result.setConnectTimeout(client.getRequestConnectTimeout());
+			return result;
+		}
 		if (client.getTls().isEnabled()) {
 			try {
 				SSLContextFactory factory = new SSLContextFactory(client.getTls());
@@ -108,6 +140,55 @@ public class ConfigClientRequestTemplateFactory {
 		return result;
 	}
 
+	private HttpClient createPooledClient(ConfigClientProperties client) {
+		ConfigClientProperties.Pool pool = client.getPool();
+		// the connections are only ever used by this client, so they need not be tied to
+		// a TLS principal to be reused
+		HttpClientBuilder builder = HttpClients.custom().setMaxConnTotal(pool.getMaxTotal())
+				.setMaxConnPerRoute(pool.getMaxPerRoute()).disableConnectionState().evictExpiredConnections();
+		if (pool.getIdleTimeout() > 0) {
+			builder.evictIdleConnections(pool.getIdleTimeout(), TimeUnit.MILLISECONDS);
+		}
+		if (pool.getTimeToLive() > 0) {
+			builder.setConnectionTimeToLive(pool.getTimeToLive(), TimeUnit.MILLISECONDS);
+		}
+		if (client.getTls().isEnabled()) {
+			try {
+				builder.setSSLContext(new SSLContextFactory(client.getTls()).createSSLContext());
+			}
+			catch (GeneralSecurityException | IOException ex) {
+				log.error(ex);
+				throw new IllegalStateException("Failed to create config client with TLS.", ex);
+			}
+		}
+		return builder.build();
+	}
+
+	private static List<Object> poolKey(ConfigClientProperties client) {
+		ConfigClientProperties.Pool pool = client.getPool();
+		TlsProperties tls = client.getTls();
+		List<Object> key = new ArrayList<>(Arrays.asList(pool.getMaxTotal(), pool.getMaxPerRoute(),
+				pool.getIdleTimeout(), pool.getTimeToLive(), tls.isEnabled()));
+		if (tls.isEnabled()) {
+			key.addAll(Arrays.asList(tls.getKeyStore(), tls.getKeyStoreType(), tls.getKeyStorePassword(),
+					tls.getKeyPassword(), tls.getTrustStore(), tls.getTrustStoreType(), tls.getTrustStorePassword()));
+		}
+		return key;
+	}
+
+	/**
+	 * The media types to ask the config server for. A client that asks for the binary
+	 * format also accepts JSON, so that servers which cannot encode it still answer.
+	 * @return the value for the Accept header
+	 */
+	public List<MediaType> getAccept() {
+		MediaType mediaType = MediaType.parseMediaType(properties.getMediaType());
+		if (mediaType.isCompatibleWith(MediaType.valueOf(EnvironmentMediaType.V2_CBOR))) {
+			return Arrays.asList(mediaType, MediaType.parseMediaType(EnvironmentMediaType.V2_JSON + ";q=0.5"));
+		}
+		return Collections.singletonList(mediaType);
+	}
+
 	public void addAuthorizationToken(HttpHeaders httpHeaders, String username, String password) {
 		String authorization = properties.getHeaders().get(AUTHORIZATION);
 
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2013-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.config.client;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.cloud.config.environment.Environment;
+import org.springframework.cloud.config.environment.PropertySource;
+import org.springframework.util.StringUtils;
+
+/**
+ * Keeps the last environment fetched from a config server on the local disk, one JSON
+ * file per application name, profiles and label, so that the client can start from it
+ * when the server is slow or down. Snapshots hold the same (possibly decrypted) values
+ * the server sent, so the directory is created readable by its owner only, and
+ * snapshots are neither written to nor read from a directory (or file) that another
+ * user owns or that others can access.
+ */
+public class ConfigClientSnapshotStore {
+
+	private static Log logger = LogFactory.getLog(ConfigClientSnapshotStore.class);
+
+	private final ObjectMapper mapper = new ObjectMapper()
+			.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+	private static final Set<PosixFilePermission> PRIVATE = PosixFilePermissions.fromString("rwx------");
+
+	private final Path directory;
+
+	private volatile UserPrincipal user;
+
+	public ConfigClientSnapshotStore(String directory) {
+		this.directory = Paths.get(directory);
+	}
+
+	/**
+	 * Reads the snapshot for the given coordinates.
+	 * @return the environment, or null if there is none or it cannot be read
+	 */
+	public Environment read(String name, String profiles, String label) {
+		Path file = resolve(name, profiles, label);
+		if (!Files.isRegularFile(file, LinkOption.NOFOLLOW_LINKS)) {
+			return null;
+		}
+		try {
+			if (!isPrivate(this.directory) || !Files.getOwner(file, LinkOption.NOFOLLOW_LINKS).equals(user())) {
+				logger.warn("Ignoring config snapshot " + file + ": it is not private to the current user");
+				return null;
+			}
+			return this.mapper.readValue(file.toFile(), Environment.class);
+		}
+		catch (IOException e) {
+			logger.warn("Could not read config snapshot " + file + ": " + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Replaces the snapshot for the given coordinates. The file is written next to the
+	 * old one and moved into place, so a reader never sees half of it. Failures are
+	 * logged and otherwise ignored: the snapshot is only a fallback.
+	 */
+	public void write(String name, String profiles, String label, Environment environment) {
+		Path file = resolve(name, profiles, label);
+		Path temp = null;
+		try {
+			createDirectory();
+			if (!isPrivate(this.directory)) {
+				logger.warn("Not writing config snapshot to " + this.directory
+						+ ": it is not private to the current user");
+				return;
+			}
+			temp = Files.createTempFile(this.directory, ".snapshot", ".tmp");
+			try {
+				Files.setPosixFilePermissions(temp, PosixFilePermissions.fromString("rw-------"));
+			}
+			catch (UnsupportedOperationException e) {
+				// not a POSIX file system
+			}
+			this.mapper.writeValue(temp.toFile(), environment);
+			try {
+				Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			}
+			catch (AtomicMoveNotSupportedException e) {
+				Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+		catch (IOException e) {
+			logger.warn("Could not write config snapshot " + file + ": " + e.getMessage());
+			if (temp != null) {
+				try {
+					Files.deleteIfExists(temp);
+				}
+				catch (IOException ex) {
+					// ignore
+				}
+			}
+		}
+	}
+
+	/**
+	 * Whether the two environments are the same as far as the client is concerned: the
+	 * same version, or for unversioned backends the same property sources.
+	 */
+	public static boolean isSame(Environment snapshot, Environment current) {
+		if (StringUtils.hasText(snapshot.getVersion()) || StringUtils.hasText(current.getVersion())) {
+			return snapshot.getVersion() != null && snapshot.getVersion().equals(current.getVersion());
+		}
+		List<PropertySource> before = snapshot.getPropertySources();
+		List<PropertySource> after = current.getPropertySources();
+		if (before.size() != after.size()) {
+			return false;
+		}
+		for (int i = 0; i < before.size(); i++) {
+			if (!Objects.equals(before.get(i).getName(), after.get(i).getName())
+					|| !Objects.equals(before.get(i).getSource(), after.get(i).getSource())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void createDirectory() throws IOException {
+		if (Files.isDirectory(this.directory)) {
+			return;
+		}
+		try {
+			Files.createDirectories(this.directory, PosixFilePermissions.asFileAttribute(PRIVATE));
+		}
+		catch (UnsupportedOperationException e) {
+			// not a POSIX file system
+			Files.createDirectories(this.directory);
+		}
+	}
+
+	/**
+	 * Whether the directory belongs to the current user and, where the file system has
+	 * POSIX permissions, nobody else can access it.
+	 */
+	private boolean isPrivate(Path directory) throws IOException {
+		if (!Files.isDirectory(directory, LinkOption.NOFOLLOW_LINKS)
+				|| !Files.getOwner(directory, LinkOption.NOFOLLOW_LINKS).equals(user())) {
+			return false;
+		}
+		try {
+			return PRIVATE.containsAll(Files.getPosixFilePermissions(directory, LinkOption.NOFOLLOW_LINKS));
+		}
+		catch (UnsupportedOperationException e) {
+			// not a POSIX file system, the owner has to do
+			return true;
+		}
+	}
+
+	/**
+	 * The user this process runs as, which is the owner of the files it creates. The
+	 * user.name system property cannot be relied upon, e.g. in containers.
+	 */
+	private UserPrincipal user() throws IOException {
+		UserPrincipal user = this.user;
+		if (user == null) {
+			Path probe = Files.createTempFile("config-client-snapshot", ".tmp");
+			try {
+				user = Files.getOwner(probe);
+			}
+			finally {
+				Files.deleteIfExists(probe);
+			}
+			this.user = user;
+		}
+		return user;
+	}
+
+	private Path resolve(String name, String profiles, String label) {
+		String key = name + "," + profiles + "," + (label == null ? "" : label);
+		try {
+			return this.directory.resolve(URLEncoder.encode(key, StandardCharsets.UTF_8.name()) + ".json");
+		}
+		catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+}
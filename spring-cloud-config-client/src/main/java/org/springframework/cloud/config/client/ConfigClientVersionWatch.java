@@ -0,0 +1,158 @@
+/*
+ * Copyright 2013-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.config.client;
+
+import java.io.Closeable;
+import java.util.concurrent.ThreadLocalRandom;
+
+import javax.annotation.PostConstruct;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.cloud.context.refresh.ContextRefresher;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.core.env.Environment;
+
+/**
+ * Refreshes the context whenever a config server reports a new version of this
+ * application's configuration. How changes are found out about is left to a
+ * {@link ConfigClientWatcher}, which this class calls in a loop on a background thread,
+ * trying the configured servers in turn and backing off with jitter while none can be
+ * reached. Unlike {@link ConfigClientWatch} there is no fixed schedule: the thread is
+ * parked in the watcher until something happens.
+ */
+public class ConfigClientVersionWatch implements Closeable, EnvironmentAware {
+
+	private static Log log = LogFactory.getLog(ConfigClientVersionWatch.class);
+
+	private final ContextRefresher refresher;
+
+	private final ConfigClientProperties properties;
+
+	private final ConfigClientWatcher watcher;
+
+	private Environment environment;
+
+	private long initialBackoff = 1000;
+
+	private long maxBackoff = 60000;
+
+	private volatile Thread thread;
+
+	private volatile String version;
+
+	private int failures;
+
+	public ConfigClientVersionWatch(ContextRefresher refresher, ConfigClientProperties properties,
+			ConfigClientWatcher watcher) {
+		this.refresher = refresher;
+		this.properties = properties;
+		this.watcher = watcher;
+	}
+
+	@Override
+	public void setEnvironment(Environment environment) {
+		this.environment = environment;
+	}
+
+	public void setInitialBackoff(long initialBackoff) {
+		this.initialBackoff = initialBackoff;
+	}
+
+	public void setMaxBackoff(long maxBackoff) {
+		this.maxBackoff = maxBackoff;
+	}
+
+	@PostConstruct
+	public synchronized void start() {
+		if (this.thread == null) {
+			Thread thread = new Thread(this::run, "config-client-watch");
+			thread.setDaemon(true);
+			this.thread = thread;
+			thread.start();
+		}
+	}
+
+	private void run() {
+		while (this.thread == Thread.currentThread()) {
+			try {
+				if (!watch()) {
+					Thread.sleep(backoff());
+				}
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Asks each config server in turn to report a new version.
+	 * @return false if none of them could be reached
+	 * @throws InterruptedException if the watch was closed while waiting
+	 */
+	/* for testing */ boolean watch() throws InterruptedException {
+		String current = this.version;
+		if (current == null && this.environment != null) {
+			current = this.environment.getProperty("config.client.version");
+		}
+		for (int i = 0; i < this.properties.getUri().length; i++) {
+			ConfigClientProperties.Credentials credentials = this.properties.getCredentials(i);
+			try {
+				String newVersion = this.watcher.awaitChange(credentials, current);
+				this.failures = 0;
+				if (newVersion != null) {
+					log.info("Config server reported new version " + newVersion + ", refreshing");
+					this.version = newVersion;
+					this.refresher.refresh();
+				}
+				return true;
+			}
+			catch (InterruptedException e) {
+				throw e;
+			}
+			catch (Exception e) {
+				log.debug("Could not watch config server at " + credentials.getUri() + ": " + e.getMessage());
+			}
+		}
+		this.failures++;
+		return false;
+	}
+
+	/**
+	 * Exponential backoff with jitter, so that clients that lost the same server at
+	 * the same time do not all come back to it at the same time.
+	 * @return the time to wait in milliseconds
+	 */
+	/* for testing */ long backoff() {
+		int exponent = Math.min(Math.max(this.failures - 1, 0), 30);
+		long ceiling = Math.min(this.maxBackoff, this.initialBackoff << exponent);
+		return ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1);
+	}
+
+	@Override
+	public synchronized void close() {
+		Thread thread = this.thread;
+		this.thread = null;
+		if (thread != null) {
+			thread.interrupt();
+		}
+	}
+
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2013-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.config.client;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Properties of the client watch, which refreshes the application context when the
+ * config server has a new version of its configuration.
+ */
+@ConfigurationProperties(ConfigClientWatchProperties.PREFIX)
+public class ConfigClientWatchProperties {
+
+	/**
+	 * Prefix for the client watch properties.
+	 */
+	public static final String PREFIX = "spring.cloud.config.watch";
+
+	/**
+	 * Flag to enable the client watch.
+	 */
+	private boolean enabled;
+
+	/**
+	 * How to find out about changes. Default state, the scheduled check the watch has
+	 * always used. The other modes need a server that has the watch endpoints.
+	 */
+	private Mode mode = Mode.STATE;
+
+	/**
+	 * Time (in milliseconds) between two conditional requests in poll mode.
+	 */
+	private long pollInterval = 30000;
+
+	/**
+	 * Initial time (in milliseconds) to wait before watching again when no config server
+	 * could be reached. Doubled after each failure, up to the max backoff.
+	 */
+	private long initialBackoff = 1000;
+
+	/**
+	 * Maximum time (in milliseconds) to wait before watching again when no config server
+	 * could be reached.
+	 */
+	private long maxBackoff = 60000;
+
+	/**
+	 * Initial delay (in milliseconds) before the first check in state mode.
+	 */
+	private long initialDelay = 180000;
+
+	/**
+	 * Time (in milliseconds) between two checks in state mode.
+	 */
+	private long delay = 500;
+
+	public boolean isEnabled() {
+		return this.enabled;
+	}
+
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	public Mode getMode() {
+		return this.mode;
+	}
+
+	public void setMode(Mode mode) {
+		this.mode = mode;
+	}
+
+	public long getPollInterval() {
+		return this.pollInterval;
+	}
+
+	public void setPollInterval(long pollInterval) {
+		this.pollInterval = pollInterval;
+	}
+
+	public long getInitialBackoff() {
+		return this.initialBackoff;
+	}
+
+	public void setInitialBackoff(long initialBackoff) {
+		this.initialBackoff = initialBackoff;
+	}
+
+	public long getMaxBackoff() {
+		return this.maxBackoff;
+	}
+
+	public void setMaxBackoff(long maxBackoff) {
+		this.maxBackoff = maxBackoff;
+	}
+
+	public long getInitialDelay() {
+		return this.initialDelay;
+	}
+
+	public void setInitialDelay(long initialDelay) {
+		this.initialDelay = initialDelay;
+	}
+
+	public long getDelay() {
+		return this.delay;
+	}
+
+	public void setDelay(long delay) {
+		this.delay = delay;
+	}
+
+	/**
+	 * Ways of watching the config server.
+	 */
+	public enum Mode {
+
+		/**
+		 * Park a request on the server's watch endpoint until the version changes.
+		 */
+		LONG_POLL,
+
+		/**
+		 * Keep a server-sent events stream open and wait for a change event.
+		 */
+		SSE,
+
+		/**
+		 * Periodically fetch the environment with a conditional request, which the
+		 * server answers with 304 Not Modified while the version is unchanged.
+		 */
+		POLL,
+
+		/**
+		 * Compare the locally known state on a fixed schedule (the original watch, only
+		 * useful for backends that report a state such as Vault).
+		 */
+		STATE
+
+	}
+
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2013-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.config.client;
+
+/**
+ * Strategy used by {@link ConfigClientVersionWatch} to find out from a config server
+ * that a new version of the configuration is available. Implementations are expected to
+ * block, for as long as they see fit, until they either know about a new version or have
+ * to give up waiting.
+ */
+public interface ConfigClientWatcher {
+
+	/**
+	 * Wait for a version different from the one the application has.
+	 * @param credentials the config server to ask
+	 * @param version the version the application has, may be null
+	 * @return the new version, an empty string if the configuration changed but the
+	 * server does not report versions, or null if nothing changed
+	 * @throws Exception if the config server could not be reached
+	 */
+	String awaitChange(ConfigClientProperties.Credentials credentials, String version) throws Exception;
+
+}
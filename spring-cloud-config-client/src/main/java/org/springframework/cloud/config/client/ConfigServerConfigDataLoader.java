@@ -24,6 +24,16 @@ import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.logging.Log;
 
@@ -66,6 +76,22 @@ public class ConfigServerConfigDataLoader implements ConfigDataLoader<ConfigServ
 
 	private static final EnumSet<Option> ALL_OPTIONS = EnumSet.allOf(Option.class);
 
+	/**
+	 * Runs hedged and parallel requests. Threads are daemons and go away when idle, so
+	 * nothing is left behind once the configuration has been loaded.
+	 */
+	private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+		Thread thread = new Thread(runnable, "config-client-fetch");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/**
+	 * Snapshots the application has already been started from in this JVM. Later loads,
+	 * such as refreshes, go to the config server first.
+	 */
+	private static final Set<String> STARTED_FROM_SNAPSHOT = ConcurrentHashMap.newKeySet();
+
 	protected final Log logger;
 
 	public ConfigServerConfigDataLoader(Log logger) {
@@ -110,85 +136,46 @@ public class ConfigServerConfigDataLoader implements ConfigDataLoader<ConfigServ
 	public ConfigData doLoad(ConfigDataLoaderContext context, ConfigServerConfigDataResource resource) {
 		// 获取SpringCloudConfig客户端配置对象
 		ConfigClientProperties properties = resource.getProperties();
-		// 属性源集合
-		List<PropertySource<?>> propertySources = new ArrayList<>();
 		// 异常对象
 		Exception error = null;
 		// 异常文本
 		String errorBody = null;
-		try {
-			// 创建标签集合
-			String[] labels = new String[]{""};
-			// 对标签数据进行拆分
-			if (StringUtils.hasText(properties.getLabel())) {
-				labels = StringUtils.commaDelimitedListToStringArray(properties.getLabel());
+		// 创建标签集合
+		String[] labels = new String[]{""};
+		// 对标签数据进行拆分
+		if (StringUtils.hasText(properties.getLabel())) {
+			labels = StringUtils.commaDelimitedListToStringArray(properties.getLabel());
+		}
+		// 获取状态信息
+		String state = ConfigClientStateHolder.getState();
+		// 本地快照，首次加载时直接使用快照并在后台重新校验
+		ConfigClientSnapshotStore snapshots = null;
+		if (properties.getSnapshot().isEnabled()) {
+			snapshots = new ConfigClientSnapshotStore(properties.getSnapshot().getDirectory());
+			String key = properties.getSnapshot().getDirectory() + ":" + properties.getName() + ","
+				+ resource.getProfiles() + "," + properties.getLabel();
+			if (STARTED_FROM_SNAPSHOT.add(key)) {
+				Environment snapshot = snapshots.read(properties.getName(), resource.getProfiles(),
+					properties.getLabel());
+				if (snapshot != null) {
+					logger.info("Starting from config snapshot (version=" + snapshot.getVersion()
+						+ "), checking the config server in the background");
+					ConfigClientSnapshotStore store = snapshots;
+					String[] fallbacks = labels;
+					EXECUTOR.submit(() -> revalidate(context, resource, fallbacks, state, store, snapshot));
+					return toConfigData(resource, snapshot);
+				}
 			}
-			// 获取状态信息
-			String state = ConfigClientStateHolder.getState();
+		}
+		try {
 			// Try all the labels until one works
-			// 循环标签集合
-			for (String label : labels) {
-				// 获取远端的环境对象
-				Environment result = getRemoteEnvironment(context, resource, label.trim(), state);
-				// 环境对象不为空的情况下处理
-				if (result != null) {
-					// 日志处理
-					log(result);
-
-					// result.getPropertySources() can be null if using xml
-					// 环境对象中的属性源不为空
-					if (result.getPropertySources() != null) {
-						// 循环环境对象中的属性源将数据放入到属性源集合中
-						for (org.springframework.cloud.config.environment.PropertySource source : result
-							.getPropertySources()) {
-							@SuppressWarnings("unchecked")
-							Map<String, Object> map = translateOrigins(source.getName(),
-								(Map<String, Object>) source.getSource());
-							propertySources.add(0,
-								new OriginTrackedMapPropertySource("configserver:" + source.getName(), map));
-						}
-					}
-
-					// 创建map集合用于设置state和version数据
-					HashMap<String, Object> map = new HashMap<>();
-					if (StringUtils.hasText(result.getState())) {
-						putValue(map, "config.client.state", result.getState());
-					}
-					if (StringUtils.hasText(result.getVersion())) {
-						putValue(map, "config.client.version", result.getVersion());
-					}
-					// the existence of this property source confirms a successful
-					// response from config server
-					// 将存储了state和version数据的内容放入到属性源集合中
-					propertySources.add(0, new MapPropertySource(CONFIG_CLIENT_PROPERTYSOURCE_NAME, map));
-					if (ALL_OPTIONS.size() == 1) {
-						// boot 2.4.2 and prior
-						return new ConfigData(propertySources);
-					} else if (ALL_OPTIONS.size() == 2) {
-						// boot 2.4.3 and 2.4.4
-						return new ConfigData(propertySources, Option.IGNORE_IMPORTS, Option.IGNORE_PROFILES);
-					} else if (ALL_OPTIONS.size() > 2) {
-						// boot 2.4.5+
-						return new ConfigData(propertySources, propertySource -> {
-							String propertySourceName = propertySource.getName();
-							List<Option> options = new ArrayList<>();
-							options.add(Option.IGNORE_IMPORTS);
-							options.add(Option.IGNORE_PROFILES);
-							// TODO: the profile is now available on the backend
-							// in a future minor, add the profile associated with a
-							// PropertySource see
-							// https://github.com/spring-cloud/spring-cloud-config/issues/1874
-							for (String profile : resource.getAcceptedProfiles()) {
-								// TODO: switch to match
-								if (propertySourceName.contains("-" + profile + ".")) {
-									// TODO: switch to Options.with() when implemented
-									options.add(Option.PROFILE_SPECIFIC);
-								}
-							}
-							return Options.of(options.toArray(new Option[0]));
-						});
-					}
+			Environment result = fetch(context, resource, labels, state);
+			// 环境对象不为空的情况下处理
+			if (result != null) {
+				if (snapshots != null) {
+					snapshots.write(properties.getName(), resource.getProfiles(), properties.getLabel(), result);
 				}
+				return toConfigData(resource, result);
 			}
 			errorBody = String.format("None of labels %s found", Arrays.toString(labels));
 		} catch (HttpServerErrorException e) {
@@ -199,6 +186,14 @@ public class ConfigServerConfigDataLoader implements ConfigDataLoader<ConfigServ
 		} catch (Exception e) {
 			error = e;
 		}
+		if (snapshots != null) {
+			Environment snapshot = snapshots.read(properties.getName(), resource.getProfiles(), properties.getLabel());
+			if (snapshot != null) {
+				logger.warn("Could not locate PropertySource (" + resource + "), using config snapshot (version="
+					+ snapshot.getVersion() + "): " + (error != null ? error.getMessage() : errorBody));
+				return toConfigData(resource, snapshot);
+			}
+		}
 		if (properties.isFailFast() || !resource.isOptional()) {
 			String reason;
 			if (properties.isFailFast()) {
@@ -214,6 +209,130 @@ public class ConfigServerConfigDataLoader implements ConfigDataLoader<ConfigServ
 		return null;
 	}
 
+	/**
+	 * Fetches the environment for the first of the labels that the config server knows
+	 * about.
+	 * @return the environment, or null if none of the labels was found
+	 */
+	private Environment fetch(ConfigDataLoaderContext context, ConfigServerConfigDataResource resource,
+							  String[] labels, String state) throws Exception {
+		// 并行获取的标签
+		List<Future<Environment>> fetches = null;
+		try {
+			if (resource.getProperties().isParallelLabels() && labels.length > 1) {
+				fetches = new ArrayList<>();
+				for (String label : labels) {
+					String trimmed = label.trim();
+					fetches.add(EXECUTOR.submit(() -> getRemoteEnvironment(context, resource, trimmed, state)));
+				}
+			}
+			// 循环标签集合
+			for (int i = 0; i < labels.length; i++) {
+				// 获取远端的环境对象，并行获取时按标签顺序等待结果
+				Environment result = fetches != null ? await(fetches.get(i))
+					: getRemoteEnvironment(context, resource, labels[i].trim(), state);
+				if (result != null) {
+					return result;
+				}
+			}
+			return null;
+		} finally {
+			if (fetches != null) {
+				for (Future<Environment> fetch : fetches) {
+					fetch.cancel(true);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Compares a snapshot the application was started from with what the config server
+	 * has now, and replaces the snapshot if it is out of date. The running application
+	 * picks the new values up on its next refresh (a client watch will trigger one as
+	 * soon as it sees the new version).
+	 */
+	private void revalidate(ConfigDataLoaderContext context, ConfigServerConfigDataResource resource,
+							String[] labels, String state, ConfigClientSnapshotStore snapshots, Environment snapshot) {
+		ConfigClientProperties properties = resource.getProperties();
+		try {
+			Environment current = fetch(context, resource, labels, state);
+			if (current == null) {
+				logger.warn("Config server does not know any of labels " + Arrays.toString(labels)
+					+ ", keeping config snapshot");
+				return;
+			}
+			if (ConfigClientSnapshotStore.isSame(snapshot, current)) {
+				logger.debug("Config snapshot is up to date (version=" + current.getVersion() + ")");
+				return;
+			}
+			snapshots.write(properties.getName(), resource.getProfiles(), properties.getLabel(), current);
+			logger.info("Config snapshot was out of date (version=" + snapshot.getVersion() + ", server has "
+				+ current.getVersion() + "), new values apply on the next refresh");
+		} catch (Exception e) {
+			logger.info("Could not check config snapshot against the config server: " + e.getMessage());
+		}
+	}
+
+	private ConfigData toConfigData(ConfigServerConfigDataResource resource, Environment result) {
+		// 属性源集合
+		List<PropertySource<?>> propertySources = new ArrayList<>();
+		// 日志处理
+		log(result);
+
+		// result.getPropertySources() can be null if using xml
+		// 环境对象中的属性源不为空
+		if (result.getPropertySources() != null) {
+			// 循环环境对象中的属性源将数据放入到属性源集合中
+			for (org.springframework.cloud.config.environment.PropertySource source : result
+				.getPropertySources()) {
+				@SuppressWarnings("unchecked")
+				Map<String, Object> map = translateOrigins(source.getName(),
+					(Map<String, Object>) source.getSource());
+				propertySources.add(0,
+					new OriginTrackedMapPropertySource("configserver:" + source.getName(), map));
+			}
+		}
+
+		// 创建map集合用于设置state和version数据
+		HashMap<String, Object> map = new HashMap<>();
+		if (StringUtils.hasText(result.getState())) {
+			putValue(map, "config.client.state", result.getState());
+		}
+		if (StringUtils.hasText(result.getVersion())) {
+			putValue(map, "config.client.version", result.getVersion());
+		}
+		// the existence of this property source confirms a successful
+		// response from config server
+		// 将存储了state和version数据的内容放入到属性源集合中
+		propertySources.add(0, new MapPropertySource(CONFIG_CLIENT_PROPERTYSOURCE_NAME, map));
+		if (ALL_OPTIONS.size() == 1) {
+			// boot 2.4.2 and prior
+			return new ConfigData(propertySources);
+		} else if (ALL_OPTIONS.size() == 2) {
+			// boot 2.4.3 and 2.4.4
+			return new ConfigData(propertySources, Option.IGNORE_IMPORTS, Option.IGNORE_PROFILES);
+		}
+		// boot 2.4.5+
+		return new ConfigData(propertySources, propertySource -> {
+			String propertySourceName = propertySource.getName();
+			List<Option> options = new ArrayList<>();
+			options.add(Option.IGNORE_IMPORTS);
+			options.add(Option.IGNORE_PROFILES);
+			// TODO: the profile is now available on the backend
+			// in a future minor, add the profile associated with a
+			// PropertySource see
+			// https://github.com/spring-cloud/spring-cloud-config/issues/1874
+			for (String profile : resource.getAcceptedProfiles()) {
+				// TODO: switch to match
+				if (propertySourceName.contains("-" + profile + ".")) {
+					// TODO: switch to Options.with() when implemented
+					options.add(Option.PROFILE_SPECIFIC);
+				}
+			}
+			return Options.of(options.toArray(new Option[0]));
+		});
+	}
+
 	protected void log(Environment result) {
 		if (logger.isInfoEnabled()) {
 			logger.info(String.format("Located environment: name=%s, profiles=%s, label=%s, version=%s, state=%s",
@@ -290,22 +409,23 @@ public class ConfigServerConfigDataLoader implements ConfigDataLoader<ConfigServ
 			args = new String[]{name, profile, label};
 			path = path + "/{label}";
 		}
-		ResponseEntity<Environment> response = null;
-		List<MediaType> acceptHeader = Collections.singletonList(MediaType.parseMediaType(properties.getMediaType()));
-
 		ConfigClientRequestTemplateFactory requestTemplateFactory = context.getBootstrapContext()
 			.get(ConfigClientRequestTemplateFactory.class);
+		List<MediaType> acceptHeader = requestTemplateFactory.getAccept();
 
+		// 每个配置服务地址对应一个请求
+		List<Callable<ResponseEntity<Environment>>> requests = new ArrayList<>();
 		for (int i = 0; i < noOfUrls; i++) {
 			// 获取账号密码配置对象
 			ConfigClientProperties.Credentials credentials = properties.getCredentials(i);
 			String uri = credentials.getUri();
 			String username = credentials.getUsername();
 			String password = credentials.getPassword();
+			String fullPath = path;
+			Object[] uriVariables = args;
 
-			logger.info("Fetching config from server at : " + uri);
-
-			try {
+			requests.add(() -> {
+				logger.info("Fetching config from server at : " + uri);
 				// 组装请求头
 				HttpHeaders headers = new HttpHeaders();
 				headers.setAccept(acceptHeader);
@@ -318,31 +438,110 @@ public class ConfigServerConfigDataLoader implements ConfigDataLoader<ConfigServ
 				}
 
 				final HttpEntity<Void> entity = new HttpEntity<>((Void) null, headers);
-				// 发送请求
-				response = restTemplate.exchange(uri + path, HttpMethod.GET, entity, Environment.class, args);
-			} catch (HttpClientErrorException e) {
-				if (e.getStatusCode() != HttpStatus.NOT_FOUND) {
-					throw e;
+				try {
+					// 发送请求
+					return restTemplate.exchange(uri + fullPath, HttpMethod.GET, entity, Environment.class,
+						uriVariables);
+				} catch (HttpClientErrorException e) {
+					if (e.getStatusCode() != HttpStatus.NOT_FOUND) {
+						throw e;
+					}
+					return null;
 				}
-			} catch (ResourceAccessException e) {
-				logger.info("Connect Timeout Exception on Url - " + uri + ". Will be trying the next url if available");
-				if (i == noOfUrls - 1) {
-					throw e;
-				} else {
-					continue;
+			});
+		}
+
+		ResponseEntity<Environment> response;
+		if (properties.getHedgeDelay() >= 0 && noOfUrls > 1) {
+			// 对冲请求：首选服务在延迟时间内没有响应时，同时请求下一个服务
+			response = hedge(requests, properties.getHedgeDelay());
+		} else {
+			response = null;
+			for (int i = 0; i < noOfUrls; i++) {
+				try {
+					response = call(requests.get(i));
+					break;
+				} catch (ResourceAccessException e) {
+					logger.info("Connect Timeout Exception on Url - " + properties.getCredentials(i).getUri()
+						+ ". Will be trying the next url if available");
+					if (i == noOfUrls - 1) {
+						throw e;
+					}
 				}
 			}
+		}
 
-			if (response == null || response.getStatusCode() != HttpStatus.OK) {
-				return null;
+		if (response == null || response.getStatusCode() != HttpStatus.OK) {
+			return null;
+		}
+
+		Environment result = response.getBody();
+		// 返回对象
+		return result;
+	}
+
+	/**
+	 * Sends the requests one after the other, each time the previous one failed or did
+	 * not answer within the hedge delay, and returns the first answer.
+	 */
+	private ResponseEntity<Environment> hedge(List<Callable<ResponseEntity<Environment>>> requests, long delay) {
+		CompletionService<ResponseEntity<Environment>> completion = new ExecutorCompletionService<>(EXECUTOR);
+		List<Future<ResponseEntity<Environment>>> futures = new ArrayList<>();
+		futures.add(completion.submit(requests.get(0)));
+		int failed = 0;
+		RuntimeException error = null;
+		try {
+			while (failed < futures.size()) {
+				boolean more = futures.size() < requests.size();
+				Future<ResponseEntity<Environment>> done = more
+					? completion.poll(delay, TimeUnit.MILLISECONDS) : completion.take();
+				if (done == null) {
+					logger.info("No answer from config server within " + delay + "ms, asking the next one as well");
+					futures.add(completion.submit(requests.get(futures.size())));
+					continue;
+				}
+				try {
+					return done.get();
+				} catch (ExecutionException e) {
+					failed++;
+					error = e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause()
+						: new IllegalStateException(e.getCause());
+					logger.info("Config server request failed: " + e.getCause().getMessage());
+					if (failed == futures.size() && more) {
+						futures.add(completion.submit(requests.get(futures.size())));
+					}
+				}
+			}
+			throw error;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while fetching config", e);
+		} finally {
+			for (Future<ResponseEntity<Environment>> future : futures) {
+				future.cancel(true);
 			}
+		}
+	}
 
-			Environment result = response.getBody();
-			// 返回对象
-			return result;
+	private static <T> T await(Future<T> future) throws InterruptedException {
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
 		}
+	}
 
-		return null;
+	private static <T> T call(Callable<T> callable) {
+		try {
+			return callable.call();
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new IllegalStateException(e);
+		}
 	}
 
 	@Deprecated
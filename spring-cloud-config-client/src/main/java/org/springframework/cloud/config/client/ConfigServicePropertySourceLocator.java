@@ -18,7 +18,6 @@ package org.springframework.cloud.config.client;
 
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -235,7 +234,7 @@ public class ConfigServicePropertySourceLocator implements PropertySourceLocator
 		}
 
 		ResponseEntity<Environment> response = null;
-		List<MediaType> acceptHeader = Collections.singletonList(MediaType.parseMediaType(properties.getMediaType()));
+		List<MediaType> acceptHeader = requestTemplateFactory.getAccept();
 
 		// 对url进行请求
 		for (int i = 0; i < noOfUrls; i++) {
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2013-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.config.client;
+
+import org.springframework.cloud.config.environment.Environment;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Parks a request on the config server's watch endpoint, which answers as soon as it
+ * has a different version or with 304 Not Modified once its timeout expires.
+ */
+public class LongPollingConfigClientWatcher extends AbstractConfigClientWatcher {
+
+	public LongPollingConfigClientWatcher(ConfigClientProperties properties) {
+		super(properties);
+	}
+
+	public LongPollingConfigClientWatcher(ConfigClientProperties properties, RestTemplate restTemplate) {
+		super(properties, restTemplate);
+	}
+
+	@Override
+	public String awaitChange(ConfigClientProperties.Credentials credentials, String version) {
+		String url = getBaseUri(credentials) + getEnvironmentPath() + "/watch?"
+				+ (getLabel() == null ? "useDefaultLabel&" : "") + "version=" + (version != null ? version : "");
+		ResponseEntity<Environment> response = getRestTemplate().exchange(url, HttpMethod.GET,
+				new HttpEntity<Void>(createHeaders(credentials, MediaType.APPLICATION_JSON)), Environment.class);
+		if (response.getStatusCode() != HttpStatus.OK || response.getBody() == null) {
+			return null;
+		}
+		String newVersion = response.getBody().getVersion();
+		return newVersion != null ? newVersion : "";
+	}
+
+}
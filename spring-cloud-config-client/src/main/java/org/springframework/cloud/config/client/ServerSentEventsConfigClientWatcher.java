@@ -0,0 +1,86 @@
+/*
+ * Copyright 2013-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.config.client;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Keeps the config server's change event stream open until it reports a version
+ * different from the application's. The stream starts with the current version, so a
+ * change made while the client was not connected is not missed.
+ */
+public class ServerSentEventsConfigClientWatcher extends AbstractConfigClientWatcher {
+
+	private static final String ID = "id:";
+
+	private static final String EVENT = "event:";
+
+	public ServerSentEventsConfigClientWatcher(ConfigClientProperties properties) {
+		super(properties);
+	}
+
+	public ServerSentEventsConfigClientWatcher(ConfigClientProperties properties, RestTemplate restTemplate) {
+		super(properties, restTemplate);
+	}
+
+	@Override
+	public String awaitChange(ConfigClientProperties.Credentials credentials, String version) {
+		String url = getBaseUri(credentials) + "/watch?env=" + getEnvironmentPath().substring(1);
+		return getRestTemplate().execute(url, HttpMethod.GET,
+				request -> request.getHeaders().putAll(createHeaders(credentials, MediaType.TEXT_EVENT_STREAM)),
+				response -> read(response, version));
+	}
+
+	private String read(ClientHttpResponse response, String version) throws IOException {
+		try (BufferedReader reader = new BufferedReader(
+				new InputStreamReader(response.getBody(), StandardCharsets.UTF_8))) {
+			String id = null;
+			String event = null;
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.isEmpty()) {
+					if ("change".equals(event)) {
+						if (id == null) {
+							return "";
+						}
+						if (!id.equals(version)) {
+							return id;
+						}
+					}
+					id = null;
+					event = null;
+				}
+				else if (line.startsWith(ID)) {
+					id = line.substring(ID.length()).trim();
+				}
+				else if (line.startsWith(EVENT)) {
+					event = line.substring(EVENT.length()).trim();
+				}
+			}
+			return null;
+		}
+	}
+
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2013-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.config.environment;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * The property-level difference between two versions of an {@link Environment}: for
+ * each property source that changed, the keys that were added, changed or removed.
+ * Property sources are matched by name, so a property source that only exists in one of
+ * the versions shows up with all its keys added or removed.
+ */
+public class EnvironmentDiff {
+
+	private String name;
+
+	private String[] profiles;
+
+	private String label;
+
+	private String from;
+
+	private String to;
+
+	private List<PropertySourceDiff> propertySources = new ArrayList<>();
+
+	@JsonCreator
+	public EnvironmentDiff(@JsonProperty("name") String name, @JsonProperty("profiles") String[] profiles,
+			@JsonProperty("label") String label, @JsonProperty("from") String from, @JsonProperty("to") String to) {
+		this.name = name;
+		this.profiles = profiles;
+		this.label = label;
+		this.from = from;
+		this.to = to;
+	}
+
+	/**
+	 * Computes the changes needed to go from one version of an environment to another.
+	 * @param from the environment the client has
+	 * @param to the current environment
+	 * @return the difference between them
+	 */
+	public static EnvironmentDiff between(Environment from, Environment to) {
+		EnvironmentDiff diff = new EnvironmentDiff(to.getName(), to.getProfiles(), to.getLabel(), from.getVersion(),
+				to.getVersion());
+		Map<String, Map<?, ?>> before = sources(from);
+		Map<String, Map<?, ?>> after = sources(to);
+		for (Map.Entry<String, Map<?, ?>> source : after.entrySet()) {
+			Map<?, ?> previous = before.getOrDefault(source.getKey(), Collections.emptyMap());
+			PropertySourceDiff sourceDiff = new PropertySourceDiff(source.getKey());
+			for (Map.Entry<?, ?> entry : source.getValue().entrySet()) {
+				String key = String.valueOf(entry.getKey());
+				if (!previous.containsKey(entry.getKey())) {
+					sourceDiff.getAdded().put(key, entry.getValue());
+				}
+				else if (!Objects.equals(previous.get(entry.getKey()), entry.getValue())) {
+					sourceDiff.getChanged().put(key, entry.getValue());
+				}
+			}
+			for (Object key : previous.keySet()) {
+				if (!source.getValue().containsKey(key)) {
+					sourceDiff.getRemoved().add(String.valueOf(key));
+				}
+			}
+			diff.add(sourceDiff);
+		}
+		for (Map.Entry<String, Map<?, ?>> source : before.entrySet()) {
+			if (!after.containsKey(source.getKey())) {
+				PropertySourceDiff sourceDiff = new PropertySourceDiff(source.getKey());
+				for (Object key : source.getValue().keySet()) {
+					sourceDiff.getRemoved().add(String.valueOf(key));
+				}
+				diff.add(sourceDiff);
+			}
+		}
+		return diff;
+	}
+
+	private static Map<String, Map<?, ?>> sources(Environment environment) {
+		Map<String, Map<?, ?>> sources = new LinkedHashMap<>();
+		for (PropertySource source : environment.getPropertySources()) {
+			sources.put(source.getName(), source.getSource() != null ? source.getSource() : Collections.emptyMap());
+		}
+		return sources;
+	}
+
+	private void add(PropertySourceDiff sourceDiff) {
+		if (!sourceDiff.isEmpty()) {
+			this.propertySources.add(sourceDiff);
+		}
+	}
+
+	public String getName() {
+		return this.name;
+	}
+
+	public String[] getProfiles() {
+		return this.profiles;
+	}
+
+	public String getLabel() {
+		return this.label;
+	}
+
+	public String getFrom() {
+		return this.from;
+	}
+
+	public String getTo() {
+		return this.to;
+	}
+
+	public List<PropertySourceDiff> getPropertySources() {
+		return this.propertySources;
+	}
+
+	public void setPropertySources(List<PropertySourceDiff> propertySources) {
+		this.propertySources = propertySources;
+	}
+
+	@Override
+	public String toString() {
+		return "EnvironmentDiff [name=" + this.name + ", from=" + this.from + ", to=" + this.to
+				+ ", propertySources=" + this.propertySources + "]";
+	}
+
+	/**
+	 * The changes to a single property source.
+	 */
+	public static class PropertySourceDiff {
+
+		private String name;
+
+		private Map<String, Object> added = new LinkedHashMap<>();
+
+		private Map<String, Object> changed = new LinkedHashMap<>();
+
+		private List<String> removed = new ArrayList<>();
+
+		@JsonCreator
+		public PropertySourceDiff(@JsonProperty("name") String name) {
+			this.name = name;
+		}
+
+		public String getName() {
+			return this.name;
+		}
+
+		public Map<String, Object> getAdded() {
+			return this.added;
+		}
+
+		public void setAdded(Map<String, Object> added) {
+			this.added = added;
+		}
+
+		public Map<String, Object> getChanged() {
+			return this.changed;
+		}
+
+		public void setChanged(Map<String, Object> changed) {
+			this.changed = changed;
+		}
+
+		public List<String> getRemoved() {
+			return this.removed;
+		}
+
+		public void setRemoved(List<String> removed) {
+			this.removed = removed;
+		}
+
+		private boolean isEmpty() {
+			return this.added.isEmpty() && this.changed.isEmpty() && this.removed.isEmpty();
+		}
+
+		@Override
+		public String toString() {
+			return "PropertySourceDiff [name=" + this.name + "]";
+		}
+
+	}
+
+}
@@ -34,6 +34,12 @@ public final class EnvironmentMediaType {
 	 */
 	public static final String V2_JSON = "application/vnd.spring-cloud.config-server.v2+json";
 
+	/**
+	 * Constant for the Config Server V2 media type in CBOR, a binary encoding of the same
+	 * content as {@link #V2_JSON}.
+	 */
+	public static final String V2_CBOR = "application/vnd.spring-cloud.config-server.v2+cbor";
+
 	private EnvironmentMediaType() {
 	}
 
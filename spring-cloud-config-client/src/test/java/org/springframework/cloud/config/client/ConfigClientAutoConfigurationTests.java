@@ -17,12 +17,19 @@
 package org.springframework.cloud.config.client;
 
 import org.junit.Test;
+import org.mockito.Mockito;
 
 import org.springframework.beans.factory.BeanFactoryUtils;
 import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.context.ConfigurationPropertiesAutoConfiguration;
 import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.cloud.context.refresh.ContextRefresher;
 import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -47,4 +54,40 @@ public class ConfigClientAutoConfigurationTests {
 		context.close();
 	}
 
+	@Test
+	public void watchModes() {
+		ApplicationContextRunner runner = new ApplicationContextRunner()
+				.withConfiguration(AutoConfigurations.of(ConfigurationPropertiesAutoConfiguration.class,
+						ConfigClientAutoConfiguration.class))
+				.withUserConfiguration(RefresherConfiguration.class);
+		runner.run(context -> assertThat(context).doesNotHaveBean(ConfigClientVersionWatch.class)
+				.doesNotHaveBean(ConfigClientWatch.class));
+		// enabling the watch alone keeps the scheduled state check it always was
+		runner.withPropertyValues("spring.cloud.config.watch.enabled=true")
+				.run(context -> assertThat(context).hasSingleBean(ConfigClientWatch.class)
+						.doesNotHaveBean(ConfigClientVersionWatch.class));
+		runner.withPropertyValues("spring.cloud.config.watch.enabled=true", "spring.cloud.config.watch.mode=long-poll")
+				.run(context -> assertThat(context).hasSingleBean(ConfigClientVersionWatch.class)
+						.doesNotHaveBean(ConfigClientWatch.class).getBean(ConfigClientWatcher.class)
+						.isInstanceOf(LongPollingConfigClientWatcher.class));
+		runner.withPropertyValues("spring.cloud.config.watch.enabled=true", "spring.cloud.config.watch.mode=poll",
+				"spring.cloud.config.watch.poll-interval=60000")
+				.run(context -> assertThat(context).hasSingleBean(ConfigClientVersionWatch.class)
+						.doesNotHaveBean(ConfigClientWatch.class).getBean(ConfigClientWatcher.class)
+						.isInstanceOf(ConditionalPollingConfigClientWatcher.class));
+		runner.withPropertyValues("spring.cloud.config.watch.enabled=true", "spring.cloud.config.watch.mode=state")
+				.run(context -> assertThat(context).hasSingleBean(ConfigClientWatch.class)
+						.doesNotHaveBean(ConfigClientVersionWatch.class));
+	}
+
+	@Configuration(proxyBeanMethods = false)
+	static class RefresherConfiguration {
+
+		@Bean
+		ContextRefresher contextRefresher() {
+			return Mockito.mock(ContextRefresher.class);
+		}
+
+	}
+
 }
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2013-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.config.client;
+
+import java.io.File;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Collections;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import org.springframework.cloud.config.environment.Environment;
+import org.springframework.cloud.config.environment.PropertySource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+public class ConfigClientSnapshotStoreTests {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void roundTripPerLabel() {
+		File directory = new File(this.folder.getRoot(), "snapshots");
+		ConfigClientSnapshotStore store = new ConfigClientSnapshotStore(directory.getAbsolutePath());
+		store.write("app", "dev,cloud", "feature/x", environment("v1", "a"));
+		store.write("app", "dev,cloud", "main", environment("v2", "b"));
+		Environment snapshot = store.read("app", "dev,cloud", "feature/x");
+		assertThat(snapshot.getVersion()).isEqualTo("v1");
+		assertThat(snapshot.getPropertySources().get(0).getSource().get("foo")).isEqualTo("a");
+		assertThat(store.read("app", "dev,cloud", "main").getVersion()).isEqualTo("v2");
+		assertThat(store.read("app", "dev", "main")).isNull();
+		assertThat(directory.list()).hasSize(2);
+	}
+
+	@Test
+	public void directoryIsCreatedPrivate() throws Exception {
+		assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+		File directory = new File(this.folder.getRoot(), "snapshots");
+		new ConfigClientSnapshotStore(directory.getAbsolutePath()).write("app", "dev", null, environment("v1", "a"));
+		assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(directory.toPath())))
+				.isEqualTo("rwx------");
+	}
+
+	@Test
+	public void sharedDirectoryIsNotUsed() throws Exception {
+		assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+		File directory = new File(this.folder.getRoot(), "snapshots");
+		ConfigClientSnapshotStore store = new ConfigClientSnapshotStore(directory.getAbsolutePath());
+		store.write("app", "dev", null, environment("v1", "a"));
+		Files.setPosixFilePermissions(directory.toPath(), PosixFilePermissions.fromString("rwxrwxrwx"));
+		assertThat(store.read("app", "dev", null)).isNull();
+		store.write("app", "dev", "main", environment("v2", "b"));
+		assertThat(directory.list()).hasSize(1);
+	}
+
+	@Test
+	public void sameByVersionOrContent() {
+		assertThat(ConfigClientSnapshotStore.isSame(environment("v1", "a"), environment("v1", "b"))).isTrue();
+		assertThat(ConfigClientSnapshotStore.isSame(environment("v1", "a"), environment("v2", "a"))).isFalse();
+		assertThat(ConfigClientSnapshotStore.isSame(environment(null, "a"), environment(null, "a"))).isTrue();
+		assertThat(ConfigClientSnapshotStore.isSame(environment(null, "a"), environment(null, "b"))).isFalse();
+	}
+
+	private static Environment environment(String version, String value) {
+		Environment environment = new Environment("app", new String[] { "dev" }, null, version, null);
+		environment.add(new PropertySource("one", Collections.singletonMap("foo", value)));
+		return environment;
+	}
+
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2013-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.config.client;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import org.springframework.cloud.context.refresh.ContextRefresher;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.web.client.ResourceAccessException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ConfigClientVersionWatchTests {
+
+	private ContextRefresher refresher = Mockito.mock(ContextRefresher.class);
+
+	private ConfigClientWatcher watcher = Mockito.mock(ConfigClientWatcher.class);
+
+	private ConfigClientProperties properties = new ConfigClientProperties(new StandardEnvironment());
+
+	private ConfigClientVersionWatch watch;
+
+	@Before
+	public void init() {
+		this.properties.setUri(new String[] { "http://one:8888", "http://two:8888" });
+		this.watch = new ConfigClientVersionWatch(this.refresher, this.properties, this.watcher);
+		this.watch.setEnvironment(new MockEnvironment().withProperty("config.client.version", "v1"));
+	}
+
+	@Test
+	public void unchangedVersionDoesNotRefresh() throws Exception {
+		assertThat(this.watch.watch()).isTrue();
+		verify(this.watcher).awaitChange(any(), eq("v1"));
+		verify(this.refresher, never()).refresh();
+	}
+
+	@Test
+	public void newVersionRefreshesOnce() throws Exception {
+		when(this.watcher.awaitChange(any(), eq("v1"))).thenReturn("v2");
+		assertThat(this.watch.watch()).isTrue();
+		assertThat(this.watch.watch()).isTrue();
+		verify(this.watcher).awaitChange(any(), eq("v2"));
+		verify(this.refresher).refresh();
+	}
+
+	@Test
+	public void failsOverToNextServer() throws Exception {
+		when(this.watcher.awaitChange(any(), eq("v1"))).thenThrow(new ResourceAccessException("one"))
+				.thenReturn("v2");
+		assertThat(this.watch.watch()).isTrue();
+		verify(this.refresher).refresh();
+	}
+
+	@Test
+	public void backoffGrowsWithJitterUpToMax() throws Exception {
+		when(this.watcher.awaitChange(any(), any())).thenThrow(new ResourceAccessException("down"));
+		this.watch.setInitialBackoff(100);
+		this.watch.setMaxBackoff(400);
+		assertThat(this.watch.watch()).isFalse();
+		assertThat(this.watch.backoff()).isBetween(50L, 100L);
+		this.watch.watch();
+		assertThat(this.watch.backoff()).isBetween(100L, 200L);
+		for (int i = 0; i < 40; i++) {
+			this.watch.watch();
+		}
+		assertThat(this.watch.backoff()).isBetween(200L, 400L);
+	}
+
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2013-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.config.client;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.header;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withServerError;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withStatus;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+public class ConfigClientWatcherTests {
+
+	private RestTemplate restTemplate = new RestTemplate();
+
+	private MockRestServiceServer server = MockRestServiceServer.bindTo(this.restTemplate).build();
+
+	private ConfigClientProperties properties = new ConfigClientProperties(new StandardEnvironment());
+
+	private ConfigClientProperties.Credentials credentials;
+
+	@Before
+	public void init() {
+		this.properties.setName("app");
+		this.properties.setUri(new String[] { "http://localhost:8888/" });
+		this.credentials = this.properties.getCredentials(0);
+	}
+
+	@Test
+	public void longPollNotModified() throws Exception {
+		LongPollingConfigClientWatcher watcher = new LongPollingConfigClientWatcher(this.properties,
+				this.restTemplate);
+		this.server.expect(requestTo("http://localhost:8888/app/default/watch?useDefaultLabel&version=v1"))
+				.andRespond(withStatus(HttpStatus.NOT_MODIFIED));
+		assertThat(watcher.awaitChange(this.credentials, "v1")).isNull();
+		this.server.verify();
+	}
+
+	@Test
+	public void longPollNewVersionWithFirstLabel() throws Exception {
+		this.properties.setLabel("feature/x,main");
+		LongPollingConfigClientWatcher watcher = new LongPollingConfigClientWatcher(this.properties,
+				this.restTemplate);
+		this.server.expect(requestTo("http://localhost:8888/app/default/feature(_)x/watch?version=v1"))
+				.andRespond(withSuccess("{\"name\":\"app\",\"version\":\"v2\"}", MediaType.APPLICATION_JSON));
+		assertThat(watcher.awaitChange(this.credentials, "v1")).isEqualTo("v2");
+		this.server.verify();
+	}
+
+	@Test
+	public void longPollUnversionedChange() throws Exception {
+		LongPollingConfigClientWatcher watcher = new LongPollingConfigClientWatcher(this.properties,
+				this.restTemplate);
+		this.server.expect(requestTo("http://localhost:8888/app/default/watch?useDefaultLabel&version="))
+				.andRespond(withSuccess("{\"name\":\"app\"}", MediaType.APPLICATION_JSON));
+		assertThat(watcher.awaitChange(this.credentials, null)).isEqualTo("");
+	}
+
+	@Test(expected = HttpServerErrorException.class)
+	public void longPollServerError() throws Exception {
+		LongPollingConfigClientWatcher watcher = new LongPollingConfigClientWatcher(this.properties,
+				this.restTemplate);
+		this.server.expect(requestTo("http://localhost:8888/app/default/watch?useDefaultLabel&version=v1"))
+				.andRespond(withServerError());
+		watcher.awaitChange(this.credentials, "v1");
+	}
+
+	@Test
+	public void eventStreamSkipsCurrentVersion() throws Exception {
+		ServerSentEventsConfigClientWatcher watcher = new ServerSentEventsConfigClientWatcher(this.properties,
+				this.restTemplate);
+		this.server.expect(requestTo("http://localhost:8888/watch?env=app/default"))
+				.andExpect(header(HttpHeaders.ACCEPT, MediaType.TEXT_EVENT_STREAM_VALUE))
+				.andRespond(withSuccess("id:v1\nevent:change\ndata:{}\n\nid:v2\nevent:change\ndata:{}\n\n",
+						MediaType.TEXT_EVENT_STREAM));
+		assertThat(watcher.awaitChange(this.credentials, "v1")).isEqualTo("v2");
+	}
+
+	@Test
+	public void eventStreamEndsWithoutChange() throws Exception {
+		ServerSentEventsConfigClientWatcher watcher = new ServerSentEventsConfigClientWatcher(this.properties,
+				this.restTemplate);
+		this.server.expect(requestTo("http://localhost:8888/watch?env=app/default"))
+				.andRespond(withSuccess("id:v1\nevent:change\ndata:{}\n\n", MediaType.TEXT_EVENT_STREAM));
+		assertThat(watcher.awaitChange(this.credentials, "v1")).isNull();
+	}
+
+	@Test
+	public void conditionalPollSendsETag() throws Exception {
+		ConditionalPollingConfigClientWatcher watcher = new ConditionalPollingConfigClientWatcher(this.properties,
+				this.restTemplate, 0);
+		HttpHeaders headers = new HttpHeaders();
+		headers.setETag("\"v1\"");
+		this.server.expect(requestTo("http://localhost:8888/app/default"))
+				.andRespond(withSuccess("{\"name\":\"app\",\"version\":\"v1\"}", MediaType.APPLICATION_JSON)
+						.headers(headers));
+		this.server.expect(requestTo("http://localhost:8888/app/default"))
+				.andExpect(header(HttpHeaders.IF_NONE_MATCH, "\"v1\""))
+				.andRespond(withStatus(HttpStatus.NOT_MODIFIED));
+		this.server.expect(requestTo("http://localhost:8888/app/default"))
+				.andRespond(withSuccess("{\"name\":\"app\",\"version\":\"v2\"}", MediaType.APPLICATION_JSON));
+		assertThat(watcher.awaitChange(this.credentials, "v1")).isNull();
+		assertThat(watcher.awaitChange(this.credentials, "v1")).isNull();
+		assertThat(watcher.awaitChange(this.credentials, "v1")).isEqualTo("v2");
+		this.server.verify();
+	}
+
+}
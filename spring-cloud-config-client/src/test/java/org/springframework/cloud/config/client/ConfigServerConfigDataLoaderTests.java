@@ -0,0 +1,215 @@
+/*
+ * Copyright 2013-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.config.client;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.LogFactory;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import org.springframework.boot.ConfigurableBootstrapContext;
+import org.springframework.boot.context.config.ConfigData;
+import org.springframework.boot.context.config.ConfigDataLoaderContext;
+import org.springframework.boot.context.config.Profiles;
+import org.springframework.cloud.config.environment.Environment;
+import org.springframework.cloud.config.environment.PropertySource;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ConfigServerConfigDataLoaderTests {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final Map<String, Answer> answers = new ConcurrentHashMap<>();
+
+	private final AtomicInteger requests = new AtomicInteger();
+
+	private ConfigClientProperties properties = new ConfigClientProperties(new StandardEnvironment());
+
+	private ConfigServerConfigDataLoader loader = new ConfigServerConfigDataLoader(
+			LogFactory.getLog(ConfigServerConfigDataLoaderTests.class));
+
+	private ConfigDataLoaderContext context = mock(ConfigDataLoaderContext.class);
+
+	private ConfigServerConfigDataResource resource;
+
+	@Before
+	public void init() {
+		this.properties.setName("app");
+		RestTemplate restTemplate = mock(RestTemplate.class, invocation -> {
+			if (!"exchange".equals(invocation.getMethod().getName())) {
+				return null;
+			}
+			this.requests.incrementAndGet();
+			String url = invocation.getArgument(0);
+			Object[] arguments = invocation.getArguments();
+			String key = url.substring(0, url.indexOf("/{")) + (arguments.length > 6 ? "/" + arguments[6] : "");
+			return this.answers.get(key).answer();
+		});
+		ConfigurableBootstrapContext bootstrap = mock(ConfigurableBootstrapContext.class);
+		when(this.context.getBootstrapContext()).thenReturn(bootstrap);
+		when(bootstrap.get(RestTemplate.class)).thenReturn(restTemplate);
+		when(bootstrap.get(ConfigClientRequestTemplateFactory.class)).thenReturn(
+				new ConfigClientRequestTemplateFactory(LogFactory.getLog(getClass()), this.properties));
+		Profiles profiles = mock(Profiles.class);
+		when(profiles.getAccepted()).thenReturn(Collections.singletonList("default"));
+		this.resource = new ConfigServerConfigDataResource(this.properties, false, profiles);
+	}
+
+	@Test
+	public void hedgedRequestTakesFirstAnswer() {
+		this.properties.setUri(new String[] { "http://slow", "http://fast" });
+		this.properties.setHedgeDelay(50);
+		this.answers.put("http://slow", () -> {
+			Thread.sleep(3000);
+			return ok("slow");
+		});
+		this.answers.put("http://fast", () -> ok("fast"));
+		long start = System.currentTimeMillis();
+		Environment environment = this.loader.getRemoteEnvironment(this.context, this.resource, "", null);
+		assertThat(environment.getVersion()).isEqualTo("fast");
+		assertThat(System.currentTimeMillis() - start).isLessThan(2000);
+	}
+
+	@Test
+	public void hedgedRequestDoesNotWaitForFailedServer() {
+		this.properties.setUri(new String[] { "http://down", "http://up" });
+		this.properties.setHedgeDelay(5000);
+		this.answers.put("http://down", () -> {
+			throw new ResourceAccessException("down");
+		});
+		this.answers.put("http://up", () -> ok("up"));
+		long start = System.currentTimeMillis();
+		Environment environment = this.loader.getRemoteEnvironment(this.context, this.resource, "", null);
+		assertThat(environment.getVersion()).isEqualTo("up");
+		assertThat(System.currentTimeMillis() - start).isLessThan(2000);
+	}
+
+	@Test
+	public void hedgedRequestOnlyAsksPreferredServerWhenItIsQuick() {
+		this.properties.setUri(new String[] { "http://one", "http://two" });
+		this.properties.setHedgeDelay(2000);
+		this.answers.put("http://one", () -> ok("one"));
+		this.answers.put("http://two", () -> ok("two"));
+		assertThat(this.loader.getRemoteEnvironment(this.context, this.resource, "", null).getVersion())
+				.isEqualTo("one");
+		assertThat(this.requests.get()).isEqualTo(1);
+	}
+
+	@Test(expected = ResourceAccessException.class)
+	public void hedgedRequestFailsWhenAllServersFail() {
+		this.properties.setUri(new String[] { "http://one", "http://two" });
+		this.properties.setHedgeDelay(10);
+		this.answers.put("http://one", () -> {
+			throw new ResourceAccessException("one");
+		});
+		this.answers.put("http://two", () -> {
+			throw new ResourceAccessException("two");
+		});
+		this.loader.getRemoteEnvironment(this.context, this.resource, "", null);
+	}
+
+	@Test
+	public void parallelLabelsKeepLabelOrder() {
+		this.properties.setUri(new String[] { "http://server" });
+		this.properties.setLabel("first,second,third");
+		this.properties.setParallelLabels(true);
+		this.answers.put("http://server/first", () -> {
+			Thread.sleep(500);
+			throw new HttpClientErrorException(HttpStatus.NOT_FOUND);
+		});
+		this.answers.put("http://server/second", () -> {
+			Thread.sleep(500);
+			return ok("second");
+		});
+		this.answers.put("http://server/third", () -> ok("third"));
+		long start = System.currentTimeMillis();
+		ConfigData data = this.loader.doLoad(this.context, this.resource);
+		assertThat(System.currentTimeMillis() - start).isLessThan(900);
+		assertThat(data.getPropertySources()).extracting(org.springframework.core.env.PropertySource::getName)
+				.contains("configserver:second");
+		assertThat(this.requests.get()).isEqualTo(3);
+	}
+
+	@Test
+	public void fallsBackToSnapshotWhenServerIsDown() throws Exception {
+		this.properties.setUri(new String[] { "http://server" });
+		this.properties.setFailFast(true);
+		this.properties.getSnapshot().setEnabled(true);
+		this.properties.getSnapshot().setDirectory(new File(this.folder.getRoot(), "snapshots").getAbsolutePath());
+		this.answers.put("http://server", () -> ok("v1"));
+		this.loader.doLoad(this.context, this.resource);
+		this.answers.put("http://server", () -> {
+			throw new ResourceAccessException("down");
+		});
+		ConfigData data = this.loader.doLoad(this.context, this.resource);
+		assertThat(data.getPropertySources()).extracting(org.springframework.core.env.PropertySource::getName)
+				.contains("configserver:v1");
+	}
+
+	@Test
+	public void startsFromSnapshotAndRevalidatesInBackground() throws Exception {
+		this.properties.setUri(new String[] { "http://server" });
+		this.properties.getSnapshot().setEnabled(true);
+		String directory = new File(this.folder.getRoot(), "snapshots").getAbsolutePath();
+		this.properties.getSnapshot().setDirectory(directory);
+		ConfigClientSnapshotStore store = new ConfigClientSnapshotStore(directory);
+		store.write("app", "default", null, ok("v1").getBody());
+		this.answers.put("http://server", () -> {
+			Thread.sleep(500);
+			return ok("v2");
+		});
+		long start = System.currentTimeMillis();
+		ConfigData data = this.loader.doLoad(this.context, this.resource);
+		assertThat(System.currentTimeMillis() - start).isLessThan(400);
+		assertThat(data.getPropertySources()).extracting(org.springframework.core.env.PropertySource::getName)
+				.contains("configserver:v1");
+		for (int i = 0; i < 50 && "v1".equals(store.read("app", "default", null).getVersion()); i++) {
+			Thread.sleep(100);
+		}
+		assertThat(store.read("app", "default", null).getVersion()).isEqualTo("v2");
+	}
+
+	private static ResponseEntity<Environment> ok(String version) {
+		Environment environment = new Environment("app", new String[] { "default" }, null, version, null);
+		environment.add(new PropertySource(version, Collections.singletonMap("from", version)));
+		return ResponseEntity.ok(environment);
+	}
+
+	interface Answer {
+
+		ResponseEntity<Environment> answer() throws Exception;
+
+	}
+
+}
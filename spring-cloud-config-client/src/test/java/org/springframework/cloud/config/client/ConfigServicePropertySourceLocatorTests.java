@@ -51,6 +51,7 @@ import org.springframework.http.client.ClientHttpRequestExecution;
 import org.springframework.http.client.ClientHttpRequestFactory;
 import org.springframework.http.client.ClientHttpRequestInterceptor;
 import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.mock.http.client.MockClientHttpRequest;
 import org.springframework.web.client.RestTemplate;
 
@@ -297,6 +298,21 @@ public class ConfigServicePropertySourceLocatorTests {
 		}
 	}
 
+	@Test
+	public void pooledClientIsSharedBetweenFactories() {
+		ConfigClientProperties defaults = new ConfigClientProperties(this.environment);
+		defaults.getPool().setEnabled(true);
+		HttpComponentsClientHttpRequestFactory first = (HttpComponentsClientHttpRequestFactory) factory(defaults)
+				.create().getRequestFactory();
+		HttpComponentsClientHttpRequestFactory second = (HttpComponentsClientHttpRequestFactory) factory(defaults)
+				.create().getRequestFactory();
+		assertThat(second.getHttpClient()).isSameAs(first.getHttpClient());
+		defaults.getPool().setMaxPerRoute(1);
+		HttpComponentsClientHttpRequestFactory other = (HttpComponentsClientHttpRequestFactory) factory(defaults)
+				.create().getRequestFactory();
+		assertThat(other.getHttpClient()).isNotSameAs(first.getHttpClient());
+	}
+
 	private ConfigClientRequestTemplateFactory factory(ConfigClientProperties properties) {
 		return new ConfigClientRequestTemplateFactory(LogFactory.getLog(getClass()), properties);
 	}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2013-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.config.environment;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import org.springframework.cloud.config.environment.EnvironmentDiff.PropertySourceDiff;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class EnvironmentDiffTests {
+
+	@Test
+	public void diffReportsAddedChangedAndRemovedKeys() {
+		Map<String, Object> oldApp = new HashMap<>();
+		oldApp.put("a", "1");
+		oldApp.put("b", "2");
+		oldApp.put("c", "3");
+		Map<String, Object> newApp = new HashMap<>();
+		newApp.put("a", "1");
+		newApp.put("b", "two");
+		newApp.put("d", "4");
+		Map<String, Object> unchanged = new HashMap<>();
+		unchanged.put("x", "y");
+
+		Environment from = new Environment("foo", new String[] { "default" }, "master", "v1", null);
+		from.add(new PropertySource("foo.yml", oldApp));
+		from.add(new PropertySource("application.yml", unchanged));
+		from.add(new PropertySource("gone.yml", unchanged));
+		Environment to = new Environment("foo", new String[] { "default" }, "master", "v2", null);
+		to.add(new PropertySource("foo.yml", newApp));
+		to.add(new PropertySource("application.yml", unchanged));
+
+		EnvironmentDiff diff = EnvironmentDiff.between(from, to);
+
+		assertThat(diff.getFrom()).isEqualTo("v1");
+		assertThat(diff.getTo()).isEqualTo("v2");
+		assertThat(diff.getPropertySources()).extracting(PropertySourceDiff::getName).containsExactly("foo.yml",
+				"gone.yml");
+		PropertySourceDiff foo = diff.getPropertySources().get(0);
+		assertThat(foo.getAdded()).containsOnlyKeys("d");
+		assertThat(foo.getChanged()).containsEntry("b", "two").hasSize(1);
+		assertThat(foo.getRemoved()).containsExactly("c");
+		assertThat(diff.getPropertySources().get(1).getRemoved()).containsExactly("x");
+	}
+
+	@Test
+	public void diffRoundTripsThroughJson() throws Exception {
+		Environment from = new Environment("foo", new String[] { "default" }, "master", "v1", null);
+		Environment to = new Environment("foo", new String[] { "default" }, "master", "v2", null);
+		to.add(new PropertySource("foo.yml", Collections.singletonMap("a", "1")));
+		ObjectMapper mapper = new ObjectMapper();
+
+		EnvironmentDiff diff = mapper.readValue(mapper.writeValueAsString(EnvironmentDiff.between(from, to)),
+				EnvironmentDiff.class);
+
+		assertThat(diff.getTo()).isEqualTo("v2");
+		assertThat(diff.getPropertySources().get(0).getAdded()).containsEntry("a", "1");
+	}
+
+}
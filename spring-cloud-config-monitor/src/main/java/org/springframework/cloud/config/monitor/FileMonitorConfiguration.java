@@ -18,6 +18,7 @@ package org.springframework.cloud.config.monitor;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
 import java.nio.file.FileSystems;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
@@ -29,15 +30,21 @@ import java.nio.file.WatchEvent;
 import java.nio.file.WatchKey;
 import java.nio.file.WatchService;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cloud.config.server.environment.AbstractScmEnvironmentRepository;
 import org.springframework.cloud.config.server.environment.NativeEnvironmentRepository;
 import org.springframework.context.ResourceLoaderAware;
@@ -58,6 +65,10 @@ import org.springframework.util.PatternMatchUtils;
  * with the paths of the files. This applies to the source files of a local git repository
  * (i.e. a git repository with a "file:" URI) or to a native repository.
  *
+ * Directories are registered once and only the paths named by the watch events are
+ * reported, so a change does not re-walk the tree. Events that arrive close together are
+ * sent to the endpoint as one notification.
+ *
  * @author Dave Syer
  * @author Gilles Robert
  *
@@ -83,6 +94,13 @@ public class FileMonitorConfiguration implements SmartLifecycle, ResourceLoaderA
 
 	private Set<Path> directory;
 
+	/**
+	 * Directories that are being watched, so that only new ones are registered.
+	 */
+	private final Map<Path, WatchKey> registered = new ConcurrentHashMap<>();
+
+	private long debounce = 500;
+
 	private int phase;
 
 	private boolean autoStartup = true;
@@ -167,6 +185,7 @@ public class FileMonitorConfiguration implements SmartLifecycle, ResourceLoaderA
 				catch (IOException e) {
 					log.error("Failed to close watcher for " + this.directory.toString(), e);
 				}
+				this.registered.clear();
 			}
 			this.running = false;
 		}
@@ -178,12 +197,29 @@ public class FileMonitorConfiguration implements SmartLifecycle, ResourceLoaderA
 		callback.run();
 	}
 
+	/**
+	 * Events that arrive within this many milliseconds of each other are reported
+	 * together, so that a burst of changes (a checkout, an editor saving through a temp
+	 * file) results in one notification. A batch is never held back for more than ten
+	 * times this period. Set to 0 to report whatever is pending on each poll.
+	 * @param debounce the quiet period in milliseconds
+	 */
+	@Value("${spring.cloud.config.server.monitor.debounce:500}")
+	public void setDebounce(long debounce) {
+		this.debounce = debounce;
+	}
+
 	@Scheduled(fixedRateString = "${spring.cloud.config.server.monitor.fixedDelay:5000}")
 	public void poll() {
-		for (File file : filesFromEvents()) {
-			this.endpoint.notifyByPath(new HttpHeaders(),
-					Collections.<String, Object>singletonMap("path", file.getAbsolutePath()));
+		Set<File> files = filesFromEvents();
+		if (files.isEmpty()) {
+			return;
+		}
+		List<String> paths = new ArrayList<>();
+		for (File file : files) {
+			paths.add(file.getAbsolutePath());
 		}
+		this.endpoint.notifyByPath(new HttpHeaders(), Collections.<String, Object>singletonMap("path", paths));
 	}
 
 	private Set<Path> getFileRepo() {
@@ -227,50 +263,68 @@ public class FileMonitorConfiguration implements SmartLifecycle, ResourceLoaderA
 		if (this.watcher == null) {
 			return files;
 		}
-		WatchKey key = this.watcher.poll();
-		while (key != null) {
-			for (WatchEvent<?> event : key.pollEvents()) {
-				if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE
-						|| event.kind() == StandardWatchEventKinds.ENTRY_MODIFY) {
-					Path item = (Path) event.context();
-					File file = new File(
-							((Path) key.watchable()).toAbsolutePath() + File.separator + item.getFileName());
-					if (file.isDirectory()) {
-						files.addAll(walkDirectory(file.toPath()));
-					}
-					else {
-						if (!file.getPath().contains(".git")
-								&& !PatternMatchUtils.simpleMatch(this.excludes, file.getName())) {
-							if (log.isDebugEnabled()) {
-								log.debug("Watch Event: " + event.kind() + ": " + file);
-							}
-							files.add(file);
-						}
-					}
+		long deadline = System.currentTimeMillis() + this.debounce * 10;
+		try {
+			WatchKey key = this.watcher.poll();
+			while (key != null) {
+				collect(key, files);
+				key.reset();
+				key = this.watcher.poll();
+				// 防抖: 短时间内仍有新事件则继续收集, 合并为一次通知
+				long wait = Math.min(this.debounce, deadline - System.currentTimeMillis());
+				if (key == null && !files.isEmpty() && wait > 0) {
+					key = this.watcher.poll(wait, TimeUnit.MILLISECONDS);
 				}
-				else if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
-					if (log.isDebugEnabled()) {
-						log.debug("Watch Event: " + event.kind() + ": context: " + event.context());
-					}
-					if (event.context() != null && event.context() instanceof Path) {
-						files.addAll(walkDirectory((Path) event.context()));
-					}
-					else {
-						for (Path path : this.directory) {
-							files.addAll(walkDirectory(path));
-						}
-					}
+			}
+		}
+		catch (ClosedWatchServiceException e) {
+			// stopped while polling
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return files;
+	}
+
+	private void collect(WatchKey key, Set<File> files) {
+		Path directory = (Path) key.watchable();
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if (log.isDebugEnabled()) {
+				log.debug("Watch Event: " + event.kind() + ": " + directory + ": context: " + event.context());
+			}
+			if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+				// events for this directory were lost, so report everything in it
+				files.addAll(walkDirectory(directory));
+				continue;
+			}
+			Path path = directory.resolve((Path) event.context());
+			if (isExcluded(path)) {
+				continue;
+			}
+			if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+				if (this.registered.containsKey(path)) {
+					unregister(path);
 				}
 				else {
-					if (log.isDebugEnabled()) {
-						log.debug("Watch Event: " + event.kind() + ": context: " + event.context());
-					}
+					files.add(path.toFile());
 				}
 			}
-			key.reset();
-			key = this.watcher.poll();
+			else if (Files.isDirectory(path)) {
+				// a modified directory only means that its entries changed, and those
+				// have their own events; a new one may already have files in it
+				if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+					files.addAll(walkDirectory(path));
+				}
+			}
+			else {
+				files.add(path.toFile());
+			}
 		}
-		return files;
+	}
+
+	private boolean isExcluded(Path path) {
+		return path.toString().contains(".git")
+				|| PatternMatchUtils.simpleMatch(this.excludes, path.getFileName().toString());
 	}
 
 	private Set<File> walkDirectory(Path directory) {
@@ -306,11 +360,15 @@ public class FileMonitorConfiguration implements SmartLifecycle, ResourceLoaderA
 	}
 
 	private void registerWatch(Path dir) throws IOException {
+		if (this.registered.containsKey(dir)) {
+			return;
+		}
 		if (log.isDebugEnabled()) {
 			log.debug("registering: " + dir + " for file creation events");
 		}
 		try {
-			dir.register(this.watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+			this.registered.put(dir, dir.register(this.watcher, StandardWatchEventKinds.ENTRY_CREATE,
+					StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE));
 		}
 		catch (IOException e) {
 			throw e;
@@ -320,4 +378,15 @@ public class FileMonitorConfiguration implements SmartLifecycle, ResourceLoaderA
 		}
 	}
 
+	private void unregister(Path dir) {
+		for (Iterator<Map.Entry<Path, WatchKey>> iterator = this.registered.entrySet().iterator(); iterator
+				.hasNext();) {
+			Map.Entry<Path, WatchKey> entry = iterator.next();
+			if (entry.getKey().startsWith(dir)) {
+				entry.getValue().cancel();
+				iterator.remove();
+			}
+		}
+	}
+
 }
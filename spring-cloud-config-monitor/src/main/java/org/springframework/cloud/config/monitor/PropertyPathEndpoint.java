@@ -16,6 +16,7 @@
 
 package org.springframework.cloud.config.monitor;
 
+import java.io.FileNotFoundException;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashSet;
@@ -26,11 +27,21 @@ import java.util.Set;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cloud.bus.event.RefreshRemoteApplicationEvent;
+import org.springframework.cloud.config.environment.Environment;
+import org.springframework.cloud.config.server.environment.AbstractScmEnvironmentRepository;
+import org.springframework.cloud.config.server.environment.EnvironmentChangeMonitor;
+import org.springframework.cloud.config.server.environment.EnvironmentRepository;
+import org.springframework.cloud.config.server.environment.NativeEnvironmentRepository;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.ApplicationEventPublisherAware;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.util.ResourceUtils;
 import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
@@ -47,7 +58,7 @@ import org.springframework.web.bind.annotation.RestController;
  */
 @RestController
 @RequestMapping(path = "${spring.cloud.config.monitor.endpoint.path:}/monitor")
-public class PropertyPathEndpoint implements ApplicationEventPublisherAware {
+public class PropertyPathEndpoint implements ApplicationEventPublisherAware, DisposableBean {
 
 	private static Log log = LogFactory.getLog(PropertyPathEndpoint.class);
 
@@ -57,6 +68,18 @@ public class PropertyPathEndpoint implements ApplicationEventPublisherAware {
 
 	private String busId;
 
+	private EnvironmentChangeMonitor environmentChangeMonitor;
+
+	private EnvironmentRepository environmentRepository;
+
+	private final RefreshEventAggregator aggregator = new RefreshEventAggregator(this::refresh);
+
+	private final SearchPathMatcher searchPathMatcher = new SearchPathMatcher();
+
+	private boolean effectiveChangesOnly;
+
+	private boolean prewarm;
+
 	public PropertyPathEndpoint(PropertyPathNotificationExtractor extractor, String busId) {
 		this.extractor = extractor;
 		this.busId = busId;
@@ -71,6 +94,100 @@ public class PropertyPathEndpoint implements ApplicationEventPublisherAware {
 		this.applicationEventPublisher = applicationEventPublisher;
 	}
 
+	/**
+	 * Clients watching the server for changes are told straight away about the paths
+	 * reported here instead of on the monitor's next scheduled check.
+	 * @param environmentChangeMonitor the monitor to trigger
+	 */
+	@Autowired(required = false)
+	public void setEnvironmentChangeMonitor(EnvironmentChangeMonitor environmentChangeMonitor) {
+		this.environmentChangeMonitor = environmentChangeMonitor;
+	}
+
+	/**
+	 * The repository to pre-warm, see {@link #setPrewarm(boolean)}.
+	 * @param environmentRepository the repository to pre-warm
+	 */
+	@Autowired(required = false)
+	public void setEnvironmentRepository(ObjectProvider<EnvironmentRepository> environmentRepository) {
+		this.environmentRepository = environmentRepository.getIfUnique();
+	}
+
+	/**
+	 * Time in milliseconds for which notifications are collected before the refresh
+	 * events are published, so that several pushes in quick succession lead to one
+	 * refresh of each service. With 0 (the default) events are published straight away.
+	 * @param refreshWindow the window in milliseconds
+	 */
+	@Value("${spring.cloud.config.monitor.refresh-window:0}")
+	public void setRefreshWindow(long refreshWindow) {
+		this.aggregator.setWindow(refreshWindow);
+	}
+
+	/**
+	 * Files in directories that a search path with an <code>{application}</code> or
+	 * <code>{profile}</code> placeholder maps to a single application or profile only
+	 * refresh that application or profile, e.g. {@code foo/application.yml} with a search
+	 * path of <code>{application}</code> refreshes {@code foo} rather than every service.
+	 * @param repositories the git and svn repositories of the server
+	 */
+	@Autowired(required = false)
+	public void setScmRepositories(List<AbstractScmEnvironmentRepository> repositories) {
+		for (AbstractScmEnvironmentRepository repository : repositories) {
+			if (repository.getSearchPaths() == null) {
+				continue;
+			}
+			String root = null;
+			if (repository.getUri() != null && repository.getUri().startsWith("file:")) {
+				try {
+					root = ResourceUtils.getFile(repository.getUri()).getAbsolutePath();
+				}
+				catch (FileNotFoundException e) {
+					// only relative paths can be matched then
+				}
+			}
+			this.searchPathMatcher.add(root, repository.getSearchPaths());
+		}
+	}
+
+	/**
+	 * See {@link #setScmRepositories(List)}.
+	 * @param repository the native repository of the server
+	 */
+	@Autowired(required = false)
+	public void setNativeEnvironmentRepository(NativeEnvironmentRepository repository) {
+		if (repository.getSearchLocations() != null) {
+			this.searchPathMatcher.addLocations(repository.getSearchLocations());
+		}
+	}
+
+	/**
+	 * Only refresh the services whose effective properties changed. The environments
+	 * that clients are watching are read again and compared to the previous ones, and
+	 * refresh events are sent for the (application, profile) pairs among them that the
+	 * notification covers and in which at least one value changed. Services that are not
+	 * watching the server are not refreshed in this mode, so it only suits fleets whose
+	 * clients all watch. Needs an {@link EnvironmentChangeMonitor}.
+	 * @param effectiveChangesOnly true to compare the watched environments
+	 */
+	@Value("${spring.cloud.config.monitor.effective-changes-only:false}")
+	public void setEffectiveChangesOnly(boolean effectiveChangesOnly) {
+		this.effectiveChangesOnly = effectiveChangesOnly;
+	}
+
+	/**
+	 * Read the environments of the services to refresh from the repository before the
+	 * refresh events go out, so that a git backend has already fetched the change when
+	 * the clients ask for it. Each lookup may fetch from the remote, and without a
+	 * {@link #setRefreshWindow(long) refresh window} they run on the thread of the
+	 * webhook request, so this is off by default.
+	 * @param prewarm true to pre-warm the repository
+	 */
+	@Value("${spring.cloud.config.monitor.prewarm:false}")
+	public void setPrewarm(boolean prewarm) {
+		this.prewarm = prewarm;
+	}
+
 	@RequestMapping(method = RequestMethod.POST)
 	public Set<String> notifyByPath(@RequestHeader HttpHeaders headers, @RequestBody Map<String, Object> request) {
 		PropertyPathNotification notification = this.extractor.extract(headers, request);
@@ -81,12 +198,8 @@ public class PropertyPathEndpoint implements ApplicationEventPublisherAware {
 			for (String path : notification.getPaths()) {
 				services.addAll(guessServiceName(path));
 			}
+			this.aggregator.add(services);
 			if (this.applicationEventPublisher != null) {
-				for (String service : services) {
-					log.info("Refresh for: " + service);
-					this.applicationEventPublisher
-							.publishEvent(new RefreshRemoteApplicationEvent(this, this.busId, service));
-				}
 				return services;
 			}
 
@@ -102,7 +215,119 @@ public class PropertyPathEndpoint implements ApplicationEventPublisherAware {
 		return notifyByPath(headers, map);
 	}
 
+	private void refresh(Set<String> services) {
+		prewarm(services);
+		if (this.environmentChangeMonitor != null) {
+			if (this.effectiveChangesOnly) {
+				// compared with what the last notification saw, not the last periodic check
+				Set<String> changed = effective(services, this.environmentChangeMonitor.checkEffectiveChanges());
+				if (changed.size() < services.size()) {
+					log.info("Effective changes only for " + changed + " out of " + services);
+				}
+				services = changed;
+			}
+			else {
+				this.environmentChangeMonitor.checkNow();
+			}
+		}
+		if (this.applicationEventPublisher != null) {
+			for (String service : services) {
+				log.info("Refresh for: " + service);
+				this.applicationEventPublisher
+						.publishEvent(new RefreshRemoteApplicationEvent(this, this.busId, service));
+			}
+		}
+	}
+
+	private void prewarm(Set<String> services) {
+		if (!this.prewarm || this.environmentRepository == null) {
+			return;
+		}
+		for (String service : services) {
+			int colon = service.indexOf(':');
+			String name = colon < 0 ? service : service.substring(0, colon);
+			String profile = colon < 0 ? "default" : service.substring(colon + 1);
+			if (colon < 0 && guessedFromProfile(name, services)) {
+				// foo-dev.yml is also foo:dev, which reads the same file
+				continue;
+			}
+			try {
+				// a wildcard names no application, but the fetch and the shared
+				// application files are the same for all of them
+				this.environmentRepository.findOne("*".equals(name) ? "application" : name, profile, null);
+			}
+			catch (Exception e) {
+				log.debug("Could not pre-warm environment for " + service, e);
+			}
+		}
+	}
+
+	private static boolean guessedFromProfile(String name, Set<String> services) {
+		for (String service : services) {
+			int colon = service.indexOf(':');
+			if (colon > 0 && name.equals(service.substring(0, colon) + "-" + service.substring(colon + 1))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static Set<String> effective(Set<String> services, List<Environment> changed) {
+		Set<String> result = new LinkedHashSet<>();
+		for (Environment environment : changed) {
+			for (String name : StringUtils.commaDelimitedListToStringArray(environment.getName())) {
+				for (String profile : environment.getProfiles()) {
+					for (String service : services) {
+						if (covers(service, name, profile)) {
+							result.add(name + ":" + profile);
+							break;
+						}
+					}
+				}
+			}
+		}
+		return result;
+	}
+
+	private static boolean covers(String service, String name, String profile) {
+		int colon = service.indexOf(':');
+		String serviceName = colon < 0 ? service : service.substring(0, colon);
+		String serviceProfile = colon < 0 ? null : service.substring(colon + 1);
+		return ("*".equals(serviceName) || serviceName.equals(name))
+				&& (serviceProfile == null || serviceProfile.equals(profile));
+	}
+
+	@Override
+	public void destroy() {
+		this.aggregator.shutdown();
+	}
+
 	private Set<String> guessServiceName(String path) {
+		Set<String> services = guessServiceNameFromFile(path);
+		SearchPathMatcher.Match match = path == null ? null : this.searchPathMatcher.match(path);
+		if (match == null) {
+			return services;
+		}
+		Set<String> matched = new LinkedHashSet<>();
+		for (String service : services) {
+			int colon = service.indexOf(':');
+			String name = colon < 0 ? service : service.substring(0, colon);
+			String profile = colon < 0 ? match.getProfile() : service.substring(colon + 1);
+			if (match.getApplication() != null) {
+				if ("*".equals(name)) {
+					name = match.getApplication();
+				}
+				else if (!name.equals(match.getApplication())) {
+					// not read from this directory by any application
+					continue;
+				}
+			}
+			matched.add(profile == null ? name : name + ":" + profile);
+		}
+		return matched;
+	}
+
+	private Set<String> guessServiceNameFromFile(String path) {
 		Set<String> services = new LinkedHashSet<>();
 		if (path != null) {
 			String stem = StringUtils.stripFilenameExtension(StringUtils.getFilename(StringUtils.cleanPath(path)));
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2013-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.config.monitor;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Buffers the services to refresh for a window of time and hands them on as one set, with
+ * the destinations that are covered by others removed: {@code *} covers everything,
+ * {@code *:profile} covers {@code name:profile} and {@code name} covers
+ * {@code name:profile}. A window of zero or less hands every set on straight away, still
+ * collapsed.
+ */
+class RefreshEventAggregator {
+
+	private static Log log = LogFactory.getLog(RefreshEventAggregator.class);
+
+	private final Consumer<Set<String>> target;
+
+	private long window;
+
+	private Set<String> pending = new LinkedHashSet<>();
+
+	private ScheduledExecutorService scheduler;
+
+	RefreshEventAggregator(Consumer<Set<String>> target) {
+		this.target = target;
+	}
+
+	long getWindow() {
+		return this.window;
+	}
+
+	void setWindow(long window) {
+		this.window = window;
+	}
+
+	void add(Collection<String> services) {
+		if (services.isEmpty()) {
+			return;
+		}
+		if (this.window <= 0) {
+			this.target.accept(collapse(services));
+			return;
+		}
+		synchronized (this) {
+			boolean first = this.pending.isEmpty();
+			this.pending.addAll(services);
+			if (first) {
+				// the window starts with the first notification, so a steady stream of
+				// pushes still refreshes once per window
+				scheduler().schedule(this::flush, this.window, TimeUnit.MILLISECONDS);
+			}
+		}
+	}
+
+	void flush() {
+		Set<String> services;
+		synchronized (this) {
+			services = this.pending;
+			this.pending = new LinkedHashSet<>();
+		}
+		if (services.isEmpty()) {
+			return;
+		}
+		try {
+			this.target.accept(collapse(services));
+		}
+		catch (RuntimeException e) {
+			log.error("Failed to refresh " + services, e);
+		}
+	}
+
+	synchronized void shutdown() {
+		if (this.scheduler != null) {
+			this.scheduler.shutdownNow();
+			this.scheduler = null;
+		}
+		flush();
+	}
+
+	private synchronized ScheduledExecutorService scheduler() {
+		if (this.scheduler == null) {
+			this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "config-monitor-refresh");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		return this.scheduler;
+	}
+
+	static Set<String> collapse(Collection<String> services) {
+		Set<String> collapsed = new LinkedHashSet<>();
+		for (String service : services) {
+			if (!coveredByOther(service, services)) {
+				collapsed.add(service);
+			}
+		}
+		return collapsed;
+	}
+
+	private static boolean coveredByOther(String service, Collection<String> services) {
+		if ("*".equals(service)) {
+			return false;
+		}
+		if (services.contains("*")) {
+			return true;
+		}
+		int colon = service.indexOf(':');
+		if (colon < 0) {
+			return false;
+		}
+		String name = service.substring(0, colon);
+		String profile = service.substring(colon + 1);
+		return services.contains(name) || (!"*".equals(name) && services.contains("*:" + profile));
+	}
+
+}
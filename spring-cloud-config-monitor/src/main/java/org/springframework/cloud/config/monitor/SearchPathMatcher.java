@@ -0,0 +1,183 @@
+/*
+ * Copyright 2013-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.config.monitor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.springframework.util.StringUtils;
+
+/**
+ * Works out which application and profile a changed file belongs to from the directory
+ * it is in, using the search paths of the repositories that contain placeholders, e.g.
+ * a file in {@code foo/} with a search path of <code>{application}</code> is only read for
+ * the application {@code foo}.
+ */
+class SearchPathMatcher {
+
+	private final List<SearchPath> searchPaths = new ArrayList<>();
+
+	/**
+	 * Adds the search paths of a repository.
+	 * @param root the local directory of the repository, or null if it is remote (then
+	 * only paths relative to the repository are matched)
+	 * @param paths the search paths, relative to the root
+	 */
+	void add(String root, String... paths) {
+		for (String path : paths) {
+			if (path.contains("{")) {
+				this.searchPaths.add(new SearchPath(root == null ? null : clean(root), compile(clean(path))));
+			}
+		}
+	}
+
+	/**
+	 * Adds absolute search locations, such as those of a native repository.
+	 * @param locations the locations, only the {@code file:} ones are used
+	 */
+	void addLocations(String... locations) {
+		for (String location : locations) {
+			if (location.startsWith("file:") && location.contains("{")) {
+				this.searchPaths.add(new SearchPath(null, compile(clean(location.substring("file:".length())))));
+			}
+		}
+	}
+
+	boolean isEmpty() {
+		return this.searchPaths.isEmpty();
+	}
+
+	/**
+	 * @param path the changed file, relative to the repository or absolute
+	 * @return the application and profile named by the directory of the file, or null if
+	 * no search path with a placeholder matches it
+	 */
+	Match match(String path) {
+		String clean = clean(path);
+		int slash = clean.lastIndexOf('/');
+		String directory = slash < 0 ? "" : clean.substring(0, slash);
+		for (SearchPath searchPath : this.searchPaths) {
+			String candidate = directory;
+			if (searchPath.root != null && candidate.startsWith(searchPath.root + "/")) {
+				candidate = candidate.substring(searchPath.root.length() + 1);
+			}
+			Matcher matcher = searchPath.pattern.matcher(candidate);
+			if (matcher.matches()) {
+				return new Match(group(matcher, "application"), group(matcher, "profile"));
+			}
+		}
+		return null;
+	}
+
+	private static String group(Matcher matcher, String name) {
+		try {
+			return matcher.group(name);
+		}
+		catch (IllegalArgumentException e) {
+			// no such placeholder in this search path
+			return null;
+		}
+	}
+
+	private static String clean(String path) {
+		String clean = StringUtils.cleanPath(path);
+		while (clean.endsWith("/")) {
+			clean = clean.substring(0, clean.length() - 1);
+		}
+		while (clean.startsWith("./")) {
+			clean = clean.substring(2);
+		}
+		return clean;
+	}
+
+	private static Pattern compile(String path) {
+		StringBuilder regex = new StringBuilder();
+		boolean application = false;
+		boolean profile = false;
+		int index = 0;
+		while (index < path.length()) {
+			if (path.startsWith("{application}", index)) {
+				regex.append(application ? "[^/]+" : "(?<application>[^/]+)");
+				application = true;
+				index += "{application}".length();
+			}
+			else if (path.startsWith("{profile}", index)) {
+				regex.append(profile ? "[^/]+" : "(?<profile>[^/]+)");
+				profile = true;
+				index += "{profile}".length();
+			}
+			else if (path.startsWith("{label}", index)) {
+				regex.append("[^/]+");
+				index += "{label}".length();
+			}
+			else if (path.startsWith("**", index)) {
+				regex.append(".*");
+				index += 2;
+			}
+			else if (path.charAt(index) == '*') {
+				regex.append("[^/]*");
+				index++;
+			}
+			else {
+				regex.append(Pattern.quote(String.valueOf(path.charAt(index))));
+				index++;
+			}
+		}
+		return Pattern.compile(regex.toString());
+	}
+
+	private static final class SearchPath {
+
+		private final String root;
+
+		private final Pattern pattern;
+
+		private SearchPath(String root, Pattern pattern) {
+			this.root = root;
+			this.pattern = pattern;
+		}
+
+	}
+
+	/**
+	 * The application and profile that the directory of a file was matched to, either may
+	 * be null if the search path does not name it.
+	 */
+	static final class Match {
+
+		private final String application;
+
+		private final String profile;
+
+		Match(String application, String profile) {
+			this.application = application;
+			this.profile = profile;
+		}
+
+		String getApplication() {
+			return this.application;
+		}
+
+		String getProfile() {
+			return this.profile;
+		}
+
+	}
+
+}
@@ -16,15 +16,23 @@
 
 package org.springframework.cloud.config.monitor;
 
+import java.io.File;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.junit.After;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
 
 import org.springframework.cloud.config.server.environment.AbstractScmEnvironmentRepository;
 import org.springframework.cloud.config.server.environment.JGitEnvironmentProperties;
@@ -33,6 +41,7 @@ import org.springframework.cloud.config.server.environment.NativeEnvironmentProp
 import org.springframework.cloud.config.server.environment.NativeEnvironmentRepository;
 import org.springframework.core.env.ConfigurableEnvironment;
 import org.springframework.core.io.FileSystemResourceLoader;
+import org.springframework.http.HttpHeaders;
 import org.springframework.mock.env.MockEnvironment;
 import org.springframework.test.util.ReflectionTestUtils;
 
@@ -49,6 +58,9 @@ public class FileMonitorConfigurationTest {
 
 	private static final String SAMPLE_FILE_URL = "file:///test";
 
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
 	private FileMonitorConfiguration fileMonitorConfiguration = new FileMonitorConfiguration();
 
 	private List<AbstractScmEnvironmentRepository> repositories = new ArrayList<>();
@@ -144,6 +156,58 @@ public class FileMonitorConfigurationTest {
 		assertOnDirectory(2);
 	}
 
+	@Test
+	public void testPoll_coalescesBurstIntoOneNotification() throws Exception {
+		// given
+		PropertyPathEndpoint endpoint = watchFolder();
+		File sub = this.folder.newFolder("sub");
+		Files.write(new File(sub, "foo.yml").toPath(), "foo: 1".getBytes());
+		this.folder.newFile("bar.yml");
+		this.folder.newFile(".hidden");
+		Thread.sleep(200);
+
+		// when
+		fileMonitorConfiguration.poll();
+
+		// then
+		assertThat(notifiedPaths(endpoint)).containsExactlyInAnyOrder(new File(sub, "foo.yml").getAbsolutePath(),
+				new File(this.folder.getRoot(), "bar.yml").getAbsolutePath());
+	}
+
+	@Test
+	public void testPoll_reportsOnlyChangedFile() throws Exception {
+		// given
+		File sub = this.folder.newFolder("sub");
+		File foo = new File(sub, "foo.yml");
+		Files.write(foo.toPath(), "foo: 1".getBytes());
+		Files.write(new File(sub, "bar.yml").toPath(), "bar: 1".getBytes());
+		PropertyPathEndpoint endpoint = watchFolder();
+
+		// when
+		Files.write(foo.toPath(), "foo: 2".getBytes());
+		Thread.sleep(200);
+		fileMonitorConfiguration.poll();
+
+		// then
+		assertThat(notifiedPaths(endpoint)).containsExactly(foo.getAbsolutePath());
+	}
+
+	private PropertyPathEndpoint watchFolder() {
+		PropertyPathEndpoint endpoint = Mockito.mock(PropertyPathEndpoint.class);
+		ReflectionTestUtils.setField(fileMonitorConfiguration, "endpoint", endpoint);
+		addScmRepository(createScmEnvironmentRepository(this.folder.getRoot().toURI().toString()));
+		fileMonitorConfiguration.setDebounce(100);
+		fileMonitorConfiguration.start();
+		return endpoint;
+	}
+
+	@SuppressWarnings("unchecked")
+	private List<String> notifiedPaths(PropertyPathEndpoint endpoint) {
+		ArgumentCaptor<Map<String, Object>> request = ArgumentCaptor.forClass(Map.class);
+		Mockito.verify(endpoint).notifyByPath(ArgumentMatchers.any(HttpHeaders.class), request.capture());
+		return (List<String>) request.getValue().get("path");
+	}
+
 	private void addScmRepository(AbstractScmEnvironmentRepository... repository) {
 		repositories.addAll(Arrays.asList(repository));
 		ReflectionTestUtils.setField(fileMonitorConfiguration, "scmRepositories", repositories);
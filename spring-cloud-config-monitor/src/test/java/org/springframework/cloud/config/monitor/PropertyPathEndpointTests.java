@@ -19,14 +19,28 @@ package org.springframework.cloud.config.monitor;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.junit.Before;
 import org.junit.Test;
-
+import org.mockito.Mockito;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.config.environment.Environment;
+import org.springframework.cloud.config.environment.PropertySource;
+import org.springframework.cloud.config.server.environment.AbstractScmEnvironmentRepository;
+import org.springframework.cloud.config.server.environment.EnvironmentChangeMonitor;
+import org.springframework.cloud.config.server.environment.EnvironmentRepository;
+import org.springframework.cloud.config.server.environment.JGitEnvironmentProperties;
+import org.springframework.cloud.config.server.environment.JGitEnvironmentRepository;
 import org.springframework.context.support.StaticApplicationContext;
+import org.springframework.core.env.StandardEnvironment;
 import org.springframework.http.HttpHeaders;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 
 /**
  * @author Dave Syer
@@ -62,6 +76,16 @@ public class PropertyPathEndpointTests {
 		assertThat(this.endpoint.notifyByForm(new HttpHeaders(), request).toString()).isEqualTo("[bar, *]");
 	}
 
+	@Test
+	public void testNotifyTriggersWatchCheck() {
+		EnvironmentChangeMonitor monitor = Mockito.mock(EnvironmentChangeMonitor.class);
+		this.endpoint.setEnvironmentChangeMonitor(monitor);
+		this.endpoint.notifyByForm(new HttpHeaders(), new ArrayList<>());
+		verify(monitor, never()).checkNow();
+		this.endpoint.notifyByPath(new HttpHeaders(), Collections.singletonMap("path", "foo.yml"));
+		verify(monitor).checkNow();
+	}
+
 	@Test
 	public void testNotifyAll() {
 		assertThat(this.endpoint.notifyByPath(new HttpHeaders(), Collections.singletonMap("path", "application.yml"))
@@ -101,4 +125,115 @@ public class PropertyPathEndpointTests {
 				.toString()).isEqualTo("[foo:local-dev, foo-local:dev, foo-local-dev]");
 	}
 
+	@Test
+	public void testEventsCollapsed() {
+		List<Object> events = recordEvents();
+		List<String> request = new ArrayList<>();
+		request.add("/foo-dev.properties");
+		request.add("/application.properties");
+		this.endpoint.notifyByForm(new HttpHeaders(), request);
+		assertThat(events).extracting("destinationService").containsExactly("*:**");
+	}
+
+	@Test
+	public void testEventsBufferedForWindow() throws Exception {
+		List<Object> events = recordEvents();
+		this.endpoint.setRefreshWindow(200);
+		this.endpoint.notifyByPath(new HttpHeaders(), Collections.singletonMap("path", "foo-dev.yml"));
+		this.endpoint.notifyByPath(new HttpHeaders(), Collections.singletonMap("path", "foo.yml"));
+		assertThat(events).isEmpty();
+		// the two destinations are published one after the other by the window's thread
+		for (int i = 0; i < 250 && events.size() < 2; i++) {
+			Thread.sleep(20);
+		}
+		assertThat(events).extracting("destinationService").containsExactly("foo-dev:**", "foo:**");
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testEnvironmentPrewarmed() {
+		EnvironmentRepository repository = Mockito.mock(EnvironmentRepository.class);
+		ObjectProvider<EnvironmentRepository> provider = Mockito.mock(ObjectProvider.class);
+		Mockito.when(provider.getIfUnique()).thenReturn(repository);
+		this.endpoint.setEnvironmentRepository(provider);
+		this.endpoint.notifyByPath(new HttpHeaders(), Collections.singletonMap("path", "application-dev.yml"));
+		verify(repository, never()).findOne("application", "dev", null);
+		this.endpoint.setPrewarm(true);
+		this.endpoint.notifyByPath(new HttpHeaders(), Collections.singletonMap("path", "application-dev.yml"));
+		verify(repository).findOne("application", "dev", null);
+		this.endpoint.notifyByPath(new HttpHeaders(), Collections.singletonMap("path", "foo-dev.yml"));
+		verify(repository).findOne("foo", "dev", null);
+		verify(repository, never()).findOne("foo-dev", "default", null);
+	}
+
+	@Test
+	public void testNotifyWithApplicationSearchPath() {
+		this.endpoint.setScmRepositories(Collections.singletonList(scmRepository("{application}")));
+		assertThat(notify("foo/application.yml")).containsExactly("foo");
+		assertThat(notify("foo/application-dev.yml")).containsExactly("foo:dev");
+		assertThat(notify("foo/foo-dev.yml")).containsExactly("foo:dev");
+		assertThat(notify("foo/bar.yml")).isEmpty();
+		assertThat(notify("application.yml")).containsExactly("*");
+	}
+
+	@Test
+	public void testNotifyWithProfileSearchPath() {
+		this.endpoint.setScmRepositories(Collections.singletonList(scmRepository("config/{profile}")));
+		assertThat(notify("config/dev/foo.yml")).containsExactly("foo:dev");
+		assertThat(notify("config/dev/application.yml")).containsExactly("*:dev");
+		assertThat(notify("other/foo.yml")).containsExactly("foo");
+	}
+
+	@Test
+	public void testEffectiveChangesOnly() {
+		List<Object> events = recordEvents();
+		EnvironmentChangeMonitor monitor = Mockito.mock(EnvironmentChangeMonitor.class);
+		Mockito.when(monitor.checkEffectiveChanges()).thenReturn(
+				Collections.singletonList(new Environment("foo", new String[] { "dev" }, null, "v2", null)));
+		this.endpoint.setEnvironmentChangeMonitor(monitor);
+		this.endpoint.setEffectiveChangesOnly(true);
+		this.endpoint.notifyByPath(new HttpHeaders(), Collections.singletonMap("path", "application.yml"));
+		assertThat(events).extracting("destinationService").containsExactly("foo:dev:**");
+		events.clear();
+		this.endpoint.notifyByPath(new HttpHeaders(), Collections.singletonMap("path", "bar.yml"));
+		assertThat(events).isEmpty();
+	}
+
+	@Test
+	public void testEffectiveChangesSeenByPeriodicCheckFirst() {
+		List<Object> events = recordEvents();
+		EnvironmentRepository repository = Mockito.mock(EnvironmentRepository.class);
+		Environment before = new Environment("foo", new String[] { "dev" }, null, "v1", null);
+		before.add(new PropertySource("foo.yml", Collections.singletonMap("a", "1")));
+		Environment after = new Environment("foo", new String[] { "dev" }, null, "v2", null);
+		after.add(new PropertySource("foo.yml", Collections.singletonMap("a", "2")));
+		Mockito.when(repository.findOne("foo", "dev", null, false)).thenReturn(before, after);
+		EnvironmentChangeMonitor monitor = new EnvironmentChangeMonitor(repository);
+		monitor.watch("foo", "dev", null, "v1", environment -> {
+		});
+		this.endpoint.setEnvironmentChangeMonitor(monitor);
+		this.endpoint.setEffectiveChangesOnly(true);
+		// the scheduled check notices the commit before the webhook arrives
+		monitor.check();
+		this.endpoint.notifyByPath(new HttpHeaders(), Collections.singletonMap("path", "foo.yml"));
+		assertThat(events).extracting("destinationService").containsExactly("foo:dev:**");
+	}
+
+	private Set<String> notify(String path) {
+		return this.endpoint.notifyByPath(new HttpHeaders(), Collections.singletonMap("path", path));
+	}
+
+	private AbstractScmEnvironmentRepository scmRepository(String searchPath) {
+		JGitEnvironmentProperties properties = new JGitEnvironmentProperties();
+		properties.setUri("https://example.com/config-repo");
+		properties.setSearchPaths(searchPath);
+		return new JGitEnvironmentRepository(new StandardEnvironment(), properties);
+	}
+
+	private List<Object> recordEvents() {
+		List<Object> events = new CopyOnWriteArrayList<>();
+		this.endpoint.setApplicationEventPublisher(events::add);
+		return events;
+	}
+
 }
@@ -16,6 +16,7 @@
 
 package org.springframework.cloud.config.server.config;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -25,18 +26,26 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.cloud.config.environment.EnvironmentMediaType;
 import org.springframework.cloud.config.server.encryption.EnvironmentEncryptor;
 import org.springframework.cloud.config.server.encryption.ResourceEncryptor;
+import org.springframework.cloud.config.server.environment.EnvironmentBulkController;
+import org.springframework.cloud.config.server.environment.EnvironmentChangeMonitor;
 import org.springframework.cloud.config.server.environment.EnvironmentController;
+import org.springframework.cloud.config.server.environment.EnvironmentETagAdvice;
 import org.springframework.cloud.config.server.environment.EnvironmentEncryptorEnvironmentRepository;
 import org.springframework.cloud.config.server.environment.EnvironmentRepository;
+import org.springframework.cloud.config.server.environment.EnvironmentWatchController;
 import org.springframework.cloud.config.server.resource.ResourceController;
 import org.springframework.cloud.config.server.resource.ResourceRepository;
 import org.springframework.cloud.context.config.annotation.RefreshScope;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
 import org.springframework.web.servlet.config.annotation.ContentNegotiationConfigurer;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
@@ -56,6 +65,14 @@ public class ConfigServerMvcConfiguration implements WebMvcConfigurer {
 		configurer.mediaType("yaml", MediaType.valueOf("text/yaml"));
 	}
 
+	@Override
+	public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+		// 二进制格式的环境对象，内容与v2+json相同
+		MappingJackson2CborHttpMessageConverter cbor = new MappingJackson2CborHttpMessageConverter();
+		cbor.setSupportedMediaTypes(Collections.singletonList(MediaType.valueOf(EnvironmentMediaType.V2_CBOR)));
+		converters.add(cbor);
+	}
+
 	@Configuration(proxyBeanMethods = false)
 	@ConditionalOnMissingBean(org.springframework.cloud.context.scope.refresh.RefreshScope.class)
 	static class EnvironmentControllerConfiguration {
@@ -92,6 +109,11 @@ public class ConfigServerMvcConfiguration implements WebMvcConfigurer {
 			return controller;
 		}
 
+		@Bean
+		public EnvironmentETagAdvice environmentETagAdvice() {
+			return new EnvironmentETagAdvice();
+		}
+
 		@Bean
 		@ConditionalOnBean(ResourceRepository.class)
 		public ResourceController resourceController(ResourceRepository repository, EnvironmentRepository envRepository,
@@ -130,4 +152,55 @@ public class ConfigServerMvcConfiguration implements WebMvcConfigurer {
 
 	}
 
+	@Configuration(proxyBeanMethods = false)
+	@ConditionalOnProperty(value = "spring.cloud.config.server.watch.enabled", matchIfMissing = true)
+	static class EnvironmentWatchConfiguration {
+
+		@Autowired(required = false)
+		private List<EnvironmentEncryptor> environmentEncryptors;
+
+		@Bean
+		public EnvironmentChangeMonitor environmentChangeMonitor(EnvironmentRepository envRepository,
+				ConfigServerProperties server) {
+			// 与EnvironmentController一致，保证推送给客户端的差异是解密后的值
+			EnvironmentEncryptorEnvironmentRepository encrypted = new EnvironmentEncryptorEnvironmentRepository(
+					envRepository, this.environmentEncryptors);
+			encrypted.setOverrides(server.getOverrides());
+			EnvironmentChangeMonitor monitor = new EnvironmentChangeMonitor(encrypted);
+			monitor.setCheckInterval(server.getWatch().getCheckInterval());
+			return monitor;
+		}
+
+		@Bean
+		public EnvironmentWatchController environmentWatchController(EnvironmentChangeMonitor monitor,
+				ConfigServerProperties server) {
+			EnvironmentWatchController controller = new EnvironmentWatchController(monitor,
+					server.getWatch().getSendThreads(), server.getWatch().getSendQueueCapacity());
+			controller.setTimeout(server.getWatch().getTimeout());
+			controller.setStreamTimeout(server.getWatch().getStreamTimeout());
+			controller.setSendTimeout(server.getWatch().getSendTimeout());
+			return controller;
+		}
+
+	}
+
+	@Configuration(proxyBeanMethods = false)
+	@ConditionalOnProperty(value = "spring.cloud.config.server.bulk.enabled", matchIfMissing = true)
+	static class EnvironmentBulkConfiguration {
+
+		@Autowired(required = false)
+		private ObjectMapper objectMapper = new ObjectMapper();
+
+		@Bean
+		@ConditionalOnBean(EnvironmentController.class)
+		public EnvironmentBulkController environmentBulkController(EnvironmentController environmentController,
+				ConfigServerProperties server) {
+			EnvironmentBulkController controller = new EnvironmentBulkController(environmentController,
+					this.objectMapper, server.getBulk().getParallelism());
+			controller.setMaxEntries(server.getBulk().getMaxEntries());
+			return controller;
+		}
+
+	}
+
 }
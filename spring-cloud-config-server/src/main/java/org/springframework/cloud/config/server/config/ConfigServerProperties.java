@@ -16,7 +16,9 @@
 
 package org.springframework.cloud.config.server.config;
 
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
@@ -101,6 +103,21 @@ public class ConfigServerProperties {
 	 */
 	private Encrypt encrypt = new Encrypt();
 
+	/**
+	 * Configuration of the endpoint clients can long-poll to be told about changes.
+	 */
+	private Watch watch = new Watch();
+
+	/**
+	 * Configuration of the endpoint that fetches many environments at once.
+	 */
+	private Bulk bulk = new Bulk();
+
+	/**
+	 * Configuration of the environments looked up before the server takes traffic.
+	 */
+	private Warmup warmup = new Warmup();
+
 	public boolean isEnabled() {
 		return this.enabled;
 	}
@@ -113,6 +130,18 @@ public class ConfigServerProperties {
 		return this.encrypt;
 	}
 
+	public Watch getWatch() {
+		return this.watch;
+	}
+
+	public Bulk getBulk() {
+		return this.bulk;
+	}
+
+	public Warmup getWarmup() {
+		return this.warmup;
+	}
+
 	public String getDefaultLabel() {
 		return this.defaultLabel;
 	}
@@ -191,7 +220,8 @@ public class ConfigServerProperties {
 				.append("prefix", prefix).append("defaultLabel", defaultLabel).append("overrides", overrides)
 				.append("stripDocumentFromYaml", stripDocumentFromYaml).append("acceptEmpty", acceptEmpty)
 				.append("defaultApplicationName", defaultApplicationName).append("defaultProfile", defaultProfile)
-				.append("failOnCompositeError", failOnCompositeError).append("encrypt", encrypt).toString();
+				.append("failOnCompositeError", failOnCompositeError).append("encrypt", encrypt).append("watch", watch)
+				.append("bulk", bulk).append("warmup", warmup).toString();
 
 	}
 
@@ -236,4 +266,228 @@ public class ConfigServerProperties {
 
 	}
 
+	/**
+	 * Watch endpoint properties.
+	 */
+	public static class Watch {
+
+		/**
+		 * Enable the endpoint clients can long-poll for new versions of their
+		 * environment.
+		 */
+		private boolean enabled = true;
+
+		/**
+		 * Time (in milliseconds) a watch request is held open before the server answers
+		 * that nothing changed.
+		 */
+		private long timeout = 30000;
+
+		/**
+		 * Time (in milliseconds) after which a change event stream is closed by the
+		 * server, leaving it to the client to reconnect. Should be shorter than the read
+		 * timeout of the clients.
+		 */
+		private long streamTimeout = 120000;
+
+		/**
+		 * Time (in milliseconds) a change event stream client gets to take an event
+		 * before the server closes its stream.
+		 */
+		private long sendTimeout = 10000;
+
+		/**
+		 * Number of threads writing change events to event stream clients.
+		 */
+		private int sendThreads = 8;
+
+		/**
+		 * Number of change events that can wait for a thread to write them. A stream
+		 * whose event finds the queue full is closed.
+		 */
+		private int sendQueueCapacity = 1000;
+
+		/**
+		 * Time (in milliseconds) between two checks of the repository for new versions
+		 * of the watched environments.
+		 */
+		private long checkInterval = 5000;
+
+		public boolean isEnabled() {
+			return this.enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public long getTimeout() {
+			return this.timeout;
+		}
+
+		public void setTimeout(long timeout) {
+			this.timeout = timeout;
+		}
+
+		public long getStreamTimeout() {
+			return this.streamTimeout;
+		}
+
+		public void setStreamTimeout(long streamTimeout) {
+			this.streamTimeout = streamTimeout;
+		}
+
+		public long getSendTimeout() {
+			return this.sendTimeout;
+		}
+
+		public void setSendTimeout(long sendTimeout) {
+			this.sendTimeout = sendTimeout;
+		}
+
+		public int getSendThreads() {
+			return this.sendThreads;
+		}
+
+		public void setSendThreads(int sendThreads) {
+			this.sendThreads = sendThreads;
+		}
+
+		public int getSendQueueCapacity() {
+			return this.sendQueueCapacity;
+		}
+
+		public void setSendQueueCapacity(int sendQueueCapacity) {
+			this.sendQueueCapacity = sendQueueCapacity;
+		}
+
+		public long getCheckInterval() {
+			return this.checkInterval;
+		}
+
+		public void setCheckInterval(long checkInterval) {
+			this.checkInterval = checkInterval;
+		}
+
+		@Override
+		public String toString() {
+			return new ToStringCreator(this).append("enabled", enabled).append("timeout", timeout)
+					.append("streamTimeout", streamTimeout).append("sendTimeout", sendTimeout)
+					.append("sendThreads", sendThreads).append("sendQueueCapacity", sendQueueCapacity)
+					.append("checkInterval", checkInterval).toString();
+
+		}
+
+	}
+
+	/**
+	 * Bulk endpoint properties.
+	 */
+	public static class Bulk {
+
+		/**
+		 * Enable the endpoint that fetches many environments in one request.
+		 */
+		private boolean enabled = true;
+
+		/**
+		 * Number of environments a bulk request looks up at the same time.
+		 */
+		private int parallelism = 4;
+
+		/**
+		 * Largest number of environments that can be asked for in one bulk request.
+		 */
+		private int maxEntries = 500;
+
+		public boolean isEnabled() {
+			return this.enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public int getParallelism() {
+			return this.parallelism;
+		}
+
+		public void setParallelism(int parallelism) {
+			this.parallelism = parallelism;
+		}
+
+		public int getMaxEntries() {
+			return this.maxEntries;
+		}
+
+		public void setMaxEntries(int maxEntries) {
+			this.maxEntries = maxEntries;
+		}
+
+		@Override
+		public String toString() {
+			return new ToStringCreator(this).append("enabled", enabled).append("parallelism", parallelism)
+					.append("maxEntries", maxEntries).toString();
+
+		}
+
+	}
+
+	/**
+	 * Warm-up properties.
+	 */
+	public static class Warmup {
+
+		/**
+		 * Enable looking up the warm-up environments before the server is ready.
+		 */
+		private boolean enabled = true;
+
+		/**
+		 * Environments to look up when the server starts, before it reports itself ready,
+		 * so that the repositories they come from are cloned and checked out. Each one is
+		 * <code>{application}/{profiles}</code> or
+		 * <code>{application}/{profiles}/{label}</code>, like the path of an environment
+		 * request.
+		 */
+		private List<String> environments = new ArrayList<>();
+
+		/**
+		 * Number of environments looked up at the same time during warm-up.
+		 */
+		private int parallelism = 4;
+
+		public boolean isEnabled() {
+			return this.enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public List<String> getEnvironments() {
+			return this.environments;
+		}
+
+		public void setEnvironments(List<String> environments) {
+			this.environments = environments;
+		}
+
+		public int getParallelism() {
+			return this.parallelism;
+		}
+
+		public void setParallelism(int parallelism) {
+			this.parallelism = parallelism;
+		}
+
+		@Override
+		public String toString() {
+			return new ToStringCreator(this).append("enabled", enabled).append("environments", environments)
+					.append("parallelism", parallelism).toString();
+
+		}
+
+	}
+
 }
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2013-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.config.server.config;
+
+import org.springframework.boot.actuate.health.AbstractHealthIndicator;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.cloud.config.server.environment.EnvironmentWarmup;
+
+/**
+ * Reports the config server as out of service until its {@link EnvironmentWarmup} is
+ * done, with how far it got. Add it to the readiness group (e.g.
+ * {@code management.endpoint.health.group.readiness.include=readinessState,configServerWarmup})
+ * to keep the server out of rotation while repositories are still being cloned.
+ */
+public class ConfigServerWarmupHealthIndicator extends AbstractHealthIndicator {
+
+	private final EnvironmentWarmup warmup;
+
+	public ConfigServerWarmupHealthIndicator(EnvironmentWarmup warmup) {
+		this.warmup = warmup;
+	}
+
+	@Override
+	protected void doHealthCheck(Health.Builder builder) throws Exception {
+		if (this.warmup.isDone()) {
+			builder.up();
+		}
+		else {
+			builder.outOfService();
+		}
+		builder.withDetail("environments", this.warmup.getTotal())
+				.withDetail("completed", this.warmup.getCompleted()).withDetail("failed", this.warmup.getFailed());
+	}
+
+}
@@ -18,10 +18,16 @@ package org.springframework.cloud.config.server.config;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import javax.servlet.http.HttpServletRequest;
 
 import com.amazonaws.services.s3.AmazonS3;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import org.apache.http.client.HttpClient;
 import org.eclipse.jgit.api.TransportConfigCallback;
 import org.tmatesoft.svn.core.SVNException;
@@ -49,10 +55,13 @@ import org.springframework.cloud.config.server.environment.CredhubEnvironmentPro
 import org.springframework.cloud.config.server.environment.CredhubEnvironmentRepository;
 import org.springframework.cloud.config.server.environment.CredhubEnvironmentRepositoryFactory;
 import org.springframework.cloud.config.server.environment.EnvironmentRepository;
+import org.springframework.cloud.config.server.environment.EnvironmentWarmup;
 import org.springframework.cloud.config.server.environment.EnvironmentWatch;
+import org.springframework.cloud.config.server.environment.GitMaintenanceScheduler;
 import org.springframework.cloud.config.server.environment.HttpClientConfigurableHttpConnectionFactory;
 import org.springframework.cloud.config.server.environment.HttpClientVaultRestTemplateFactory;
 import org.springframework.cloud.config.server.environment.HttpRequestConfigTokenProvider;
+import org.springframework.cloud.config.server.environment.JGitEnvironmentRepository;
 import org.springframework.cloud.config.server.environment.JdbcEnvironmentProperties;
 import org.springframework.cloud.config.server.environment.JdbcEnvironmentRepository;
 import org.springframework.cloud.config.server.environment.JdbcEnvironmentRepositoryFactory;
@@ -87,6 +96,7 @@ import org.springframework.core.env.Environment;
 import org.springframework.credhub.core.CredHubOperations;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.StringUtils;
 import org.springframework.vault.core.VaultTemplate;
 
 /**
@@ -132,6 +142,121 @@ public class EnvironmentRepositoryConfiguration {
 
 	}
 
+	@Configuration(proxyBeanMethods = false)
+	@ConditionalOnProperty(value = "spring.cloud.config.server.warmup.enabled", matchIfMissing = true)
+	protected static class EnvironmentWarmupConfiguration {
+
+		@Bean
+		@ConditionalOnMissingBean
+		public EnvironmentWarmup environmentWarmup(EnvironmentRepository repository, ConfigServerProperties server) {
+			return new EnvironmentWarmup(repository, server.getWarmup().getEnvironments(),
+					server.getWarmup().getParallelism());
+		}
+
+		@Configuration(proxyBeanMethods = false)
+		@ConditionalOnClass(AbstractHealthIndicator.class)
+		@ConditionalOnProperty(value = "spring.cloud.config.server.health.enabled", matchIfMissing = true)
+		protected static class EnvironmentWarmupHealthConfiguration {
+
+			@Bean
+			public ConfigServerWarmupHealthIndicator configServerWarmupHealthIndicator(EnvironmentWarmup warmup) {
+				return new ConfigServerWarmupHealthIndicator(warmup);
+			}
+
+		}
+
+	}
+
+	@Configuration(proxyBeanMethods = false)
+	@ConditionalOnClass(TransportConfigCallback.class)
+	protected static class GitMaintenanceConfiguration {
+
+		@Bean
+		public GitMaintenanceScheduler gitMaintenanceScheduler(
+				ObjectProvider<JGitEnvironmentRepository> repositories) {
+			return new GitMaintenanceScheduler(repositories.orderedStream().collect(Collectors.toList()));
+		}
+
+	}
+
+	@Configuration(proxyBeanMethods = false)
+	@ConditionalOnClass({ MeterBinder.class, TransportConfigCallback.class })
+	protected static class GitRepositoryMetricsConfiguration {
+
+		@Bean
+		public MeterBinder placeholderRepositoryMetrics(
+				ObjectProvider<MultipleJGitEnvironmentRepository> repositories) {
+			return registry -> repositories.orderedStream().forEach(repository -> {
+				Gauge.builder("config.server.git.placeholder.repositories", repository,
+						MultipleJGitEnvironmentRepository::getPlaceholderRepositoryCount).tag("uri", uri(repository))
+						.description("Repositories kept for git uris with placeholders").register(registry);
+				FunctionCounter.builder("config.server.git.placeholder.evictions", repository,
+						MultipleJGitEnvironmentRepository::getPlaceholderRepositoryEvictions)
+						.tag("uri", uri(repository))
+						.description("Repositories for git uris with placeholders that were evicted")
+						.register(registry);
+			});
+		}
+
+		@Bean
+		public MeterBinder inMemoryRepositoryMetrics(ObjectProvider<JGitEnvironmentRepository> repositories) {
+			return registry -> repositories.orderedStream().filter(this::usesMemory).forEach(repository -> {
+				Gauge.builder("config.server.git.in-memory.size", repository,
+						JGitEnvironmentRepository::getInMemorySize).tag("uri", uri(repository)).baseUnit("bytes")
+						.description("Size of the git objects held in memory").register(registry);
+				Gauge.builder("config.server.git.in-memory.objects", repository,
+						JGitEnvironmentRepository::getInMemoryObjectCount).tag("uri", uri(repository))
+						.description("Number of git objects held in memory").register(registry);
+			});
+		}
+
+		@Bean
+		public MeterBinder maintenanceRepositoryMetrics(ObjectProvider<JGitEnvironmentRepository> repositories) {
+			return registry -> repositories.orderedStream().filter(JGitEnvironmentRepository::isMaintenanceEnabled)
+					.forEach(repository -> {
+						FunctionTimer.builder("config.server.git.maintenance", repository,
+								JGitEnvironmentRepository::getMaintenanceCount,
+								JGitEnvironmentRepository::getMaintenanceTime, TimeUnit.MILLISECONDS)
+								.tag("uri", uri(repository)).description("Garbage collections of the local git clones")
+								.register(registry);
+						for (String type : new String[] { "loose", "packed" }) {
+							String suffix = StringUtils.capitalize(type);
+							Gauge.builder("config.server.git.objects", repository,
+									r -> r.getMaintenanceStatistic("numberOf" + suffix + "Objects"))
+									.tag("type", type).tag("uri", uri(repository))
+									.description("Objects in the local git clones after the last garbage collection")
+									.register(registry);
+							Gauge.builder("config.server.git.refs", repository,
+									r -> r.getMaintenanceStatistic("numberOf" + suffix + "Refs"))
+									.tag("type", type).tag("uri", uri(repository))
+									.description("Refs in the local git clones after the last garbage collection")
+									.register(registry);
+						}
+					});
+		}
+
+		private boolean usesMemory(JGitEnvironmentRepository repository) {
+			if (repository.isInMemory()) {
+				return true;
+			}
+			if (repository instanceof MultipleJGitEnvironmentRepository) {
+				return ((MultipleJGitEnvironmentRepository) repository).getRepos().values().stream()
+						.anyMatch(JGitEnvironmentRepository::isInMemory);
+			}
+			return false;
+		}
+
+		/**
+		 * The uri of a repository without the credentials it may hold, to tell the meters
+		 * of several repositories apart.
+		 */
+		private static String uri(JGitEnvironmentRepository repository) {
+			String uri = repository.getUri();
+			return uri != null ? uri.replaceFirst("//[^/@]*@", "//") : "";
+		}
+
+	}
+
 	@Configuration(proxyBeanMethods = false)
 	@ConditionalOnProperty("spring.cloud.config.server.consul.watch.enabled")
 	protected static class ConsulEnvironmentWatchConfiguration {
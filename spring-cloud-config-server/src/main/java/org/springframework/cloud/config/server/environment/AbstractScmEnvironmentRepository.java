@@ -16,11 +16,14 @@
 
 package org.springframework.cloud.config.server.environment;
 
+import java.util.function.Function;
+
 import org.springframework.cloud.config.environment.Environment;
 import org.springframework.cloud.config.server.support.AbstractScmAccessor;
 import org.springframework.cloud.config.server.support.AbstractScmAccessorProperties;
 import org.springframework.core.Ordered;
 import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.io.Resource;
 
 /**
  * @author Dave Syer
@@ -70,6 +73,13 @@ public abstract class AbstractScmEnvironmentRepository extends AbstractScmAccess
 		return this.cleaner.clean(result, getWorkingDirectory().toURI().toString(), getUri());
 	}
 
+	@Override
+	public synchronized Resource findResource(String application, String profile, String label,
+			Function<Locations, Resource> finder) {
+		// 与findOne一样持有锁，查找期间工作目录不会被更新
+		return finder.apply(getLocations(application, profile, label));
+	}
+
 	@Override
 	public int getOrder() {
 		return this.order;
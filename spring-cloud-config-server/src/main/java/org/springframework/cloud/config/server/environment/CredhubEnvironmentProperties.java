@@ -28,6 +28,20 @@ public class CredhubEnvironmentProperties implements EnvironmentRepositoryProper
 
 	private int order = Ordered.LOWEST_PRECEDENCE;
 
+	/**
+	 * Number of requests made to CredHub at once to read the paths and credentials of an
+	 * environment. Default 1 reads them one after another.
+	 */
+	private int parallelism = 1;
+
+	/**
+	 * Time (in seconds) the credentials read from a path are reused, concurrent requests
+	 * for a path that is not cached sharing a single read. Paths without credentials are
+	 * read again every time, and only the 1024 most recently used paths are kept. Default
+	 * 0 reads them on every request.
+	 */
+	private int cacheTtl = 0;
+
 	public int getOrder() {
 		return this.order;
 	}
@@ -37,4 +51,20 @@ public class CredhubEnvironmentProperties implements EnvironmentRepositoryProper
 		this.order = order;
 	}
 
+	public int getParallelism() {
+		return this.parallelism;
+	}
+
+	public void setParallelism(int parallelism) {
+		this.parallelism = parallelism;
+	}
+
+	public int getCacheTtl() {
+		return this.cacheTtl;
+	}
+
+	public void setCacheTtl(int cacheTtl) {
+		this.cacheTtl = cacheTtl;
+	}
+
 }
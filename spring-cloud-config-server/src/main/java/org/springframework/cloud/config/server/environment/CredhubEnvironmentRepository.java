@@ -16,23 +16,42 @@
 
 package org.springframework.cloud.config.server.environment;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.cloud.config.environment.Environment;
 import org.springframework.cloud.config.environment.PropertySource;
 import org.springframework.credhub.core.CredHubOperations;
-import org.springframework.credhub.support.CredentialDetails;
+import org.springframework.credhub.support.CredentialSummary;
 import org.springframework.credhub.support.SimpleCredentialName;
 import org.springframework.credhub.support.json.JsonCredential;
 import org.springframework.util.StringUtils;
 
-import static java.util.stream.Collectors.toMap;
-
 /**
+ * CredHub-backed {@link EnvironmentRepository}. CredHub cannot return the values of all
+ * the credentials under a path at once, so reading a path takes one request for the
+ * names and one per credential. With a parallelism those requests are made concurrently,
+ * for all the paths of an environment, and with a cache TTL the credentials of a path
+ * are reused until it expires.
+ *
  * @author Alberto C. Ríos
  */
-public class CredhubEnvironmentRepository implements EnvironmentRepository {
+public class CredhubEnvironmentRepository implements EnvironmentRepository, DisposableBean {
 
 	private CredHubOperations credHubOperations;
 
@@ -42,8 +61,51 @@ public class CredhubEnvironmentRepository implements EnvironmentRepository {
 
 	private static final String DEFAULT_APPLICATION = "application";
 
+	/**
+	 * Number of paths whose credentials are cached. Paths come from requests, so the
+	 * least recently used ones are dropped beyond this.
+	 */
+	private static final int MAX_CACHED_PATHS = 1024;
+
+	/**
+	 * Runs the requests to CredHub, in the calling thread unless there is a parallelism.
+	 */
+	private final Executor executor;
+
+	private final long cacheTtl;
+
+	private final Map<String, CachedProperties> cache = Collections
+			.synchronizedMap(new LinkedHashMap<String, CachedProperties>(16, 0.75f, true) {
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, CachedProperties> eldest) {
+					return size() > MAX_CACHED_PATHS;
+				}
+			});
+
+	/**
+	 * Reads of paths under way, shared by the requests that need the same path.
+	 */
+	private final ConcurrentMap<String, CompletableFuture<Map<Object, Object>>> loading = new ConcurrentHashMap<>();
+
 	public CredhubEnvironmentRepository(CredHubOperations credHubOperations) {
+		this(credHubOperations, new CredhubEnvironmentProperties());
+	}
+
+	public CredhubEnvironmentRepository(CredHubOperations credHubOperations,
+			CredhubEnvironmentProperties properties) {
 		this.credHubOperations = credHubOperations;
+		if (properties.getParallelism() > 1) {
+			AtomicInteger count = new AtomicInteger();
+			this.executor = Executors.newFixedThreadPool(properties.getParallelism(), runnable -> {
+				Thread thread = new Thread(runnable, "config-server-credhub-" + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		else {
+			this.executor = Runnable::run;
+		}
+		this.cacheTtl = TimeUnit.SECONDS.toNanos(properties.getCacheTtl());
 	}
 
 	@Override
@@ -59,58 +121,160 @@ public class CredhubEnvironmentRepository implements EnvironmentRepository {
 		// 拆分profilesList数据
 		String[] profiles = StringUtils.commaDelimitedListToStringArray(profilesList);
 
-		// 创建环境对象
-		Environment environment = new Environment(application, profiles, label, null, null);
+		// 按属性源顺序列出路径，默认属性源为空时不加入
+		List<Source> sources = new ArrayList<>();
 		// 循环profiles数据
 		for (String profile : profiles) {
-			// 加入环境对象中
-			environment.add(new PropertySource("credhub-" + application + "-" + profile + "-" + label,
-				findProperties(application, profile, label)));
+			sources.add(new Source(application, profile, label, true));
 			// 当前应用名称和默认应用名称不相同
 			if (!DEFAULT_APPLICATION.equals(application)) {
-				// 处理默认属性源数据
-				addDefaultPropertySource(environment, DEFAULT_APPLICATION, profile, label);
+				sources.add(new Source(DEFAULT_APPLICATION, profile, label, false));
 			}
 		}
 
 		// 默认profile不在profiles集合中
 		if (!Arrays.asList(profiles).contains(DEFAULT_PROFILE)) {
-			// 处理默认属性源数据
-			addDefaultPropertySource(environment, application, DEFAULT_PROFILE, label);
+			sources.add(new Source(application, DEFAULT_PROFILE, label, false));
 		}
 
 		// 默认profile不在profiles集合中并且当前应用名称和默认应用名称不相同
 		if (!Arrays.asList(profiles).contains(DEFAULT_PROFILE) && !DEFAULT_APPLICATION.equals(application)) {
-			// 处理默认属性源数据
-			addDefaultPropertySource(environment, DEFAULT_APPLICATION, DEFAULT_PROFILE, label);
+			sources.add(new Source(DEFAULT_APPLICATION, DEFAULT_PROFILE, label, false));
+		}
+
+		// 所有路径同时读取
+		for (Source source : sources) {
+			source.properties = findProperties(source.path);
+		}
+
+		// 创建环境对象
+		Environment environment = new Environment(application, profiles, label, null, null);
+		for (Source source : sources) {
+			Map<Object, Object> properties = join(source.properties);
+			if (source.required || !properties.isEmpty()) {
+				// 加入环境对象中，缓存的属性不交给调用方修改
+				environment.add(new PropertySource(source.name, new HashMap<>(properties)));
+			}
 		}
 
 		return environment;
 	}
 
-	private void addDefaultPropertySource(Environment environment, String application, String profile, String label) {
-		// 寻找属性
-		Map<Object, Object> properties = findProperties(application, profile, label);
-		if (!properties.isEmpty()) {
-			// 属性集合转换为属性源
-			PropertySource propertySource = new PropertySource("credhub-" + application + "-" + profile + "-" + label,
-				properties);
-			// 加入环境对象
-			environment.add(propertySource);
+	private CompletableFuture<Map<Object, Object>> findProperties(String path) {
+		if (this.cacheTtl <= 0) {
+			return readProperties(path);
+		}
+		CachedProperties cached = this.cache.get(path);
+		if (cached != null) {
+			if (!cached.isExpired(System.nanoTime())) {
+				return CompletableFuture.completedFuture(cached.properties);
+			}
+			this.cache.remove(path, cached);
+		}
+		CompletableFuture<Map<Object, Object>> result = new CompletableFuture<>();
+		CompletableFuture<Map<Object, Object>> existing = this.loading.putIfAbsent(path, result);
+		if (existing != null) {
+			return existing;
+		}
+		readProperties(path).whenComplete((properties, failure) -> {
+			if (failure == null && !properties.isEmpty()) {
+				// a path without credentials is not cached, any request can make one up
+				cache(path, properties);
+			}
+			this.loading.remove(path, result);
+			if (failure == null) {
+				result.complete(properties);
+			}
+			else {
+				result.completeExceptionally(failure);
+			}
+		});
+		return result;
+	}
+
+	private void cache(String path, Map<Object, Object> properties) {
+		long now = System.nanoTime();
+		synchronized (this.cache) {
+			this.cache.values().removeIf(cached -> cached.isExpired(now));
+			this.cache.put(path, new CachedProperties(properties, now + this.cacheTtl));
+		}
+	}
+
+	private CompletableFuture<Map<Object, Object>> readProperties(String path) {
+		// 通过CredHubOperations搜索属性，同一路径的凭据同时读取，后面的覆盖前面的
+		return CompletableFuture
+				.supplyAsync(() -> this.credHubOperations.credentials().findByPath(path), this.executor)
+				.thenCompose(summaries -> {
+					List<CompletableFuture<JsonCredential>> credentials = new ArrayList<>();
+					for (CredentialSummary summary : summaries) {
+						SimpleCredentialName name = new SimpleCredentialName(summary.getName().getName());
+						credentials.add(CompletableFuture.supplyAsync(() -> this.credHubOperations.credentials()
+								.getByName(name, JsonCredential.class).getValue(), this.executor));
+					}
+					return CompletableFuture.allOf(credentials.toArray(new CompletableFuture[0])).thenApply(done -> {
+						Map<Object, Object> properties = new HashMap<>();
+						for (CompletableFuture<JsonCredential> credential : credentials) {
+							properties.putAll(credential.join());
+						}
+						return properties;
+					});
+				});
+	}
+
+	private static Map<Object, Object> join(CompletableFuture<Map<Object, Object>> properties) {
+		try {
+			return properties.join();
+		}
+		catch (CompletionException e) {
+			// fail like reading the credentials in this thread would
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	@Override
+	public void destroy() {
+		if (this.executor instanceof ExecutorService) {
+			((ExecutorService) this.executor).shutdownNow();
+		}
+	}
+
+	private static final class Source {
+
+		private final String name;
+
+		private final String path;
+
+		private final boolean required;
+
+		private CompletableFuture<Map<Object, Object>> properties;
+
+		private Source(String application, String profile, String label, boolean required) {
+			this.name = "credhub-" + application + "-" + profile + "-" + label;
+			// 创建路径地址
+			this.path = "/" + application + "/" + profile + "/" + label;
+			this.required = required;
 		}
+
 	}
 
-	private Map<Object, Object> findProperties(String application, String profile, String label) {
-		// 创建路径地址
-		String path = "/" + application + "/" + profile + "/" + label;
-
-		// 通过CredHubOperations搜索属性
-		return this.credHubOperations.credentials().findByPath(path).stream()
-				.map(credentialSummary -> credentialSummary.getName().getName())
-				.map(name -> this.credHubOperations.credentials().getByName(new SimpleCredentialName(name),
-						JsonCredential.class))
-				.map(CredentialDetails::getValue).flatMap(jsonCredential -> jsonCredential.entrySet().stream())
-				.collect(toMap(Map.Entry::getKey, Map.Entry::getValue, (a, b) -> b));
+	private static final class CachedProperties {
+
+		private final Map<Object, Object> properties;
+
+		private final long expires;
+
+		private CachedProperties(Map<Object, Object> properties, long expires) {
+			this.properties = properties;
+			this.expires = expires;
+		}
+
+		private boolean isExpired(long now) {
+			return now - this.expires >= 0;
+		}
+
 	}
 
 }
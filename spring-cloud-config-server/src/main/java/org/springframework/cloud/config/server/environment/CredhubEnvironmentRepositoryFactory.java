@@ -32,7 +32,7 @@ public class CredhubEnvironmentRepositoryFactory
 
 	@Override
 	public CredhubEnvironmentRepository build(CredhubEnvironmentProperties environmentProperties) {
-		return new CredhubEnvironmentRepository(this.credhubOperations);
+		return new CredhubEnvironmentRepository(this.credhubOperations, environmentProperties);
 	}
 
 }
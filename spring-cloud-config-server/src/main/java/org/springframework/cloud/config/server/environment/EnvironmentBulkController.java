@@ -0,0 +1,266 @@
+/*
+ * Copyright 2013-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.config.server.environment;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.http.HttpServletResponse;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.util.Assert;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Fetches the environments of many applications in one request. The body is a JSON list
+ * of {@code {"name", "profiles", "label"}} entries; the response is newline-delimited
+ * JSON with one line per distinct entry, written as soon as it is ready, so the order is
+ * not the order of the request. Each line is either the environment, which carries its
+ * own name, profiles and label, or an error object with the entry and an HTTP status.
+ *
+ * Entries are looked up concurrently through the same {@link EnvironmentController}
+ * that serves single requests, so decryption, overrides and empty-environment handling
+ * are the same, and repeated entries are only looked up once.
+ */
+@RestController
+@RequestMapping(method = RequestMethod.POST, path = "${spring.cloud.config.server.prefix:}")
+public class EnvironmentBulkController implements DisposableBean {
+
+	private static final byte[] NEWLINE = { '\n' };
+
+	private final EnvironmentController environmentController;
+
+	private final ObjectMapper objectMapper;
+
+	private final ExecutorService executor;
+
+	private int maxEntries = 500;
+
+	public EnvironmentBulkController(EnvironmentController environmentController, ObjectMapper objectMapper,
+			int parallelism) {
+		Assert.isTrue(parallelism > 0, "Parallelism must be positive");
+		this.environmentController = environmentController;
+		this.objectMapper = objectMapper;
+		AtomicInteger count = new AtomicInteger();
+		this.executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+			Thread thread = new Thread(runnable, "config-server-bulk-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Largest number of entries accepted in one request.
+	 * @param maxEntries the limit to set
+	 */
+	public void setMaxEntries(int maxEntries) {
+		this.maxEntries = maxEntries;
+	}
+
+	@RequestMapping(path = "/bulk", consumes = MediaType.APPLICATION_JSON_VALUE,
+			produces = MediaType.APPLICATION_NDJSON_VALUE)
+	public void bulk(@RequestBody List<Entry> entries, @RequestParam(defaultValue = "false") boolean includeOrigin,
+			HttpServletResponse response) throws IOException {
+		if (entries.size() > this.maxEntries) {
+			response.sendError(HttpStatus.BAD_REQUEST.value(),
+					"At most " + this.maxEntries + " entries can be fetched at once");
+			return;
+		}
+		for (Entry entry : entries) {
+			// rejected before any lookup is started, so none is left running for nothing
+			if (entry.getName() == null || entry.getProfiles() == null) {
+				response.sendError(HttpStatus.BAD_REQUEST.value(), "Every entry needs a name and profiles");
+				return;
+			}
+		}
+		CompletionService<Object> completion = new ExecutorCompletionService<>(this.executor);
+		Map<String, Future<Object>> lookups = new LinkedHashMap<>();
+		try {
+			for (Entry entry : entries) {
+				lookups.computeIfAbsent(entry.key(), key -> completion.submit(() -> lookup(entry, includeOrigin)));
+			}
+			response.setStatus(HttpStatus.OK.value());
+			response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+			OutputStream output = response.getOutputStream();
+			for (int i = 0; i < lookups.size(); i++) {
+				Object line = completion.take().get();
+				output.write(this.objectMapper.writeValueAsBytes(line));
+				output.write(NEWLINE);
+				output.flush();
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		catch (ExecutionException e) {
+			// lookup() reports its own failures, so this is not expected
+			throw new IllegalStateException(e.getCause());
+		}
+		finally {
+			for (Future<Object> lookup : lookups.values()) {
+				lookup.cancel(true);
+			}
+		}
+	}
+
+	private Object lookup(Entry entry, boolean includeOrigin) {
+		try {
+			return this.environmentController.getEnvironment(entry.getName(), entry.getProfiles(), entry.getLabel(),
+					includeOrigin);
+		}
+		catch (Exception e) {
+			return new Failure(entry, status(e), e.getMessage());
+		}
+	}
+
+	private static int status(Exception e) {
+		ResponseStatus status = AnnotatedElementUtils.findMergedAnnotation(e.getClass(), ResponseStatus.class);
+		if (status != null) {
+			return status.code().value();
+		}
+		if (e instanceof RepositoryException) {
+			return HttpStatus.NOT_FOUND.value();
+		}
+		if (e instanceof IllegalArgumentException) {
+			return HttpStatus.BAD_REQUEST.value();
+		}
+		return HttpStatus.INTERNAL_SERVER_ERROR.value();
+	}
+
+	@Override
+	public void destroy() {
+		this.executor.shutdownNow();
+	}
+
+	/**
+	 * One environment asked for in a bulk request.
+	 */
+	public static class Entry {
+
+		private String name;
+
+		private String profiles;
+
+		private String label;
+
+		public Entry() {
+		}
+
+		public Entry(String name, String profiles, String label) {
+			this.name = name;
+			this.profiles = profiles;
+			this.label = label;
+		}
+
+		public String getName() {
+			return this.name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+
+		public String getProfiles() {
+			return this.profiles;
+		}
+
+		public void setProfiles(String profiles) {
+			this.profiles = profiles;
+		}
+
+		public String getLabel() {
+			return this.label;
+		}
+
+		public void setLabel(String label) {
+			this.label = label;
+		}
+
+		private String key() {
+			return this.name + "/" + this.profiles + "/" + this.label;
+		}
+
+	}
+
+	/**
+	 * Line written for an entry that could not be fetched.
+	 */
+	@JsonInclude(JsonInclude.Include.NON_NULL)
+	public static class Failure {
+
+		private final String name;
+
+		private final String profiles;
+
+		private final String label;
+
+		private final int status;
+
+		private final String error;
+
+		Failure(Entry entry, int status, String error) {
+			this.name = entry.getName();
+			this.profiles = entry.getProfiles();
+			this.label = entry.getLabel();
+			this.status = status;
+			this.error = error;
+		}
+
+		public String getName() {
+			return this.name;
+		}
+
+		public String getProfiles() {
+			return this.profiles;
+		}
+
+		public String getLabel() {
+			return this.label;
+		}
+
+		public int getStatus() {
+			return this.status;
+		}
+
+		public String getError() {
+			return this.error;
+		}
+
+	}
+
+}
@@ -0,0 +1,343 @@
+/*
+ * Copyright 2013-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.config.server.environment;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.cloud.config.environment.Environment;
+import org.springframework.cloud.config.environment.PropertySource;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.util.StringUtils;
+
+/**
+ * Tracks the environments that clients are currently watching and notifies them as soon
+ * as a new version is detected. Each watched (application, profiles, label) is checked
+ * against the {@link EnvironmentRepository} at most once per check interval, however many
+ * clients are watching it, so parked watchers cost nothing but a listener each.
+ *
+ * Repositories that do not report a version (e.g. a native repository by default) are
+ * compared by the content of their property sources instead. Checks go through the
+ * repository like any other request, so a git backend fetches subject to its usual
+ * refresh rate, and {@link #checkNow()} lets webhooks and file watchers propagate a change
+ * without waiting for the next check.
+ */
+public class EnvironmentChangeMonitor implements SmartLifecycle {
+
+	private static final Log logger = LogFactory.getLog(EnvironmentChangeMonitor.class);
+
+	private final EnvironmentRepository repository;
+
+	private final Map<String, Watched> watched = new ConcurrentHashMap<>();
+
+	/**
+	 * Time (in milliseconds) between two checks of the watched environments.
+	 */
+	private long checkInterval = 5000;
+
+	private volatile ScheduledExecutorService executor;
+
+	private volatile boolean running;
+
+	public EnvironmentChangeMonitor(EnvironmentRepository repository) {
+		this.repository = repository;
+	}
+
+	public long getCheckInterval() {
+		return this.checkInterval;
+	}
+
+	public void setCheckInterval(long checkInterval) {
+		this.checkInterval = checkInterval;
+	}
+
+	/**
+	 * Registers a listener for changes to an environment. If the current version is
+	 * already different from the one supplied by the caller the listener is notified
+	 * straight away, otherwise on the first change detected.
+	 * @param application the application name
+	 * @param profiles the comma-separated profiles
+	 * @param label the label, may be null for the default label
+	 * @param version the version the caller already has, may be null
+	 * @param listener called with the current environment on every change
+	 * @return a subscription to cancel once the caller is no longer interested
+	 */
+	public Subscription watch(String application, String profiles, String label, String version,
+			Consumer<Environment> listener) {
+		return watch(application, profiles, label, version, (previous, current) -> listener.accept(current));
+	}
+
+	/**
+	 * Registers a listener for changes to an environment that also needs the previous
+	 * version of the environment, e.g. to work out what changed.
+	 * @param application the application name
+	 * @param profiles the comma-separated profiles
+	 * @param label the label, may be null for the default label
+	 * @param version the version the caller already has, may be null
+	 * @param listener called with the previous (null when notified straight away) and
+	 * the current environment on every change
+	 * @return a subscription to cancel once the caller is no longer interested
+	 */
+	public Subscription watch(String application, String profiles, String label, String version,
+			BiConsumer<Environment, Environment> listener) {
+		String key = application + "/" + profiles + "/" + label;
+		Subscription subscription = new Subscription(key, listener);
+		Watched entry = this.watched.compute(key, (k, existing) -> {
+			Watched result = existing != null ? existing : new Watched(application, profiles, label);
+			result.subscriptions.add(subscription);
+			return result;
+		});
+		Environment current = entry.environment;
+		if (current == null) {
+			try {
+				current = entry.fetch(this.repository);
+			}
+			catch (RuntimeException e) {
+				subscription.cancel();
+				throw e;
+			}
+		}
+		if (!Objects.equals(normalize(version), normalize(current.getVersion()))) {
+			subscription.notify(null, current);
+		}
+		return subscription;
+	}
+
+	/**
+	 * Re-reads every watched environment from the repository and notifies the
+	 * subscribers of those that changed. Called periodically while running, but may also
+	 * be called whenever a change is known to have happened to propagate it at once.
+	 * @return the watched environments in which the effective value of at least one
+	 * property changed, as opposed to only the version (e.g. a commit that touched files
+	 * the environment does not read, or that was overridden by a higher property source)
+	 */
+	public synchronized List<Environment> check() {
+		List<Environment> effective = new ArrayList<>();
+		for (Watched entry : this.watched.values()) {
+			try {
+				Environment previous = entry.environment;
+				Environment current = entry.fetch(this.repository);
+				if (previous != null && changed(previous, current)) {
+					if (logger.isDebugEnabled()) {
+						logger.debug("Detected new version " + current.getVersion() + " of " + entry.application + "/"
+								+ entry.profiles + "/" + entry.label);
+					}
+					for (Subscription subscription : entry.subscriptions) {
+						subscription.notify(previous, current);
+					}
+					if (!flatten(previous).equals(flatten(current))) {
+						effective.add(current);
+					}
+				}
+			}
+			catch (Exception e) {
+				logger.warn("Could not check " + entry.application + "/" + entry.profiles + "/" + entry.label
+						+ " for changes: " + e.getMessage());
+			}
+		}
+		return effective;
+	}
+
+	/**
+	 * Checks the watched environments like {@link #check()}, but reports the ones whose
+	 * effective properties changed since the previous call of this method rather than
+	 * since the previous check. Periodic checks therefore do not use up the changes that,
+	 * e.g., a webhook is asking about.
+	 * @return the watched environments in which the effective value of at least one
+	 * property changed since this method was last called
+	 */
+	public synchronized List<Environment> checkEffectiveChanges() {
+		check();
+		List<Environment> effective = new ArrayList<>();
+		for (Watched entry : this.watched.values()) {
+			Environment current = entry.environment;
+			if (current == null) {
+				continue;
+			}
+			Map<Object, Object> properties = flatten(current);
+			Map<Object, Object> reported = entry.reported;
+			entry.reported = properties;
+			if (reported != null && !reported.equals(properties)) {
+				effective.add(current);
+			}
+		}
+		return effective;
+	}
+
+	/**
+	 * Checks the watched environments as soon as possible without blocking the caller,
+	 * e.g. when a webhook or the file system reported a change to the repository.
+	 */
+	public void checkNow() {
+		ScheduledExecutorService executor = this.executor;
+		if (this.running && executor != null) {
+			executor.execute(this::check);
+		}
+		else {
+			check();
+		}
+	}
+
+	/* for testing */ int getWatchedCount() {
+		return this.watched.size();
+	}
+
+	private static boolean changed(Environment previous, Environment current) {
+		if (previous.getVersion() != null || current.getVersion() != null) {
+			return !Objects.equals(previous.getVersion(), current.getVersion());
+		}
+		List<PropertySource> before = previous.getPropertySources();
+		List<PropertySource> after = current.getPropertySources();
+		if (before.size() != after.size()) {
+			return true;
+		}
+		for (int i = 0; i < before.size(); i++) {
+			if (!Objects.equals(before.get(i).getName(), after.get(i).getName())
+					|| !Objects.equals(before.get(i).getSource(), after.get(i).getSource())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static Map<Object, Object> flatten(Environment environment) {
+		Map<Object, Object> properties = new HashMap<>();
+		List<PropertySource> sources = environment.getPropertySources();
+		// earlier property sources take precedence
+		for (int i = sources.size() - 1; i >= 0; i--) {
+			properties.putAll(sources.get(i).getSource());
+		}
+		return properties;
+	}
+
+	private static String normalize(String version) {
+		return StringUtils.hasText(version) ? version : null;
+	}
+
+	@Override
+	public synchronized void start() {
+		if (!this.running) {
+			this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "config-server-watch");
+				thread.setDaemon(true);
+				return thread;
+			});
+			this.executor.scheduleWithFixedDelay(this::check, this.checkInterval, this.checkInterval,
+					TimeUnit.MILLISECONDS);
+			this.running = true;
+		}
+	}
+
+	@Override
+	public synchronized void stop() {
+		if (this.running) {
+			this.executor.shutdownNow();
+			this.running = false;
+		}
+	}
+
+	@Override
+	public boolean isRunning() {
+		return this.running;
+	}
+
+	/**
+	 * A registered interest in an environment.
+	 */
+	public final class Subscription {
+
+		private final String key;
+
+		private final BiConsumer<Environment, Environment> listener;
+
+		private Subscription(String key, BiConsumer<Environment, Environment> listener) {
+			this.key = key;
+			this.listener = listener;
+		}
+
+		private void notify(Environment previous, Environment current) {
+			try {
+				this.listener.accept(previous, current);
+			}
+			catch (Exception e) {
+				logger.warn("Watch listener failed, cancelling it: " + e.getMessage());
+				cancel();
+			}
+		}
+
+		/**
+		 * Stop receiving notifications. Watched environments are forgotten as soon as
+		 * nobody is interested in them any more.
+		 */
+		public void cancel() {
+			EnvironmentChangeMonitor.this.watched.computeIfPresent(this.key, (k, entry) -> {
+				entry.subscriptions.remove(this);
+				return entry.subscriptions.isEmpty() ? null : entry;
+			});
+		}
+
+	}
+
+	private static final class Watched {
+
+		private final String application;
+
+		private final String profiles;
+
+		private final String label;
+
+		private final Set<Subscription> subscriptions = new CopyOnWriteArraySet<>();
+
+		private volatile Environment environment;
+
+		/**
+		 * The effective properties last reported by {@link #checkEffectiveChanges()}.
+		 */
+		private volatile Map<Object, Object> reported;
+
+		private Watched(String application, String profiles, String label) {
+			this.application = application;
+			this.profiles = profiles;
+			this.label = label;
+		}
+
+		private Environment fetch(EnvironmentRepository repository) {
+			Environment current = repository.findOne(this.application, this.profiles, this.label, false);
+			if (this.reported == null) {
+				this.reported = flatten(current);
+			}
+			this.environment = current;
+			return current;
+		}
+
+	}
+
+}
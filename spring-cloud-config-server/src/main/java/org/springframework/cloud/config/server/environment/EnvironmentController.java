@@ -35,6 +35,7 @@ import org.yaml.snakeyaml.Yaml;
 import org.yaml.snakeyaml.nodes.Tag;
 
 import org.springframework.cloud.config.environment.Environment;
+import org.springframework.cloud.config.environment.EnvironmentDiff;
 import org.springframework.cloud.config.environment.EnvironmentMediaType;
 import org.springframework.cloud.config.environment.PropertySource;
 import org.springframework.cloud.config.server.support.PathUtils;
@@ -108,7 +109,8 @@ public class EnvironmentController {
 		return getEnvironment(name, profiles, null, false);
 	}
 
-	@RequestMapping(path = "/{name}/{profiles:.*[^-].*}", produces = EnvironmentMediaType.V2_JSON)
+	@RequestMapping(path = "/{name}/{profiles:.*[^-].*}",
+			produces = { EnvironmentMediaType.V2_JSON, EnvironmentMediaType.V2_CBOR })
 	public Environment defaultLabelIncludeOrigin(@PathVariable String name, @PathVariable String profiles) {
 		return getEnvironment(name, profiles, null, true);
 	}
@@ -118,12 +120,46 @@ public class EnvironmentController {
 		return getEnvironment(name, profiles, label, false);
 	}
 
-	@RequestMapping(path = "/{name}/{profiles}/{label:.*}", produces = EnvironmentMediaType.V2_JSON)
+	@RequestMapping(path = "/{name}/{profiles}/{label:.*}",
+			produces = { EnvironmentMediaType.V2_JSON, EnvironmentMediaType.V2_CBOR })
 	public Environment labelledIncludeOrigin(@PathVariable String name, @PathVariable String profiles,
 			@PathVariable String label) {
 		return getEnvironment(name, profiles, label, true);
 	}
 
+	@RequestMapping(path = "/{name}/{profiles}/diff", params = "useDefaultLabel",
+			produces = MediaType.APPLICATION_JSON_VALUE)
+	public EnvironmentDiff diffDefaultLabel(@PathVariable String name, @PathVariable String profiles,
+			@RequestParam String from) {
+		return diff(name, profiles, null, from);
+	}
+
+	/**
+	 * Only the keys that were added, changed or removed since the version a client
+	 * already has. The old version is looked up as a label, which for git means
+	 * reading the properties from the tree of that commit; if the repository cannot
+	 * produce that version again the response is a 404 and the client should fetch the
+	 * whole environment instead.
+	 * @param name the application name
+	 * @param profiles the profiles
+	 * @param label the label
+	 * @param from the version the client has
+	 * @return the difference between the two versions
+	 */
+	@RequestMapping(path = "/{name}/{profiles}/{label}/diff", produces = MediaType.APPLICATION_JSON_VALUE)
+	public EnvironmentDiff diff(@PathVariable String name, @PathVariable String profiles, @PathVariable String label,
+			@RequestParam String from) {
+		Environment current = getEnvironment(name, profiles, label, false);
+		if (from.equals(current.getVersion())) {
+			return EnvironmentDiff.between(current, current);
+		}
+		Environment previous = getEnvironment(name, profiles, from, false);
+		if (!from.equals(previous.getVersion())) {
+			throw new NoSuchLabelException("No such version: " + from);
+		}
+		return EnvironmentDiff.between(previous, current);
+	}
+
 	public Environment getEnvironment(String name, String profiles, String label, boolean includeOrigin) {
 		try {
 			// 确认名称
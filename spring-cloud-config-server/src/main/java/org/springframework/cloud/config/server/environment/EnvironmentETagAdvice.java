@@ -0,0 +1,71 @@
+/*
+ * Copyright 2013-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.config.server.environment;
+
+import org.springframework.cloud.config.environment.Environment;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.http.server.ServletServerHttpResponse;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+/**
+ * Tags environments served by the {@link EnvironmentController} with their version and
+ * state, and answers conditional requests for an unchanged environment with 304 Not
+ * Modified, so clients polling for changes do not download the whole environment each
+ * time. Environments without a version are always sent in full.
+ */
+@ControllerAdvice(assignableTypes = EnvironmentController.class)
+public class EnvironmentETagAdvice implements ResponseBodyAdvice<Object> {
+
+	@Override
+	public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+		return Environment.class.isAssignableFrom(returnType.getParameterType());
+	}
+
+	@Override
+	public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+			Class<? extends HttpMessageConverter<?>> selectedConverterType, ServerHttpRequest request,
+			ServerHttpResponse response) {
+		if (!(body instanceof Environment) || request.getMethod() != HttpMethod.GET
+				|| !(request instanceof ServletServerHttpRequest) || !(response instanceof ServletServerHttpResponse)) {
+			return body;
+		}
+		Environment environment = (Environment) body;
+		if (!StringUtils.hasText(environment.getVersion())) {
+			return body;
+		}
+		String etag = environment.getVersion();
+		if (StringUtils.hasText(environment.getState())) {
+			etag = etag + "-" + environment.getState();
+		}
+		ServletWebRequest webRequest = new ServletWebRequest(((ServletServerHttpRequest) request).getServletRequest(),
+				((ServletServerHttpResponse) response).getServletResponse());
+		if (webRequest.checkNotModified(etag)) {
+			return null;
+		}
+		return body;
+	}
+
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2013-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.config.server.environment;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.cloud.config.environment.Environment;
+import org.springframework.util.Assert;
+
+/**
+ * Looks up a list of environments when the application starts, so that the repositories
+ * they come from are cloned, checked out and routed before the first client asks for
+ * them. It runs as an {@link ApplicationRunner}, which Spring Boot calls before it marks
+ * the application as ready to accept traffic, so a readiness probe keeps the server out
+ * of rotation until the warm-up is done. An environment that cannot be found is logged
+ * and counted, it does not stop the server from starting.
+ *
+ * Each environment is written like the path of an environment request:
+ * <code>{application}/{profiles}</code> or
+ * <code>{application}/{profiles}/{label}</code>, with {@code (_)} for a slash in the
+ * application or label.
+ */
+public class EnvironmentWarmup implements ApplicationRunner {
+
+	private static Log logger = LogFactory.getLog(EnvironmentWarmup.class);
+
+	private final EnvironmentRepository repository;
+
+	private final List<String[]> environments = new ArrayList<>();
+
+	private final int parallelism;
+
+	private final AtomicInteger completed = new AtomicInteger();
+
+	private final AtomicInteger failed = new AtomicInteger();
+
+	private volatile boolean done;
+
+	public EnvironmentWarmup(EnvironmentRepository repository, List<String> environments, int parallelism) {
+		Assert.isTrue(parallelism > 0, "Parallelism must be positive");
+		this.repository = repository;
+		this.parallelism = parallelism;
+		for (String environment : new LinkedHashSet<>(environments)) {
+			String[] parts = environment.split("/");
+			Assert.isTrue(parts.length == 2 || parts.length == 3,
+					() -> "Warm-up environment must be {application}/{profiles}[/{label}]: " + environment);
+			this.environments.add(new String[] { Environment.normalize(parts[0]), parts[1],
+					parts.length == 3 ? Environment.normalize(parts[2]) : null });
+		}
+	}
+
+	@Override
+	public void run(ApplicationArguments args) throws Exception {
+		warmUp();
+	}
+
+	/**
+	 * Looks up all the environments, up to the parallelism at a time, and returns when
+	 * they have all been looked up or failed.
+	 */
+	public void warmUp() throws InterruptedException {
+		if (this.done) {
+			return;
+		}
+		long start = System.currentTimeMillis();
+		int threads = Math.min(this.parallelism, this.environments.size());
+		if (threads > 0) {
+			AtomicInteger count = new AtomicInteger();
+			ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+				Thread thread = new Thread(runnable, "config-server-warmup-" + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			});
+			try {
+				List<Future<?>> futures = new ArrayList<>();
+				for (String[] environment : this.environments) {
+					futures.add(executor.submit(() -> lookup(environment[0], environment[1], environment[2])));
+				}
+				for (Future<?> future : futures) {
+					try {
+						future.get();
+					}
+					catch (ExecutionException e) {
+						// lookup() already counted and logged it
+					}
+				}
+			}
+			finally {
+				executor.shutdownNow();
+			}
+		}
+		this.done = true;
+		if (logger.isInfoEnabled() && !this.environments.isEmpty()) {
+			logger.info("Warmed up " + this.completed.get() + " of " + this.environments.size() + " environments in "
+					+ (System.currentTimeMillis() - start) + "ms");
+		}
+	}
+
+	private void lookup(String application, String profiles, String label) {
+		try {
+			this.repository.findOne(application, profiles, label, false);
+		}
+		catch (RuntimeException e) {
+			this.failed.incrementAndGet();
+			logger.warn("Could not warm up " + application + "/" + profiles + (label == null ? "" : "/" + label)
+					+ ": " + e.getMessage());
+			if (logger.isDebugEnabled()) {
+				logger.debug("Warm-up failure", e);
+			}
+		}
+		finally {
+			this.completed.incrementAndGet();
+		}
+	}
+
+	/**
+	 * @return true once every environment has been looked up (or failed)
+	 */
+	public boolean isDone() {
+		return this.done;
+	}
+
+	public int getTotal() {
+		return this.environments.size();
+	}
+
+	/**
+	 * @return the number of environments looked up so far, including the failed ones
+	 */
+	public int getCompleted() {
+		return this.completed.get();
+	}
+
+	public int getFailed() {
+		return this.failed.get();
+	}
+
+}
@@ -0,0 +1,306 @@
+/*
+ * Copyright 2013-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.config.server.environment;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.cloud.config.environment.Environment;
+import org.springframework.cloud.config.environment.EnvironmentDiff;
+import org.springframework.cloud.config.server.environment.EnvironmentChangeMonitor.Subscription;
+import org.springframework.cloud.config.server.support.PathUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Long-polling endpoint for clients that want to know when their configuration changes.
+ * A request carries the version the client already has and is held open until a
+ * different version is available or the timeout expires, in which case the response is
+ * {@code 304 Not Modified} and the client simply asks again. The body of a successful
+ * response only describes the new version; clients fetch the environment itself as
+ * usual.
+ *
+ * Clients interested in several environments, or in what exactly changed, can instead
+ * open a single server-sent events stream and be pushed an event per change. Events are
+ * written by a pool of their own, in order per stream, so that a slow client only holds
+ * up its own stream and never the checks of the {@link EnvironmentChangeMonitor}. Streams
+ * whose events the pool has no room for are closed, leaving it to the client to
+ * reconnect.
+ */
+@RestController
+@RequestMapping(method = RequestMethod.GET, path = "${spring.cloud.config.server.prefix:}")
+public class EnvironmentWatchController implements DisposableBean {
+
+	private final EnvironmentChangeMonitor monitor;
+
+	private final ExecutorService sender;
+
+	private final ScheduledExecutorService timer;
+
+	private long timeout = 30000;
+
+	private long streamTimeout = 120000;
+
+	private long sendTimeout = 10000;
+
+	public EnvironmentWatchController(EnvironmentChangeMonitor monitor) {
+		this(monitor, 8, 1000);
+	}
+
+	/**
+	 * Creates a controller with a bounded pool for writing change events.
+	 * @param monitor the monitor to watch environments with
+	 * @param sendThreads the number of threads writing change events
+	 * @param sendQueueCapacity the number of change events that can wait for a thread
+	 */
+	public EnvironmentWatchController(EnvironmentChangeMonitor monitor, int sendThreads, int sendQueueCapacity) {
+		this.monitor = monitor;
+		AtomicInteger count = new AtomicInteger();
+		ThreadPoolExecutor sender = new ThreadPoolExecutor(sendThreads, sendThreads, 60, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<>(sendQueueCapacity), runnable -> {
+					Thread thread = new Thread(runnable, "config-server-watch-send-" + count.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				});
+		sender.allowCoreThreadTimeOut(true);
+		this.sender = sender;
+		this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "config-server-watch-timeout");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Time (in milliseconds) to hold a watch request open before answering that nothing
+	 * changed.
+	 * @param timeout the timeout to set
+	 */
+	public void setTimeout(long timeout) {
+		this.timeout = timeout;
+	}
+
+	/**
+	 * Time (in milliseconds) after which an event stream is closed by the server. Event
+	 * stream clients reconnect on their own.
+	 * @param streamTimeout the timeout to set
+	 */
+	public void setStreamTimeout(long streamTimeout) {
+		this.streamTimeout = streamTimeout;
+	}
+
+	/**
+	 * Time (in milliseconds) an event stream client gets to take an event before its
+	 * stream is closed.
+	 * @param sendTimeout the timeout to set
+	 */
+	public void setSendTimeout(long sendTimeout) {
+		this.sendTimeout = sendTimeout;
+	}
+
+	@RequestMapping(path = "/{name}/{profiles}/watch", params = "useDefaultLabel",
+			produces = MediaType.APPLICATION_JSON_VALUE)
+	public DeferredResult<ResponseEntity<Environment>> watchDefaultLabel(@PathVariable String name,
+			@PathVariable String profiles, @RequestParam(required = false) String version) {
+		return watch(name, profiles, null, version);
+	}
+
+	@RequestMapping(path = "/{name}/{profiles}/{label}/watch", produces = MediaType.APPLICATION_JSON_VALUE)
+	public DeferredResult<ResponseEntity<Environment>> watch(@PathVariable String name, @PathVariable String profiles,
+			@PathVariable String label, @RequestParam(required = false) String version) {
+		String application = normalize(name);
+		String normalizedLabel = normalize(label);
+		DeferredResult<ResponseEntity<Environment>> result = new DeferredResult<>(this.timeout,
+				() -> ResponseEntity.status(HttpStatus.NOT_MODIFIED).build());
+		Subscription subscription = this.monitor.watch(application, profiles, normalizedLabel, version,
+				environment -> result.setResult(ResponseEntity.ok(summary(environment))));
+		result.onCompletion(subscription::cancel);
+		return result;
+	}
+
+	/**
+	 * Streams change events for a set of environments. Each {@code env} parameter is
+	 * {@code name/profiles[/label]}; the first event for an environment reports its current
+	 * version, later ones every new version. With {@code diff=true} changes are sent as
+	 * {@code diff} events carrying the property-level {@link EnvironmentDiff} instead of
+	 * {@code change} events carrying the new version only.
+	 * @param envs the environments to watch
+	 * @param diff whether to send property-level differences
+	 * @return the event stream
+	 */
+	@RequestMapping(path = "/watch", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+	public SseEmitter stream(@RequestParam("env") List<String> envs,
+			@RequestParam(defaultValue = "false") boolean diff) {
+		SseEmitter emitter = new SseEmitter(this.streamTimeout);
+		List<Subscription> subscriptions = new ArrayList<>();
+		Runnable cancel = () -> {
+			synchronized (subscriptions) {
+				subscriptions.forEach(Subscription::cancel);
+				subscriptions.clear();
+			}
+		};
+		emitter.onCompletion(cancel);
+		emitter.onTimeout(cancel);
+		emitter.onError(error -> cancel.run());
+		EventStream events = new EventStream(emitter, cancel);
+		try {
+			for (String env : envs) {
+				String[] parts = env.split("/");
+				if (parts.length < 2 || parts.length > 3) {
+					throw new IllegalArgumentException("Invalid environment: " + env);
+				}
+				String label = parts.length > 2 ? normalize(parts[2]) : null;
+				Subscription subscription = this.monitor.watch(normalize(parts[0]), parts[1], label, null,
+						(previous, current) -> events.send(event(diff && previous != null, previous, current)));
+				synchronized (subscriptions) {
+					subscriptions.add(subscription);
+				}
+			}
+		}
+		catch (RuntimeException e) {
+			cancel.run();
+			throw e;
+		}
+		return emitter;
+	}
+
+	private SseEmitter.SseEventBuilder event(boolean diff, Environment previous, Environment current) {
+		SseEmitter.SseEventBuilder event = SseEmitter.event();
+		if (current.getVersion() != null) {
+			// without a version there is nothing a reconnecting client could resume from
+			event.id(current.getVersion());
+		}
+		if (diff) {
+			event.name("diff").data(EnvironmentDiff.between(previous, current), MediaType.APPLICATION_JSON);
+		}
+		else {
+			event.name("change").data(summary(current), MediaType.APPLICATION_JSON);
+		}
+		return event;
+	}
+
+	private Environment summary(Environment environment) {
+		return new Environment(environment.getName(), environment.getProfiles(), environment.getLabel(),
+				environment.getVersion(), environment.getState());
+	}
+
+	private String normalize(String part) {
+		if (PathUtils.isInvalidEncodedLocation(part)) {
+			throw new InvalidEnvironmentRequestException("Invalid request");
+		}
+		return Environment.normalize(part);
+	}
+
+	@Override
+	public void destroy() {
+		this.sender.shutdownNow();
+		this.timer.shutdownNow();
+	}
+
+	@ExceptionHandler(RepositoryException.class)
+	public void noSuchLabel(HttpServletResponse response) throws IOException {
+		response.sendError(HttpStatus.NOT_FOUND.value());
+	}
+
+	@ExceptionHandler(IllegalArgumentException.class)
+	public void illegalArgument(HttpServletResponse response) throws IOException {
+		response.sendError(HttpStatus.BAD_REQUEST.value());
+	}
+
+	/**
+	 * The events of one stream, sent one after the other by the sender pool. A client that
+	 * does not take an event within the send timeout has its stream closed.
+	 */
+	private final class EventStream {
+
+		private final SseEmitter emitter;
+
+		private final Runnable cancel;
+
+		private final AtomicBoolean closed = new AtomicBoolean();
+
+		private CompletableFuture<Void> pending = CompletableFuture.completedFuture(null);
+
+		private EventStream(SseEmitter emitter, Runnable cancel) {
+			this.emitter = emitter;
+			this.cancel = cancel;
+		}
+
+		synchronized void send(SseEmitter.SseEventBuilder event) {
+			if (!this.closed.get()) {
+				this.pending = this.pending.thenRunAsync(() -> deliver(event), EnvironmentWatchController.this.sender);
+				// delivery catches its own failures, so this is the pool rejecting the event
+				this.pending.whenComplete((result, error) -> {
+					if (error != null) {
+						close(error);
+					}
+				});
+			}
+		}
+
+		private void deliver(SseEmitter.SseEventBuilder event) {
+			if (this.closed.get()) {
+				return;
+			}
+			ScheduledFuture<?> timeout = EnvironmentWatchController.this.timer.schedule(
+					() -> close(new TimeoutException("Client did not take a change event in time")),
+					EnvironmentWatchController.this.sendTimeout, TimeUnit.MILLISECONDS);
+			try {
+				this.emitter.send(event);
+			}
+			catch (IOException | RuntimeException e) {
+				close(e);
+			}
+			finally {
+				timeout.cancel(false);
+			}
+		}
+
+		private void close(Throwable cause) {
+			if (this.closed.compareAndSet(false, true)) {
+				this.cancel.run();
+				this.emitter.completeWithError(cause);
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2013-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.config.server.environment;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.context.SmartLifecycle;
+
+/**
+ * Garbage collects the local clones of git repositories in the background, each one
+ * every {@link JGitEnvironmentRepository#getMaintenanceRate() maintenance rate}, so that
+ * the loose objects and refs that fetches leave behind do not slow down the requests of
+ * a server that has been running for months. Repositories that are not maintained cost
+ * nothing: the scheduler does not start unless one of them is.
+ */
+public class GitMaintenanceScheduler implements SmartLifecycle {
+
+	private static final Log logger = LogFactory.getLog(GitMaintenanceScheduler.class);
+
+	private final List<JGitEnvironmentRepository> repositories;
+
+	/**
+	 * Time (in milliseconds) between two checks for repositories due for maintenance.
+	 */
+	private long checkInterval = 60000;
+
+	private volatile ScheduledExecutorService executor;
+
+	private volatile boolean running;
+
+	public GitMaintenanceScheduler(Collection<? extends JGitEnvironmentRepository> repositories) {
+		this.repositories = new ArrayList<>(repositories);
+	}
+
+	public long getCheckInterval() {
+		return this.checkInterval;
+	}
+
+	public void setCheckInterval(long checkInterval) {
+		this.checkInterval = checkInterval;
+	}
+
+	/**
+	 * Garbage collects the repositories whose maintenance rate has passed, one after
+	 * another.
+	 * @return the number of local clones garbage collected
+	 */
+	public int check() {
+		int maintained = 0;
+		for (JGitEnvironmentRepository repository : this.repositories) {
+			try {
+				maintained += repository.maintainIfDue();
+			}
+			catch (RuntimeException e) {
+				logger.warn("Could not maintain " + repository.getUri() + ": " + e.getMessage());
+			}
+		}
+		return maintained;
+	}
+
+	@Override
+	public synchronized void start() {
+		if (!this.running && this.repositories.stream().anyMatch(JGitEnvironmentRepository::isMaintenanceEnabled)) {
+			this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "config-server-git-maintenance");
+				thread.setDaemon(true);
+				return thread;
+			});
+			this.executor.scheduleWithFixedDelay(this::check, this.checkInterval, this.checkInterval,
+					TimeUnit.MILLISECONDS);
+			this.running = true;
+		}
+	}
+
+	@Override
+	public synchronized void stop() {
+		if (this.running) {
+			this.executor.shutdownNow();
+			this.running = false;
+		}
+	}
+
+	@Override
+	public boolean isRunning() {
+		return this.running;
+	}
+
+}
@@ -0,0 +1,323 @@
+/*
+ * Copyright 2013-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.config.server.environment;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.eclipse.jgit.api.FetchCommand;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.internal.storage.dfs.DfsPackDescription;
+import org.eclipse.jgit.internal.storage.dfs.DfsPackFile;
+import org.eclipse.jgit.internal.storage.dfs.DfsRepositoryDescription;
+import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
+import org.eclipse.jgit.internal.storage.pack.PackExt;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.transport.RefSpec;
+import org.eclipse.jgit.transport.TagOpt;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.util.FS;
+
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.ResourceUtils;
+import org.springframework.util.StringUtils;
+
+/**
+ * A git repository kept in memory by JGit, with no working directory: the config files
+ * are read straight from the blobs of a commit through a {@link ResourceLoader} that
+ * resolves locations starting with {@link #PREFIX}, e.g. {@code git-memory:/sub/}.
+ */
+class InMemoryGitRepository {
+
+	/**
+	 * Prefix of the search locations in the repository, followed by the path from its
+	 * root.
+	 */
+	static final String PREFIX = "git-memory:/";
+
+	/**
+	 * Number of commits whose list of files is kept, e.g. one per label in use.
+	 */
+	private static final int MAX_SNAPSHOTS = 16;
+
+	private static final AntPathMatcher MATCHER = new AntPathMatcher();
+
+	private final String uri;
+
+	private InMemoryRepository repository;
+
+	private boolean fetched;
+
+	private final Map<ObjectId, Snapshot> snapshots = new LinkedHashMap<ObjectId, Snapshot>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<ObjectId, Snapshot> eldest) {
+			return size() > MAX_SNAPSHOTS;
+		}
+	};
+
+	InMemoryGitRepository(String uri) {
+		this.uri = uri;
+		this.repository = create(uri);
+	}
+
+	private static InMemoryRepository create(String uri) {
+		try {
+			// fetching from a local path needs a file system
+			return new InMemoryRepository.Builder().setRepositoryDescription(new DfsRepositoryDescription(uri))
+					.setFS(FS.DETECTED).build();
+		}
+		catch (IOException e) {
+			throw new IllegalStateException("Cannot create in-memory repository for " + uri, e);
+		}
+	}
+
+	/**
+	 * @return a command that fetches all the branches and tags of the remote repository
+	 */
+	synchronized FetchCommand fetch() {
+		return Git.wrap(this.repository).fetch().setRemote(this.uri)
+				.setRefSpecs(new RefSpec("+" + Constants.R_HEADS + "*:" + Constants.R_REMOTES + "origin/*"))
+				.setTagOpt(TagOpt.FETCH_TAGS).setRemoveDeletedRefs(true);
+	}
+
+	synchronized void fetched() {
+		this.fetched = true;
+	}
+
+	synchronized boolean isFetched() {
+		return this.fetched;
+	}
+
+	/**
+	 * Drops everything, so that the next fetch starts again from nothing. Fetches only
+	 * ever add packs, so this is how the objects no longer reachable are let go.
+	 */
+	synchronized void clear() {
+		this.repository.close();
+		this.repository = create(this.uri);
+		this.snapshots.clear();
+		this.fetched = false;
+	}
+
+	/**
+	 * @return the size in bytes of the packs and their indexes
+	 */
+	synchronized long getSize() {
+		long size = 0;
+		for (DfsPackDescription pack : packs()) {
+			size += pack.getFileSize(PackExt.PACK) + pack.getFileSize(PackExt.INDEX);
+		}
+		return size;
+	}
+
+	synchronized long getObjectCount() {
+		long count = 0;
+		for (DfsPackDescription pack : packs()) {
+			count += pack.getObjectCount();
+		}
+		return count;
+	}
+
+	private List<DfsPackDescription> packs() {
+		List<DfsPackDescription> packs = new ArrayList<>();
+		try {
+			for (DfsPackFile pack : this.repository.getObjectDatabase().getPacks()) {
+				packs.add(pack.getPackDescription());
+			}
+		}
+		catch (IOException e) {
+			// nothing read yet
+		}
+		return packs;
+	}
+
+	/**
+	 * @param label a branch, tag or commit id
+	 * @return the commit, or null if there is no such label
+	 */
+	synchronized ObjectId resolve(String label) throws IOException {
+		ObjectId id = null;
+		for (String name : new String[] { Constants.R_REMOTES + "origin/" + label, Constants.R_TAGS + label }) {
+			Ref ref = this.repository.exactRef(name);
+			if (ref != null) {
+				id = ref.getObjectId();
+				break;
+			}
+		}
+		if (id == null && ObjectId.isId(label) && this.repository.hasObject(ObjectId.fromString(label))) {
+			id = ObjectId.fromString(label);
+		}
+		if (id == null) {
+			return null;
+		}
+		try (RevWalk walk = new RevWalk(this.repository)) {
+			// peels annotated tags
+			return walk.parseCommit(id).getId();
+		}
+	}
+
+	/**
+	 * @param commit the commit to search
+	 * @param patterns search paths relative to the root, ending with a slash, that can
+	 * contain wildcards
+	 * @return the search locations of the directories that exist in the commit
+	 */
+	List<String> getSearchLocations(ObjectId commit, String[] patterns) throws IOException {
+		Snapshot snapshot = snapshot(commit);
+		List<String> locations = new ArrayList<>();
+		for (String pattern : patterns) {
+			String path = StringUtils.trimTrailingCharacter(StringUtils.trimLeadingCharacter(pattern, '/'), '/');
+			if (path.isEmpty() || path.equals(".")) {
+				locations.add(PREFIX);
+			}
+			else if (MATCHER.isPattern(path)) {
+				for (String directory : snapshot.directories) {
+					if (MATCHER.match(path, directory)) {
+						locations.add(PREFIX + directory + "/");
+					}
+				}
+			}
+			else if (snapshot.directories.contains(path)) {
+				locations.add(PREFIX + path + "/");
+			}
+		}
+		return locations;
+	}
+
+	/**
+	 * @param commit the commit to read from
+	 * @return a resource loader for the locations that start with {@link #PREFIX}
+	 */
+	ResourceLoader getResourceLoader(ObjectId commit) throws IOException {
+		Snapshot snapshot = snapshot(commit);
+		InMemoryRepository repository;
+		synchronized (this) {
+			repository = this.repository;
+		}
+		DefaultResourceLoader loader = new DefaultResourceLoader();
+		loader.addProtocolResolver((location, resourceLoader) -> {
+			// Spring Boot reads a location with a scheme it does not know as a file
+			String path = location.startsWith(ResourceUtils.FILE_URL_PREFIX + PREFIX)
+					? location.substring(ResourceUtils.FILE_URL_PREFIX.length()) : location;
+			return path.startsWith(PREFIX) ? new BlobResource(repository, snapshot, path) : null;
+		});
+		return loader;
+	}
+
+	private synchronized Snapshot snapshot(ObjectId commit) throws IOException {
+		Snapshot snapshot = this.snapshots.get(commit);
+		if (snapshot == null) {
+			snapshot = new Snapshot();
+			try (RevWalk walk = new RevWalk(this.repository); TreeWalk tree = new TreeWalk(this.repository)) {
+				RevCommit revCommit = walk.parseCommit(commit);
+				tree.addTree(revCommit.getTree());
+				tree.setRecursive(true);
+				while (tree.next()) {
+					String path = tree.getPathString();
+					snapshot.files.put(path, tree.getObjectId(0));
+					for (int slash = path.lastIndexOf('/'); slash > 0; slash = path.lastIndexOf('/', slash - 1)) {
+						if (!snapshot.directories.add(path.substring(0, slash))) {
+							break;
+						}
+					}
+				}
+			}
+			this.snapshots.put(commit.copy(), snapshot);
+		}
+		return snapshot;
+	}
+
+	/**
+	 * The files and directories of a commit.
+	 */
+	private static final class Snapshot {
+
+		private final Map<String, ObjectId> files = new HashMap<>();
+
+		private final Set<String> directories = new TreeSet<>();
+
+	}
+
+	/**
+	 * A file of a commit, or one that is not there.
+	 */
+	private static final class BlobResource extends AbstractResource {
+
+		private final InMemoryRepository repository;
+
+		private final String location;
+
+		private final ObjectId blob;
+
+		private BlobResource(InMemoryRepository repository, Snapshot snapshot, String location) {
+			this.repository = repository;
+			this.location = location;
+			this.blob = snapshot.files.get(StringUtils.cleanPath(location.substring(PREFIX.length())));
+		}
+
+		@Override
+		public boolean exists() {
+			return this.blob != null;
+		}
+
+		@Override
+		public InputStream getInputStream() throws IOException {
+			if (this.blob == null) {
+				throw new FileNotFoundException(this.location + " does not exist");
+			}
+			return this.repository.open(this.blob, Constants.OBJ_BLOB).openStream();
+		}
+
+		@Override
+		public String getFilename() {
+			return StringUtils.getFilename(this.location);
+		}
+
+		@Override
+		public String getDescription() {
+			return this.location;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			return this == other
+					|| (other instanceof BlobResource && this.location.equals(((BlobResource) other).location));
+		}
+
+		@Override
+		public int hashCode() {
+			return this.location.hashCode();
+		}
+
+	}
+
+}
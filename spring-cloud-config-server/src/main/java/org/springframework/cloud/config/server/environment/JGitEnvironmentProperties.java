@@ -24,6 +24,7 @@ import javax.validation.constraints.Pattern;
 import org.springframework.cloud.config.server.proxy.ProxyHostProperties;
 import org.springframework.cloud.config.server.support.AbstractScmAccessorProperties;
 import org.springframework.cloud.config.server.support.HttpEnvironmentRepositoryProperties;
+import org.springframework.util.unit.DataSize;
 
 /**
  * @author Dylan Roberts
@@ -74,6 +75,42 @@ public class JGitEnvironmentProperties extends AbstractScmAccessorProperties
 	 */
 	private int refreshRate = 0;
 
+	/**
+	 * Flag to indicate that only the branch of the default label should be cloned and
+	 * fetched (with the tags in its history), instead of all branches and tags. Other
+	 * labels are fetched when they are first asked for, branches are then fetched along
+	 * with the default one. Commit ids must be in the history of a fetched branch.
+	 */
+	private boolean singleBranch = false;
+
+	/**
+	 * Flag to indicate that files the search paths cannot read should be removed from
+	 * the local clone, i.e. everything except the top level and the directories under
+	 * the fixed part (before any placeholder or wildcard) of the search paths.
+	 */
+	private boolean sparseCheckout = false;
+
+	/**
+	 * Flag to indicate that the repository should be fetched into memory and the config
+	 * files read from there, instead of cloning it to the base directory. Meant for small
+	 * repositories, or for read-only file systems.
+	 */
+	private boolean inMemory = false;
+
+	/**
+	 * Largest size of the objects of a repository kept in memory. When fetches take it
+	 * past this, it is fetched again from nothing, which drops the objects no longer in
+	 * use, and if that is still too big it fails.
+	 */
+	private DataSize inMemoryMaxSize = DataSize.ofMegabytes(64);
+
+	/**
+	 * Time (in seconds) between two garbage collections of the local clone, which pack
+	 * the objects and refs that fetches accumulate and prune the unreachable ones.
+	 * Default 0, never garbage collect.
+	 */
+	private int maintenanceRate = 0;
+
 	/**
 	 * Valid SSH private key. Must be set if ignoreLocalSshSettings is true and Git URI is
 	 * SSH format.
@@ -173,6 +210,46 @@ public class JGitEnvironmentProperties extends AbstractScmAccessorProperties
 		this.refreshRate = refreshRate;
 	}
 
+	public boolean isSingleBranch() {
+		return this.singleBranch;
+	}
+
+	public void setSingleBranch(boolean singleBranch) {
+		this.singleBranch = singleBranch;
+	}
+
+	public boolean isSparseCheckout() {
+		return this.sparseCheckout;
+	}
+
+	public void setSparseCheckout(boolean sparseCheckout) {
+		this.sparseCheckout = sparseCheckout;
+	}
+
+	public boolean isInMemory() {
+		return this.inMemory;
+	}
+
+	public void setInMemory(boolean inMemory) {
+		this.inMemory = inMemory;
+	}
+
+	public DataSize getInMemoryMaxSize() {
+		return this.inMemoryMaxSize;
+	}
+
+	public void setInMemoryMaxSize(DataSize inMemoryMaxSize) {
+		this.inMemoryMaxSize = inMemoryMaxSize;
+	}
+
+	public int getMaintenanceRate() {
+		return this.maintenanceRate;
+	}
+
+	public void setMaintenanceRate(int maintenanceRate) {
+		this.maintenanceRate = maintenanceRate;
+	}
+
 	public String getPrivateKey() {
 		return this.privateKey;
 	}
@@ -17,13 +17,23 @@
 package org.springframework.cloud.config.server.environment;
 
 import java.io.File;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
 
 import com.jcraft.jsch.Session;
 import org.eclipse.jgit.api.CheckoutCommand;
@@ -31,40 +41,59 @@ import org.eclipse.jgit.api.CloneCommand;
 import org.eclipse.jgit.api.CreateBranchCommand.SetupUpstreamMode;
 import org.eclipse.jgit.api.DeleteBranchCommand;
 import org.eclipse.jgit.api.FetchCommand;
+import org.eclipse.jgit.api.GarbageCollectCommand;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.ListBranchCommand;
 import org.eclipse.jgit.api.ListBranchCommand.ListMode;
+import org.eclipse.jgit.api.LsRemoteCommand;
 import org.eclipse.jgit.api.MergeCommand;
 import org.eclipse.jgit.api.MergeResult;
+import org.eclipse.jgit.api.MergeResult.MergeStatus;
 import org.eclipse.jgit.api.ResetCommand;
 import org.eclipse.jgit.api.ResetCommand.ResetType;
 import org.eclipse.jgit.api.Status;
-import org.eclipse.jgit.api.StatusCommand;
 import org.eclipse.jgit.api.TransportCommand;
 import org.eclipse.jgit.api.TransportConfigCallback;
 import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.api.errors.JGitInternalException;
 import org.eclipse.jgit.api.errors.RefNotFoundException;
+import org.eclipse.jgit.api.errors.TransportException;
+import org.eclipse.jgit.dircache.DirCache;
 import org.eclipse.jgit.errors.NoRemoteRepositoryException;
+import org.eclipse.jgit.internal.storage.file.FileSnapshot;
 import org.eclipse.jgit.lib.BranchTrackingStatus;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.StoredConfig;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
 import org.eclipse.jgit.transport.CredentialsProvider;
 import org.eclipse.jgit.transport.FetchResult;
 import org.eclipse.jgit.transport.JschConfigSessionFactory;
 import org.eclipse.jgit.transport.OpenSshConfig.Host;
 import org.eclipse.jgit.transport.ReceiveCommand;
+import org.eclipse.jgit.transport.RefSpec;
+import org.eclipse.jgit.transport.RemoteConfig;
 import org.eclipse.jgit.transport.SshSessionFactory;
 import org.eclipse.jgit.transport.TagOpt;
 import org.eclipse.jgit.transport.TrackingRefUpdate;
+import org.eclipse.jgit.treewalk.TreeWalk;
 import org.eclipse.jgit.util.FileUtils;
 
 import org.springframework.beans.factory.InitializingBean;
+import org.springframework.cloud.config.environment.Environment;
 import org.springframework.cloud.config.server.support.GitCredentialsProviderFactory;
 import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.Resource;
 import org.springframework.core.io.UrlResource;
 import org.springframework.util.Assert;
 import org.springframework.util.CollectionUtils;
+import org.springframework.util.ObjectUtils;
 import org.springframework.util.StringUtils;
+import org.springframework.util.unit.DataSize;
 
 import static java.lang.String.format;
 import static org.eclipse.jgit.transport.ReceiveCommand.Type.DELETE;
@@ -118,6 +147,14 @@ public class JGitEnvironmentRepository extends AbstractScmEnvironmentRepository
 	 */
 	private long lastRefresh;
 
+	/**
+	 * {@link System#nanoTime()} when the last successful fetch started, if
+	 * {@link #fetched}.
+	 */
+	private long lastFetch;
+
+	private boolean fetched;
+
 	/**
 	 * Flag to indicate that the repository should be cloned on startup (not on demand).
 	 * Generally leads to slower startup but faster first query.
@@ -167,6 +204,83 @@ public class JGitEnvironmentRepository extends AbstractScmEnvironmentRepository
 	 */
 	private boolean deleteUntrackedBranches;
 
+	/**
+	 * Clone and fetch only the branch of the default label, other labels are fetched
+	 * when they are first asked for.
+	 */
+	private boolean singleBranch;
+
+	/**
+	 * Keep only the files the search paths can read in the working directory.
+	 */
+	private boolean sparseCheckout;
+
+	/**
+	 * The HEAD the working directory was last pruned for.
+	 */
+	private String sparseHead;
+
+	/**
+	 * Keep the repository in memory instead of cloning it to the base directory.
+	 */
+	private boolean inMemory;
+
+	/**
+	 * Largest size of the objects of a repository kept in memory.
+	 */
+	private DataSize inMemoryMaxSize;
+
+	private InMemoryGitRepository memory;
+
+	/**
+	 * Time (in seconds) between two garbage collections of the local clone, 0 to never
+	 * collect it.
+	 */
+	private int maintenanceRate;
+
+	/**
+	 * Held while the local clone is being refreshed or garbage collected, so that the two
+	 * never run together.
+	 */
+	private final ReentrantLock maintenanceLock = new ReentrantLock();
+
+	/**
+	 * Time the last maintenance started, 0 until the first check.
+	 */
+	private volatile long lastMaintenance;
+
+	private final AtomicLong maintenanceCount = new AtomicLong();
+
+	private final AtomicLong maintenanceTime = new AtomicLong();
+
+	/**
+	 * Object and ref counts of the local clone after the last maintenance.
+	 */
+	private volatile Properties maintenanceStatistics = new Properties();
+
+	/**
+	 * The index of the working directory when it was last known to be clean, and its
+	 * HEAD. Nothing but this server works in its clones, so as long as neither changed
+	 * the working directory need not be scanned again.
+	 */
+	private FileSnapshot cleanIndex;
+
+	private ObjectId cleanHead;
+
+	/**
+	 * The refs the remote advertised when the local clone was last brought up to date
+	 * with it.
+	 */
+	private volatile Map<String, ObjectId> advertisedRefs;
+
+	/**
+	 * The label and version last checked out, served while the clone is maintained or
+	 * as long as the remote does not change.
+	 */
+	private volatile String checkedOutLabel;
+
+	private volatile String checkedOutVersion;
+
 	/**
 	 * Flag to indicate that SSL certificate validation should be bypassed when
 	 * communicating with a repository served over an HTTPS connection.
@@ -184,6 +298,11 @@ public class JGitEnvironmentRepository extends AbstractScmEnvironmentRepository
 		this.deleteUntrackedBranches = properties.isDeleteUntrackedBranches();
 		this.refreshRate = properties.getRefreshRate();
 		this.skipSslValidation = properties.isSkipSslValidation();
+		this.singleBranch = properties.isSingleBranch();
+		this.sparseCheckout = properties.isSparseCheckout();
+		this.inMemory = properties.isInMemory();
+		this.inMemoryMaxSize = properties.getInMemoryMaxSize();
+		this.maintenanceRate = properties.getMaintenanceRate();
 		this.gitFactory = new JGitFactory(properties.isCloneSubmodules());
 	}
 
@@ -255,6 +374,94 @@ public class JGitEnvironmentRepository extends AbstractScmEnvironmentRepository
 		this.deleteUntrackedBranches = deleteUntrackedBranches;
 	}
 
+	public boolean isSingleBranch() {
+		return this.singleBranch;
+	}
+
+	public void setSingleBranch(boolean singleBranch) {
+		this.singleBranch = singleBranch;
+	}
+
+	public boolean isSparseCheckout() {
+		return this.sparseCheckout;
+	}
+
+	public void setSparseCheckout(boolean sparseCheckout) {
+		this.sparseCheckout = sparseCheckout;
+	}
+
+	public boolean isInMemory() {
+		return this.inMemory;
+	}
+
+	public void setInMemory(boolean inMemory) {
+		this.inMemory = inMemory;
+	}
+
+	public DataSize getInMemoryMaxSize() {
+		return this.inMemoryMaxSize;
+	}
+
+	public void setInMemoryMaxSize(DataSize inMemoryMaxSize) {
+		this.inMemoryMaxSize = inMemoryMaxSize;
+	}
+
+	/**
+	 * @return the size in bytes of the objects held in memory, 0 if the repository is not
+	 * kept in memory
+	 */
+	public synchronized long getInMemorySize() {
+		return this.memory == null ? 0 : this.memory.getSize();
+	}
+
+	/**
+	 * @return the number of objects held in memory, 0 if the repository is not kept in
+	 * memory
+	 */
+	public synchronized long getInMemoryObjectCount() {
+		return this.memory == null ? 0 : this.memory.getObjectCount();
+	}
+
+	public int getMaintenanceRate() {
+		return this.maintenanceRate;
+	}
+
+	public void setMaintenanceRate(int maintenanceRate) {
+		this.maintenanceRate = maintenanceRate;
+	}
+
+	/**
+	 * @return true if the local clone is garbage collected from time to time
+	 */
+	public boolean isMaintenanceEnabled() {
+		return this.maintenanceRate > 0;
+	}
+
+	/**
+	 * @return the number of times the local clone was garbage collected
+	 */
+	public long getMaintenanceCount() {
+		return this.maintenanceCount.get();
+	}
+
+	/**
+	 * @return the time (in milliseconds) spent garbage collecting the local clone
+	 */
+	public long getMaintenanceTime() {
+		return this.maintenanceTime.get();
+	}
+
+	/**
+	 * @param name the name of a statistic of JGit's {@link GarbageCollectCommand}, e.g.
+	 * {@code numberOfLooseObjects}, {@code numberOfPackedObjects},
+	 * {@code numberOfLooseRefs} or {@code numberOfPackedRefs}
+	 * @return its value after the last maintenance, 0 before the first one
+	 */
+	public long getMaintenanceStatistic(String name) {
+		Object value = this.maintenanceStatistics.get(name);
+		return value instanceof Number ? ((Number) value).longValue() : 0;
+	}
+
 	public boolean isSkipSslValidation() {
 		return this.skipSslValidation;
 	}
@@ -264,16 +471,106 @@ public class JGitEnvironmentRepository extends AbstractScmEnvironmentRepository
 	}
 
 	@Override
-	public synchronized Locations getLocations(String application, String profile, String label) {
-		// 参数标签是否为空，如果为空则将其设置为默认标签
-		if (label == null) {
-			label = this.defaultLabel;
+	public Locations getLocations(String application, String profile, String label) {
+		// 请求到达的时间，等待锁期间如果已有其他请求完成了拉取则不再重复拉取
+		long requested = System.nanoTime();
+		synchronized (this) {
+			// 参数标签是否为空，如果为空则将其设置为默认标签
+			if (label == null) {
+				label = this.defaultLabel;
+			}
+			// 刷新标签,实际操作是git相关的拉取
+			String version = refresh(label, requested);
+			if (this.inMemory) {
+				return new Locations(application, profile, label, version,
+						getInMemorySearchLocations(version, application, profile, label));
+			}
+			// 创建地址对象返回
+			return new Locations(application, profile, label, version,
+				getSearchLocations(getWorkingDirectory(), application, profile, label));
+		}
+	}
+
+	@Override
+	public synchronized Environment findOne(String application, String profile, String label, boolean includeOrigin) {
+		if (!this.inMemory) {
+			return super.findOne(application, profile, label, includeOrigin);
+		}
+		Locations locations = getLocations(application, profile, label);
+		NativeEnvironmentRepository delegate = new NativeEnvironmentRepository(getEnvironment(),
+				new NativeEnvironmentProperties());
+		delegate.setSearchLocations(locations.getLocations());
+		try {
+			delegate.setResourceLoader(this.memory.getResourceLoader(ObjectId.fromString(locations.getVersion())));
+		}
+		catch (IOException e) {
+			throw new IllegalStateException("Cannot load environment", e);
+		}
+		Environment result = delegate.findOne(application, profile, "", includeOrigin);
+		result.setVersion(locations.getVersion());
+		result.setLabel(label);
+		return new EnvironmentCleaner().clean(result, InMemoryGitRepository.PREFIX, getUri());
+	}
+
+	@Override
+	public synchronized Resource findResource(String application, String profile, String label,
+			Function<Locations, Resource> finder) {
+		Locations locations = getLocations(application, profile, label);
+		Resource resource = finder.apply(locations);
+		if (resource == null || this.inMemory || getUri().startsWith(FILE_URI_PREFIX)) {
+			// a local repository is read in place, like its environments are
+			return resource;
+		}
+		// the working directory only stays at this version while the monitor is held
+		return pin(resource, locations.getVersion());
+	}
+
+	/**
+	 * @param resource a file found in the working directory
+	 * @param version the commit checked out
+	 * @return a resource that reads the file as committed, or the resource itself if it
+	 * is not a committed file of the working directory
+	 */
+	private Resource pin(Resource resource, String version) {
+		if (version == null || !ObjectId.isId(version) || !resource.isFile()) {
+			return resource;
+		}
+		try {
+			File file = resource.getFile().getCanonicalFile();
+			String root = getWorkingDirectory().getCanonicalPath() + File.separator;
+			if (!file.getPath().startsWith(root)) {
+				return resource;
+			}
+			String path = file.getPath().substring(root.length()).replace(File.separatorChar, '/');
+			try (Git git = openGitRepository();
+					RevWalk walk = new RevWalk(git.getRepository());
+					TreeWalk tree = TreeWalk.forPath(git.getRepository(), path,
+							walk.parseCommit(ObjectId.fromString(version)).getTree())) {
+				if (tree == null || tree.getFileMode(0).getObjectType() != Constants.OBJ_BLOB) {
+					// not committed, e.g. a file left behind by another label
+					return resource;
+				}
+				Repository repository = git.getRepository();
+				ObjectId blob = tree.getObjectId(0);
+				return new CommittedResource(repository.getDirectory(), blob, version, path,
+						repository.open(blob, Constants.OBJ_BLOB).getSize(), file.lastModified());
+			}
+		}
+		catch (IOException | RuntimeException e) {
+			this.logger.debug("Could not read " + resource + " from commit " + version + ": " + e.getMessage());
+			return resource;
+		}
+	}
+
+	private String[] getInMemorySearchLocations(String version, String application, String profile, String label) {
+		try {
+			return this.memory
+					.getSearchLocations(ObjectId.fromString(version), getSearchPatterns(application, profile, label))
+					.toArray(new String[0]);
+		}
+		catch (IOException e) {
+			throw new IllegalStateException("Cannot load environment", e);
 		}
-		// 刷新标签,实际操作是git相关的拉取
-		String version = refresh(label);
-		// 创建地址对象返回
-		return new Locations(application, profile, label, version,
-			getSearchLocations(getWorkingDirectory(), application, profile, label));
 	}
 
 	@Override
@@ -283,7 +580,10 @@ public class JGitEnvironmentRepository extends AbstractScmEnvironmentRepository
 		// 实例化
 		initialize();
 		// 确认是否需要在初始化阶段进行克隆,如果需要则进行克隆
-		if (this.cloneOnStart) {
+		if (this.cloneOnStart && this.inMemory) {
+			refresh(this.defaultLabel);
+		}
+		else if (this.cloneOnStart) {
 			initClonedRepository();
 		}
 	}
@@ -294,27 +594,97 @@ public class JGitEnvironmentRepository extends AbstractScmEnvironmentRepository
 	 * @return head id
 	 */
 	public String refresh(String label) {
+		return refresh(label, System.nanoTime());
+	}
+
+	/**
+	 * Get the working directory ready, without fetching if a fetch has been started since
+	 * the given time: the remote refs are then at least as recent as when the caller
+	 * asked, which lets concurrent requests that queued up behind one fetch share it.
+	 * @param label label to refresh
+	 * @param requested {@link System#nanoTime()} when the caller asked for the label
+	 * @return head id
+	 */
+	private synchronized String refresh(String label, long requested) {
+		if (this.inMemory) {
+			return refreshInMemory(label, requested);
+		}
+		while (!this.maintenanceLock.tryLock()) {
+			// the clone is being garbage collected, what is checked out is still good
+			String version = this.checkedOutVersion;
+			if (version != null && ObjectUtils.nullSafeEquals(label, this.checkedOutLabel)) {
+				return version;
+			}
+			// waiting releases the monitor, so the checked out label is served meanwhile
+			awaitMaintenance();
+		}
+		try {
+			String version = refreshOnDisk(label, requested);
+			this.checkedOutLabel = label;
+			this.checkedOutVersion = version;
+			return version;
+		}
+		finally {
+			this.maintenanceLock.unlock();
+		}
+	}
+
+	private String refreshOnDisk(String label, long requested) {
 		Git git = null;
 		try {
 			// 创建git客户端
 			git = createGitClient();
 			// 确认是否需要拉取数据
-			if (shouldPull(git)) {
+			if (!fetchedSince(requested) && shouldPull(git)) {
 				// 拉取数据
-				FetchResult fetchStatus = fetch(git, label);
-				if (this.deleteUntrackedBranches && fetchStatus != null) {
-					// 删除未跟踪的本地分支
-					deleteUntrackedLocalBranches(fetchStatus.getTrackingRefUpdates(), git);
+				long started = System.nanoTime();
+				Map<String, ObjectId> advertised = listRemote(git);
+				List<RefSpec> changes = advertised == null ? null : remoteChanges(git, advertised);
+				if (changes != null && changes.isEmpty()) {
+					// as good as a fetch that found nothing new
+					this.lastFetch = started;
+					this.fetched = true;
+					this.advertisedRefs = advertised;
+					String version = this.checkedOutVersion;
+					if (version != null && ObjectUtils.nullSafeEquals(label, this.checkedOutLabel)
+							&& isKnownClean(git) && version.equals(this.cleanHead.getName())) {
+						// nothing moved since the label was checked out
+						return version;
+					}
 				}
+				else {
+					FetchResult fetchStatus = changes == null ? fetch(git, label) : fetch(git, label, changes);
+					if (fetchStatus != null) {
+						this.lastFetch = started;
+						this.fetched = true;
+						this.advertisedRefs = advertised;
+					}
+					if (this.deleteUntrackedBranches && fetchStatus != null) {
+						// 删除未跟踪的本地分支
+						deleteUntrackedLocalBranches(fetchStatus.getTrackingRefUpdates(), git);
+					}
+				}
+			}
+
+			if (this.singleBranch) {
+				fetchLabel(git, label);
 			}
 
 			// checkout after fetch so we can get any new branches, tags, ect.
 			// if nothing to update so just checkout and merge.
 			// Merge because remote branch could have been updated before
 			// 切换分支
+			boolean clean = isKnownClean(git);
 			checkout(git, label);
+			if (clean) {
+				// a checkout leaves a clean working directory clean
+				markClean(git);
+			}
 			// 合并分支
 			tryMerge(git, label);
+			if (isSparse()) {
+				prune(git);
+			}
 
 			// always return what is currently HEAD as the version
 			return git.getRepository().findRef("HEAD").getObjectId().getName();
@@ -344,12 +714,172 @@ public class JGitEnvironmentRepository extends AbstractScmEnvironmentRepository
 		}
 	}
 
+	/**
+	 * Garbage collects the local clone if the maintenance rate has passed since the last
+	 * time.
+	 * @return the number of clones garbage collected
+	 */
+	public int maintainIfDue() {
+		if (this.maintenanceRate <= 0) {
+			return 0;
+		}
+		long now = System.currentTimeMillis();
+		if (this.lastMaintenance == 0) {
+			// a fresh clone has nothing to collect yet
+			this.lastMaintenance = now;
+			return 0;
+		}
+		if (now - this.lastMaintenance < this.maintenanceRate * 1000L) {
+			return 0;
+		}
+		return maintain() ? 1 : 0;
+	}
+
+	/**
+	 * Garbage collects the local clone: packs the loose objects and refs that fetches
+	 * leave behind, and prunes the objects no longer reachable (e.g. from deleted
+	 * branches). Refreshes wait for it to finish, except those for the label already
+	 * checked out, which are served as they are.
+	 * @return true if the clone was garbage collected, false if there is no clone of
+	 * ours or a maintenance is already running
+	 */
+	public boolean maintain() {
+		if (this.inMemory || getUri() == null || getUri().startsWith(FILE_URI_PREFIX)) {
+			// nothing on disk, or a repository that is not ours to rewrite
+			return false;
+		}
+		if (!this.maintenanceLock.tryLock()) {
+			return false;
+		}
+		long start = System.currentTimeMillis();
+		this.lastMaintenance = start;
+		try {
+			if (!new File(getWorkingDirectory(), ".git").exists()) {
+				return false;
+			}
+			try (Git git = openGitRepository()) {
+				// refreshes are locked out, nothing unreachable is about to be used
+				this.maintenanceStatistics = git.gc().setExpire(new Date(start)).call();
+			}
+			long time = System.currentTimeMillis() - start;
+			this.maintenanceCount.incrementAndGet();
+			this.maintenanceTime.addAndGet(time);
+			if (this.logger.isInfoEnabled()) {
+				this.logger.info("Garbage collected " + getUri() + " in " + time + "ms, "
+						+ getMaintenanceStatistic("numberOfPackedObjects") + " objects in "
+						+ getMaintenanceStatistic("numberOfPackFiles") + " packs, "
+						+ getMaintenanceStatistic("numberOfPackedRefs") + " packed refs");
+			}
+			return true;
+		}
+		catch (GitAPIException | IOException | RuntimeException e) {
+			warn("Could not garbage collect " + getUri(), e);
+			return false;
+		}
+		finally {
+			this.maintenanceLock.unlock();
+			synchronized (this) {
+				notifyAll();
+			}
+		}
+	}
+
+	private void awaitMaintenance() {
+		try {
+			// notified when the maintenance ends, the timeout is only a safety net
+			wait(1000);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for the maintenance of " + getUri(), e);
+		}
+	}
+
+	private String refreshInMemory(String label, long requested) {
+		if (this.memory == null) {
+			this.memory = new InMemoryGitRepository(getUri());
+		}
+		try {
+			boolean due = this.refreshRate <= 0
+					|| System.currentTimeMillis() - this.lastRefresh >= this.refreshRate * 1000L;
+			if (!this.memory.isFetched() || (!fetchedSince(requested) && due)) {
+				long started = System.nanoTime();
+				fetchInMemory();
+				this.lastFetch = started;
+				this.fetched = true;
+			}
+			ObjectId commit = this.memory.resolve(label);
+			if (commit == null) {
+				throw new NoSuchLabelException("No such label: " + label);
+			}
+			return commit.getName();
+		}
+		catch (NoRemoteRepositoryException e) {
+			throw new NoSuchRepositoryException("No such repository: " + getUri(), e);
+		}
+		catch (GitAPIException e) {
+			throw new NoSuchRepositoryException("Cannot clone or checkout repository: " + getUri(), e);
+		}
+		catch (IOException e) {
+			throw new IllegalStateException("Cannot load environment", e);
+		}
+	}
+
+	/**
+	 * Fetches into memory, starting again from nothing once the objects grow past the
+	 * maximum size (fetches only add objects). Fails if even a fresh copy is too big. A
+	 * failed fetch keeps serving what was fetched before, like a clone on disk does.
+	 */
+	private void fetchInMemory() throws GitAPIException {
+		if (this.refreshRate > 0) {
+			this.setLastRefresh(System.currentTimeMillis());
+		}
+		boolean fresh = !this.memory.isFetched();
+		try {
+			FetchCommand fetch = this.memory.fetch();
+			configureCommand(fetch);
+			fetch.call();
+			this.memory.fetched();
+		}
+		catch (GitAPIException | RuntimeException e) {
+			if (fresh) {
+				throw e;
+			}
+			warn("Could not fetch remote " + getUri() + " into memory", e);
+			return;
+		}
+		long max = this.inMemoryMaxSize == null ? 0 : this.inMemoryMaxSize.toBytes();
+		if (max > 0 && this.memory.getSize() > max) {
+			if (!fresh) {
+				this.logger.info("Repository in memory is larger than " + this.inMemoryMaxSize + ", fetching "
+						+ getUri() + " again from nothing");
+				this.memory.clear();
+				fetchInMemory();
+				return;
+			}
+			long size = this.memory.getSize();
+			this.memory.clear();
+			throw new IllegalStateException(
+					"Repository " + getUri() + " needs " + size + " bytes, more than the in-memory maximum of "
+							+ this.inMemoryMaxSize + ", keep it on disk instead");
+		}
+	}
+
+	private boolean fetchedSince(long requested) {
+		return this.fetched && this.lastFetch - requested >= 0;
+	}
+
 	private void tryMerge(Git git, String label) {
 		try {
 			if (isBranch(git, label)) {
+				boolean clean = isKnownClean(git);
 				// merge results from fetch
-				merge(git, label);
-				if (!isClean(git, label)) {
+				MergeResult result = merge(git, label);
+				// and so does a fast forward
+				boolean trusted = clean && result != null
+						&& (result.getMergeStatus() == MergeStatus.FAST_FORWARD
+								|| result.getMergeStatus() == MergeStatus.ALREADY_UP_TO_DATE);
+				if (!isClean(git, label, trusted)) {
 					this.logger.warn("The local repository is dirty or ahead of origin. Resetting" + " it to origin/"
 							+ label + ".");
 					resetHard(git, label, LOCAL_BRANCH_REF_PREFIX + label);
@@ -391,6 +921,9 @@ public class JGitEnvironmentRepository extends AbstractScmEnvironmentRepository
 					checkout(git, getDefaultLabel());
 				}
 			}
+			if (git != null && this.sparseCheckout) {
+				prune(git);
+			}
 
 			if (git != null) {
 				git.close();
@@ -451,6 +984,10 @@ public class JGitEnvironmentRepository extends AbstractScmEnvironmentRepository
 	}
 
 	private Ref checkout(Git git, String label) throws GitAPIException {
+		if (isCheckedOut(git, label)) {
+			// checking it out again would only rewrite the index
+			return null;
+		}
 		CheckoutCommand checkout = git.checkout();
 		if (shouldTrack(git, label)) {
 			trackBranch(git, checkout, label);
@@ -462,6 +999,24 @@ public class JGitEnvironmentRepository extends AbstractScmEnvironmentRepository
 		return checkout.call();
 	}
 
+	private boolean isCheckedOut(Git git, String label) {
+		try {
+			Repository repository = git.getRepository();
+			String branch = repository.getFullBranch();
+			if (branch == null) {
+				return false;
+			}
+			if (ObjectId.isId(branch)) {
+				// detached at a tag or commit
+				return ObjectId.fromString(branch).equals(repository.resolve(label + "^{commit}"));
+			}
+			return branch.equals(Constants.R_HEADS + label);
+		}
+		catch (IOException | RuntimeException e) {
+			return false;
+		}
+	}
+
 	protected boolean shouldPull(Git git) throws GitAPIException {
 		boolean shouldPull;
 
@@ -469,16 +1024,22 @@ public class JGitEnvironmentRepository extends AbstractScmEnvironmentRepository
 			return false;
 		}
 
-		Status gitStatus;
-		try {
-			gitStatus = git.status().call();
-		}
-		catch (JGitInternalException e) {
-			onPullInvalidIndex(git, e);
-			gitStatus = git.status().call();
+		Status gitStatus = null;
+		boolean isWorkingTreeClean = isKnownClean(git);
+		if (!isWorkingTreeClean) {
+			try {
+				gitStatus = git.status().call();
+			}
+			catch (JGitInternalException e) {
+				onPullInvalidIndex(git, e);
+				gitStatus = git.status().call();
+			}
+			isWorkingTreeClean = isClean(gitStatus);
+			if (isWorkingTreeClean) {
+				markClean(git);
+			}
 		}
 
-		boolean isWorkingTreeClean = gitStatus.isClean();
 		String originUrl = git.getRepository().getConfig().getString("remote", "origin", "url");
 
 		if (this.forcePull && !isWorkingTreeClean) {
@@ -532,10 +1093,29 @@ public class JGitEnvironmentRepository extends AbstractScmEnvironmentRepository
 	}
 
 	protected FetchResult fetch(Git git, String label) {
+		return fetch(git, label, Collections.emptyList());
+	}
+
+	/**
+	 * Fetches from origin.
+	 * @param git the repository
+	 * @param label the label requested
+	 * @param refSpecs the refs to fetch, or empty for all the configured ones
+	 * @return the result of the fetch, or null if it failed
+	 */
+	protected FetchResult fetch(Git git, String label, Collection<RefSpec> refSpecs) {
 		FetchCommand fetch = git.fetch();
 		fetch.setRemote("origin");
-		fetch.setTagOpt(TagOpt.FETCH_TAGS);
-		fetch.setRemoveDeletedRefs(this.deleteUntrackedBranches);
+		if (refSpecs.isEmpty()) {
+			// all the tags would bring in the history of all the branches
+			fetch.setTagOpt(this.singleBranch ? TagOpt.AUTO_FOLLOW : TagOpt.FETCH_TAGS);
+			fetch.setRemoveDeletedRefs(this.deleteUntrackedBranches);
+		}
+		else {
+			// the changed tags are fetched by name
+			fetch.setRefSpecs(new ArrayList<>(refSpecs));
+			fetch.setTagOpt(this.singleBranch ? TagOpt.AUTO_FOLLOW : TagOpt.NO_TAGS);
+		}
 		if (this.refreshRate > 0) {
 			this.setLastRefresh(System.currentTimeMillis());
 		}
@@ -647,9 +1227,17 @@ public class JGitEnvironmentRepository extends AbstractScmEnvironmentRepository
 	private Git cloneToBasedir() throws GitAPIException {
 		CloneCommand clone = this.gitFactory.getCloneCommandByCloneRepository().setURI(getUri())
 				.setDirectory(getBasedir());
+		if (this.singleBranch && StringUtils.hasText(this.defaultLabel)) {
+			clone.setCloneAllBranches(false).setBranch(this.defaultLabel)
+					.setBranchesToClone(Collections.singleton(Constants.R_HEADS + this.defaultLabel));
+		}
 		configureCommand(clone);
 		try {
-			return clone.call();
+			Git git = clone.call();
+			if (this.singleBranch && StringUtils.hasText(this.defaultLabel)) {
+				fetchOnly(git, this.defaultLabel);
+			}
+			return git;
 		}
 		catch (GitAPIException e) {
 			this.logger.warn("Error occured cloning to base directory.", e);
@@ -699,12 +1287,175 @@ public class JGitEnvironmentRepository extends AbstractScmEnvironmentRepository
 				getPassphrase(), isSkipSslValidation());
 	}
 
-	private boolean isClean(Git git, String label) {
-		StatusCommand status = git.status();
+	/**
+	 * Fetches a label that is not known locally when only one branch is cloned: as a
+	 * branch, which is then kept up to date by later fetches, or else as a tag. Commit
+	 * ids cannot be fetched by id, they have to be in the history of a fetched branch.
+	 */
+	private void fetchLabel(Git git, String label) {
+		Repository repository = git.getRepository();
+		try {
+			if (ObjectId.isId(label) || repository.exactRef(Constants.R_HEADS + label) != null
+					|| repository.exactRef(LOCAL_BRANCH_REF_PREFIX + label) != null
+					|| repository.exactRef(Constants.R_TAGS + label) != null) {
+				return;
+			}
+			RefSpec branch = new RefSpec("+" + Constants.R_HEADS + label + ":" + LOCAL_BRANCH_REF_PREFIX + label);
+			try {
+				FetchCommand fetch = git.fetch().setRemote("origin").setRefSpecs(branch).setTagOpt(TagOpt.NO_TAGS);
+				configureCommand(fetch);
+				fetch.call();
+				StoredConfig config = repository.getConfig();
+				RemoteConfig remote = new RemoteConfig(config, "origin");
+				remote.addFetchRefSpec(branch);
+				remote.update(config);
+				config.save();
+				this.logger.info("Fetched branch " + label + " on demand, it will be fetched from now on");
+			}
+			catch (TransportException e) {
+				FetchCommand fetch = git.fetch().setRemote("origin")
+						.setRefSpecs(new RefSpec(Constants.R_TAGS + label + ":" + Constants.R_TAGS + label))
+						.setTagOpt(TagOpt.NO_TAGS);
+				configureCommand(fetch);
+				fetch.call();
+			}
+		}
+		catch (Exception e) {
+			// the checkout reports a label that does not exist
+			warn("Could not fetch label " + label + " from " + getUri(), e);
+		}
+	}
+
+	/**
+	 * The clone only fetches the branches it was asked to, but configures later fetches
+	 * to get them all, so narrow them down as well.
+	 */
+	private void fetchOnly(Git git, String branch) {
+		try {
+			StoredConfig config = git.getRepository().getConfig();
+			RemoteConfig remote = new RemoteConfig(config, "origin");
+			for (RefSpec spec : new ArrayList<>(remote.getFetchRefSpecs())) {
+				remote.removeFetchRefSpec(spec);
+			}
+			remote.addFetchRefSpec(
+					new RefSpec("+" + Constants.R_HEADS + branch + ":" + LOCAL_BRANCH_REF_PREFIX + branch));
+			remote.update(config);
+			config.save();
+		}
+		catch (Exception e) {
+			warn("Could not restrict fetches to " + branch + " for " + getUri(), e);
+		}
+	}
+
+	private boolean isSparse() {
+		return this.sparseCheckout && !getUri().startsWith(FILE_URI_PREFIX);
+	}
+
+	/**
+	 * Deletes the files the search paths do not read from the working directory, after
+	 * HEAD has moved. A checkout or merge only writes the files that changed, so they
+	 * stay deleted unless they change. JGit (as used here) cannot check out part of a
+	 * tree, so the first checkout still writes all the files once.
+	 */
+	private void prune(Git git) throws IOException {
+		ObjectId head = git.getRepository().resolve(Constants.HEAD);
+		if (head == null || head.getName().equals(this.sparseHead)) {
+			return;
+		}
+		File workTree = git.getRepository().getWorkTree();
+		DirCache index = git.getRepository().readDirCache();
+		int pruned = 0;
+		for (int i = 0; i < index.getEntryCount(); i++) {
+			String path = index.getEntry(i).getPathString();
+			if (isSparseIncluded(path)) {
+				continue;
+			}
+			File file = new File(workTree, path);
+			if (file.delete()) {
+				pruned++;
+				// and the directories that are now empty
+				File dir = file.getParentFile();
+				while (!dir.equals(workTree) && dir.delete()) {
+					dir = dir.getParentFile();
+				}
+			}
+		}
+		this.sparseHead = head.getName();
+		if (pruned > 0 && this.logger.isDebugEnabled()) {
+			this.logger.debug("Pruned " + pruned + " files outside the search paths from " + workTree);
+		}
+	}
+
+	/**
+	 * @param path a path in the repository
+	 * @return true if the path is at the top level, which is always searched, or under
+	 * the text before the first placeholder or wildcard of a search path
+	 */
+	private boolean isSparseIncluded(String path) {
+		if (path.indexOf('/') < 0) {
+			return true;
+		}
+		String[] searchPaths = getSearchPaths();
+		if (searchPaths == null) {
+			return false;
+		}
+		for (String searchPath : searchPaths) {
+			String prefix = StringUtils.cleanPath(searchPath);
+			int placeholder = prefix.indexOf('{');
+			if (placeholder >= 0) {
+				prefix = prefix.substring(0, placeholder);
+			}
+			int wildcard = prefix.indexOf('*');
+			if (wildcard >= 0) {
+				prefix = prefix.substring(0, wildcard);
+			}
+			while (prefix.startsWith("/") || prefix.startsWith("./")) {
+				prefix = prefix.substring(prefix.indexOf('/') + 1);
+			}
+			if (path.startsWith(prefix)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param status the status of the working directory
+	 * @return true if nothing changed, apart from the files removed by a sparse checkout
+	 */
+	private boolean isClean(Status status) {
+		if (!isSparse() || status.isClean()) {
+			return status.isClean();
+		}
+		if (!status.getAdded().isEmpty() || !status.getChanged().isEmpty() || !status.getRemoved().isEmpty()
+				|| !status.getModified().isEmpty() || !status.getConflicting().isEmpty()
+				|| !status.getUntracked().isEmpty()) {
+			return false;
+		}
+		for (String missing : status.getMissing()) {
+			if (isSparseIncluded(missing)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @param git the repository
+	 * @param label the branch checked out
+	 * @param trusted true if the working directory is known to be clean, so that only
+	 * the branch needs checking
+	 * @return true if the working directory is clean and the branch not ahead of origin
+	 */
+	private boolean isClean(Git git, String label, boolean trusted) {
 		try {
 			BranchTrackingStatus trackingStatus = BranchTrackingStatus.of(git.getRepository(), label);
 			boolean isBranchAhead = trackingStatus != null && trackingStatus.getAheadCount() > 0;
-			return status.call().isClean() && !isBranchAhead;
+			boolean clean = trusted || isClean(git.status().call());
+			if (clean) {
+				markClean(git);
+			}
+			return clean && !isBranchAhead;
 		}
 		catch (Exception e) {
 			String message = "Could not execute status command on local repository. Cause: ("
@@ -714,6 +1465,127 @@ public class JGitEnvironmentRepository extends AbstractScmEnvironmentRepository
 		}
 	}
 
+	/**
+	 * @param git the repository
+	 * @return true if neither the index nor HEAD changed since the working directory was
+	 * last known to be clean
+	 */
+	private boolean isKnownClean(Git git) {
+		FileSnapshot index = this.cleanIndex;
+		if (index == null) {
+			return false;
+		}
+		try {
+			Repository repository = git.getRepository();
+			return !index.isModified(repository.getIndexFile())
+					&& this.cleanHead.equals(repository.resolve(Constants.HEAD));
+		}
+		catch (IOException | RuntimeException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Remembers that the working directory is clean, unless it is a local repository
+	 * used in place, which anyone can be working in.
+	 * @param git the repository
+	 */
+	private void markClean(Git git) {
+		this.cleanIndex = null;
+		if (getUri() == null || getUri().startsWith(FILE_URI_PREFIX)) {
+			return;
+		}
+		try {
+			Repository repository = git.getRepository();
+			File index = repository.getIndexFile();
+			ObjectId head = repository.resolve(Constants.HEAD);
+			if (index != null && head != null) {
+				this.cleanHead = head;
+				this.cleanIndex = FileSnapshot.save(index);
+			}
+		}
+		catch (IOException | RuntimeException e) {
+			// scan it next time
+		}
+	}
+
+	/**
+	 * Lists the refs of the remote, which costs much less than a fetch.
+	 * @param git the repository
+	 * @return the id of every ref the remote advertises by name, or null if they could
+	 * not be listed
+	 */
+	private Map<String, ObjectId> listRemote(Git git) {
+		if (this.refreshRate > 0) {
+			this.setLastRefresh(System.currentTimeMillis());
+		}
+		try {
+			LsRemoteCommand lsRemote = git.lsRemote().setRemote("origin");
+			configureCommand(lsRemote);
+			Map<String, ObjectId> advertised = new HashMap<>();
+			for (Ref ref : lsRemote.call()) {
+				advertised.put(ref.getName(), ref.getObjectId());
+			}
+			return advertised;
+		}
+		catch (Exception e) {
+			if (this.logger.isDebugEnabled()) {
+				this.logger.debug("Could not list the refs of remote " + getUri() + ", fetching: " + e.getMessage());
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Works out which refs a fetch has to bring: the branches it fetches (and the tags,
+	 * unless only the branches are cloned) that are not where the remote has them. None
+	 * if the remote advertises the same refs as after the last fetch.
+	 * @param git the repository
+	 * @param advertised the refs of the remote
+	 * @return a ref spec for each ref to fetch, or null if a branch is gone from the
+	 * remote and has to be deleted, which takes a full fetch
+	 */
+	private List<RefSpec> remoteChanges(Git git, Map<String, ObjectId> advertised)
+			throws IOException, URISyntaxException {
+		if (advertised.equals(this.advertisedRefs)) {
+			return Collections.emptyList();
+		}
+		Repository repository = git.getRepository();
+		List<RefSpec> specs = new RemoteConfig(repository.getConfig(), "origin").getFetchRefSpecs();
+		List<RefSpec> changes = new ArrayList<>();
+		Set<String> tracked = new HashSet<>();
+		for (Map.Entry<String, ObjectId> ref : advertised.entrySet()) {
+			String local = null;
+			if (ref.getKey().startsWith(Constants.R_TAGS)) {
+				// otherwise tags only come along with the commits they point to
+				local = this.singleBranch ? null : ref.getKey();
+			}
+			else {
+				for (RefSpec spec : specs) {
+					if (spec.matchSource(ref.getKey())) {
+						local = spec.expandFromSource(ref.getKey()).getDestination();
+						break;
+					}
+				}
+			}
+			if (local != null) {
+				tracked.add(local);
+				Ref existing = repository.exactRef(local);
+				if (existing == null || !ref.getValue().equals(existing.getObjectId())) {
+					changes.add(new RefSpec(ref.getKey() + ":" + local).setForceUpdate(true));
+				}
+			}
+		}
+		if (this.deleteUntrackedBranches) {
+			for (Ref ref : repository.getRefDatabase().getRefsByPrefix(Constants.R_REMOTES + "origin/")) {
+				if (!ref.isSymbolic() && !tracked.contains(ref.getName())) {
+					return null;
+				}
+			}
+		}
+		return changes;
+	}
+
 	private void trackBranch(Git git, CheckoutCommand checkout, String label) {
 		checkout.setCreateBranch(true).setName(label).setUpstreamMode(SetupUpstreamMode.TRACK)
 				.setStartPoint("origin/" + label);
@@ -784,4 +1656,92 @@ public class JGitEnvironmentRepository extends AbstractScmEnvironmentRepository
 
 	}
 
+	/**
+	 * A file as committed, which a checkout of another label does not change.
+	 */
+	private static final class CommittedResource extends AbstractResource {
+
+		private final File gitDir;
+
+		private final ObjectId blob;
+
+		private final String version;
+
+		private final String path;
+
+		private final long size;
+
+		private final long lastModified;
+
+		private CommittedResource(File gitDir, ObjectId blob, String version, String path, long size,
+				long lastModified) {
+			this.gitDir = gitDir;
+			this.blob = blob;
+			this.version = version;
+			this.path = path;
+			this.size = size;
+			this.lastModified = lastModified;
+		}
+
+		@Override
+		public boolean exists() {
+			return true;
+		}
+
+		@Override
+		public InputStream getInputStream() throws IOException {
+			Repository repository = new FileRepositoryBuilder().setGitDir(this.gitDir).setMustExist(true).build();
+			try {
+				return new FilterInputStream(repository.open(this.blob, Constants.OBJ_BLOB).openStream()) {
+					@Override
+					public void close() throws IOException {
+						try {
+							super.close();
+						}
+						finally {
+							repository.close();
+						}
+					}
+				};
+			}
+			catch (IOException | RuntimeException e) {
+				repository.close();
+				throw e;
+			}
+		}
+
+		@Override
+		public long contentLength() {
+			return this.size;
+		}
+
+		@Override
+		public long lastModified() {
+			return this.lastModified;
+		}
+
+		@Override
+		public String getFilename() {
+			return StringUtils.getFilename(this.path);
+		}
+
+		@Override
+		public String getDescription() {
+			return "git file [" + this.path + "] at " + this.version;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			return this == other || (other instanceof CommittedResource
+					&& this.blob.equals(((CommittedResource) other).blob)
+					&& this.path.equals(((CommittedResource) other).path));
+		}
+
+		@Override
+		public int hashCode() {
+			return this.blob.hashCode() * 31 + this.path.hashCode();
+		}
+
+	}
+
 }
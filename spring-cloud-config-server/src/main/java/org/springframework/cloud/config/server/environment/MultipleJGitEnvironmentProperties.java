@@ -42,6 +42,27 @@ public class MultipleJGitEnvironmentProperties extends JGitEnvironmentProperties
 	 */
 	private Map<String, PatternMatchingJGitEnvironmentProperties> repos = new LinkedHashMap<>();
 
+	/**
+	 * Maximum number of repositories (and local clones) kept for uris with placeholders,
+	 * e.g. one per application with <code>{application}</code> in the uri. The least
+	 * recently used one is removed and its clone deleted when there are more. Default is
+	 * 0, which means no limit.
+	 */
+	private int maxPlaceholderRepositories = 0;
+
+	/**
+	 * Time (in seconds) after which a repository for a uri with placeholders that was not
+	 * used is removed and its clone deleted. Default is 0, which means never.
+	 */
+	private int placeholderRepositoryIdleTimeout = 0;
+
+	/**
+	 * Number of repositories in the map that are initialized (cloned or fetched, if they
+	 * are set to clone on start) at the same time when the server starts. Default is 4, 1
+	 * initializes them one after another.
+	 */
+	private int cloneOnStartParallelism = 4;
+
 	public Map<String, PatternMatchingJGitEnvironmentProperties> getRepos() {
 		return this.repos;
 	}
@@ -50,6 +71,30 @@ public class MultipleJGitEnvironmentProperties extends JGitEnvironmentProperties
 		this.repos = repos;
 	}
 
+	public int getMaxPlaceholderRepositories() {
+		return this.maxPlaceholderRepositories;
+	}
+
+	public void setMaxPlaceholderRepositories(int maxPlaceholderRepositories) {
+		this.maxPlaceholderRepositories = maxPlaceholderRepositories;
+	}
+
+	public int getPlaceholderRepositoryIdleTimeout() {
+		return this.placeholderRepositoryIdleTimeout;
+	}
+
+	public void setPlaceholderRepositoryIdleTimeout(int placeholderRepositoryIdleTimeout) {
+		this.placeholderRepositoryIdleTimeout = placeholderRepositoryIdleTimeout;
+	}
+
+	public int getCloneOnStartParallelism() {
+		return this.cloneOnStartParallelism;
+	}
+
+	public void setCloneOnStartParallelism(int cloneOnStartParallelism) {
+		this.cloneOnStartParallelism = cloneOnStartParallelism;
+	}
+
 	/**
 	 * A {@link JGitEnvironmentProperties} that matches patterns.
 	 */
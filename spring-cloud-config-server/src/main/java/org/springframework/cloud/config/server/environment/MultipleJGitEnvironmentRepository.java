@@ -17,16 +17,35 @@
 package org.springframework.cloud.config.server.environment;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.eclipse.jgit.util.FileUtils;
 
 import org.springframework.beans.BeanUtils;
 import org.springframework.cloud.config.environment.Environment;
+import org.springframework.cloud.context.environment.EnvironmentChangeEvent;
+import org.springframework.context.ApplicationListener;
 import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.io.Resource;
 import org.springframework.util.PatternMatchUtils;
 import org.springframework.util.StringUtils;
 
@@ -45,20 +64,59 @@ import org.springframework.util.StringUtils;
  * @author Gareth Clay
  *
  */
-public class MultipleJGitEnvironmentRepository extends JGitEnvironmentRepository {
+public class MultipleJGitEnvironmentRepository extends JGitEnvironmentRepository
+		implements ApplicationListener<EnvironmentChangeEvent> {
+
+	/**
+	 * Largest number of (application, profile) routes remembered before they are all
+	 * forgotten, so that requests for arbitrary names cannot grow the cache for ever.
+	 */
+	private static final int MAX_ROUTES = 10000;
 
 	/**
 	 * Map of repository identifier to location and other properties.
 	 */
 	private Map<String, PatternMatchingJGitEnvironmentRepository> repos = new LinkedHashMap<>();
 
-	private Map<String, JGitEnvironmentRepository> placeholders = new LinkedHashMap<>();
+	/**
+	 * Repositories created for uris with placeholders, least recently used first. Guarded
+	 * by itself.
+	 */
+	private final Map<String, JGitEnvironmentRepository> placeholders = new LinkedHashMap<>(16, 0.75f, true);
+
+	private final Map<String, Long> placeholderAccess = new HashMap<>();
+
+	/**
+	 * Number of requests using each repository for a uri with placeholders. Guarded by
+	 * {@link #placeholders}.
+	 */
+	private final Map<JGitEnvironmentRepository, Integer> placeholderUsers = new IdentityHashMap<>();
+
+	/**
+	 * Evicted repositories whose local clones are deleted once their last request is
+	 * done. Guarded by {@link #placeholders}.
+	 */
+	private final Set<JGitEnvironmentRepository> retiredPlaceholders = Collections
+			.newSetFromMap(new IdentityHashMap<>());
+
+	private final AtomicLong placeholderEvictions = new AtomicLong();
+
+	private volatile Routing routing;
+
+	private int maxPlaceholderRepositories;
+
+	private int placeholderRepositoryIdleTimeout;
+
+	private int cloneOnStartParallelism;
 
 	public MultipleJGitEnvironmentRepository(ConfigurableEnvironment environment,
 			MultipleJGitEnvironmentProperties properties) {
 		super(environment, properties);
 		properties.getRepos().forEach((name, props) -> this.repos.put(name,
 				new PatternMatchingJGitEnvironmentRepository(environment, props)));
+		this.maxPlaceholderRepositories = properties.getMaxPlaceholderRepositories();
+		this.placeholderRepositoryIdleTimeout = properties.getPlaceholderRepositoryIdleTimeout();
+		this.cloneOnStartParallelism = properties.getCloneOnStartParallelism();
 	}
 
 	@Override
@@ -82,6 +140,9 @@ public class MultipleJGitEnvironmentRepository extends JGitEnvironmentRepository
 			if (getRefreshRate() != 0 && repo.getRefreshRate() == 0) {
 				repo.setRefreshRate(getRefreshRate());
 			}
+			if (getMaintenanceRate() != 0 && repo.getMaintenanceRate() == 0) {
+				repo.setMaintenanceRate(getMaintenanceRate());
+			}
 			String user = repo.getUsername();
 			String passphrase = repo.getPassphrase();
 			if (user == null) {
@@ -94,7 +155,12 @@ public class MultipleJGitEnvironmentRepository extends JGitEnvironmentRepository
 			if (isSkipSslValidation()) {
 				repo.setSkipSslValidation(true);
 			}
-			repo.afterPropertiesSet();
+		}
+		initialize(this.repos.values());
+		this.routing = null;
+		if (isInMemory()) {
+			// nothing is written to the base directory
+			return;
 		}
 		if (!getBasedir().exists() && !getBasedir().mkdirs()) {
 			throw new IllegalStateException("Basedir does not exist and can not be created: " + getBasedir());
@@ -111,13 +177,193 @@ public class MultipleJGitEnvironmentRepository extends JGitEnvironmentRepository
 
 	public void setRepos(Map<String, PatternMatchingJGitEnvironmentRepository> repos) {
 		this.repos.putAll(repos);
+		this.routing = null;
+	}
+
+	/**
+	 * Initializes the pattern repositories, which clones or fetches them when they are
+	 * set to clone on start, up to {@link #getCloneOnStartParallelism()} at a time.
+	 * Fails with the error of the first repository (in registration order) that could
+	 * not be initialized, like doing them one after another would.
+	 */
+	private void initialize(Collection<PatternMatchingJGitEnvironmentRepository> repositories) throws Exception {
+		int threads = Math.min(this.cloneOnStartParallelism, repositories.size());
+		if (threads <= 1) {
+			for (PatternMatchingJGitEnvironmentRepository repo : repositories) {
+				repo.afterPropertiesSet();
+			}
+			return;
+		}
+		AtomicInteger count = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+			Thread thread = new Thread(runnable, "config-server-git-init-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (PatternMatchingJGitEnvironmentRepository repo : repositories) {
+				futures.add(executor.submit(() -> {
+					repo.afterPropertiesSet();
+					return null;
+				}));
+			}
+			for (Future<?> future : futures) {
+				try {
+					future.get();
+				}
+				catch (ExecutionException e) {
+					if (e.getCause() instanceof Exception) {
+						throw (Exception) e.getCause();
+					}
+					throw (Error) e.getCause();
+				}
+			}
+		}
+		finally {
+			// stops the clones still running when one failed
+			executor.shutdownNow();
+		}
+	}
+
+	@Override
+	public void onApplicationEvent(EnvironmentChangeEvent event) {
+		// patterns may have been rebound
+		this.routing = null;
+	}
+
+	public int getMaxPlaceholderRepositories() {
+		return this.maxPlaceholderRepositories;
+	}
+
+	public void setMaxPlaceholderRepositories(int maxPlaceholderRepositories) {
+		this.maxPlaceholderRepositories = maxPlaceholderRepositories;
+	}
+
+	public int getPlaceholderRepositoryIdleTimeout() {
+		return this.placeholderRepositoryIdleTimeout;
+	}
+
+	public void setPlaceholderRepositoryIdleTimeout(int placeholderRepositoryIdleTimeout) {
+		this.placeholderRepositoryIdleTimeout = placeholderRepositoryIdleTimeout;
+	}
+
+	public int getCloneOnStartParallelism() {
+		return this.cloneOnStartParallelism;
+	}
+
+	public void setCloneOnStartParallelism(int cloneOnStartParallelism) {
+		this.cloneOnStartParallelism = cloneOnStartParallelism;
+	}
+
+	/**
+	 * @return the number of repositories currently kept for uris with placeholders
+	 */
+	public int getPlaceholderRepositoryCount() {
+		synchronized (this.placeholders) {
+			return this.placeholders.size();
+		}
+	}
+
+	/**
+	 * @return the number of repositories for uris with placeholders that were evicted
+	 * (and their local clones deleted) since startup
+	 */
+	public long getPlaceholderRepositoryEvictions() {
+		return this.placeholderEvictions.get();
+	}
+
+	/**
+	 * @return the size in bytes of the objects held in memory by this repository and the
+	 * ones it delegates to
+	 */
+	@Override
+	public long getInMemorySize() {
+		long size = super.getInMemorySize();
+		for (JGitEnvironmentRepository repository : getDelegates()) {
+			size += repository.getInMemorySize();
+		}
+		return size;
+	}
+
+	/**
+	 * @return the number of objects held in memory by this repository and the ones it
+	 * delegates to
+	 */
+	@Override
+	public long getInMemoryObjectCount() {
+		long count = super.getInMemoryObjectCount();
+		for (JGitEnvironmentRepository repository : getDelegates()) {
+			count += repository.getInMemoryObjectCount();
+		}
+		return count;
+	}
+
+	@Override
+	public boolean isMaintenanceEnabled() {
+		return super.isMaintenanceEnabled()
+				|| getDelegates().stream().anyMatch(JGitEnvironmentRepository::isMaintenanceEnabled);
+	}
+
+	/**
+	 * Garbage collects the local clones of this repository and of the ones it delegates
+	 * to whose maintenance rate has passed.
+	 * @return the number of clones garbage collected
+	 */
+	@Override
+	public int maintainIfDue() {
+		int maintained = super.maintainIfDue();
+		for (JGitEnvironmentRepository repository : getDelegates()) {
+			maintained += repository.maintainIfDue();
+		}
+		return maintained;
+	}
+
+	@Override
+	public long getMaintenanceCount() {
+		long count = super.getMaintenanceCount();
+		for (JGitEnvironmentRepository repository : getDelegates()) {
+			count += repository.getMaintenanceCount();
+		}
+		return count;
+	}
+
+	@Override
+	public long getMaintenanceTime() {
+		long time = super.getMaintenanceTime();
+		for (JGitEnvironmentRepository repository : getDelegates()) {
+			time += repository.getMaintenanceTime();
+		}
+		return time;
+	}
+
+	/**
+	 * @return the sum of the statistic over the local clones of this repository and of
+	 * the ones it delegates to
+	 */
+	@Override
+	public long getMaintenanceStatistic(String name) {
+		long value = super.getMaintenanceStatistic(name);
+		for (JGitEnvironmentRepository repository : getDelegates()) {
+			value += repository.getMaintenanceStatistic(name);
+		}
+		return value;
+	}
+
+	private List<JGitEnvironmentRepository> getDelegates() {
+		List<JGitEnvironmentRepository> delegates = new ArrayList<>(this.repos.values());
+		synchronized (this.placeholders) {
+			delegates.addAll(this.placeholders.values());
+		}
+		return delegates;
 	}
 
 	@Override
 	public Locations getLocations(String application, String profile, String label) {
-		for (PatternMatchingJGitEnvironmentRepository repository : this.repos.values()) {
-			if (repository.matches(application, profile, label)) {
-				for (JGitEnvironmentRepository candidate : getRepositories(repository, application, profile, label)) {
+		for (PatternMatchingJGitEnvironmentRepository repository : route(application, profile)) {
+			List<JGitEnvironmentRepository> candidates = useRepositories(repository, application, profile, label);
+			try {
+				for (JGitEnvironmentRepository candidate : candidates) {
 					try {
 						Environment source = candidate.findOne(application, profile, label, false);
 						if (source != null) {
@@ -133,19 +379,67 @@ public class MultipleJGitEnvironmentRepository extends JGitEnvironmentRepository
 					}
 				}
 			}
+			finally {
+				release(candidates);
+			}
+		}
+		JGitEnvironmentRepository candidate = useRepository(this, application, profile, label);
+		try {
+			if (candidate == this) {
+				return super.getLocations(application, profile, label);
+			}
+			return candidate.getLocations(application, profile, label);
+		}
+		finally {
+			release(candidate);
+		}
+	}
+
+	@Override
+	public Resource findResource(String application, String profile, String label,
+			Function<Locations, Resource> finder) {
+		// the repository that holds the lock has to be the one the locations come from
+		for (PatternMatchingJGitEnvironmentRepository repository : route(application, profile)) {
+			List<JGitEnvironmentRepository> candidates = useRepositories(repository, application, profile, label);
+			try {
+				for (JGitEnvironmentRepository candidate : candidates) {
+					try {
+						Environment source = candidate.findOne(application, profile, label, false);
+						if (source != null) {
+							return candidate.findResource(application, profile, label, finder);
+						}
+					}
+					catch (Exception e) {
+						if (this.logger.isDebugEnabled()) {
+							this.logger.debug("Cannot retrieve resource locations from " + candidate.getUri()
+									+ ", cause: (" + e.getClass().getSimpleName() + ") " + e.getMessage(), e);
+						}
+						continue;
+					}
+				}
+			}
+			finally {
+				release(candidates);
+			}
+		}
+		JGitEnvironmentRepository candidate = useRepository(this, application, profile, label);
+		try {
+			if (candidate == this) {
+				return super.findResource(application, profile, label, finder);
+			}
+			return candidate.findResource(application, profile, label, finder);
 		}
-		JGitEnvironmentRepository candidate = getRepository(this, application, profile, label);
-		if (candidate == this) {
-			return super.getLocations(application, profile, label);
+		finally {
+			release(candidate);
 		}
-		return candidate.getLocations(application, profile, label);
 	}
 
 	@Override
 	public Environment findOne(String application, String profile, String label, boolean includeOrigin) {
-		for (PatternMatchingJGitEnvironmentRepository repository : this.repos.values()) {
-			if (repository.matches(application, profile, label)) {
-				for (JGitEnvironmentRepository candidate : getRepositories(repository, application, profile, label)) {
+		for (PatternMatchingJGitEnvironmentRepository repository : route(application, profile)) {
+			List<JGitEnvironmentRepository> candidates = useRepositories(repository, application, profile, label);
+			try {
+				for (JGitEnvironmentRepository candidate : candidates) {
 					try {
 						if (label == null) {
 							label = candidate.getDefaultLabel();
@@ -164,30 +458,79 @@ public class MultipleJGitEnvironmentRepository extends JGitEnvironmentRepository
 					}
 				}
 			}
+			finally {
+				release(candidates);
+			}
 		}
-		JGitEnvironmentRepository candidate = getRepository(this, application, profile, label);
-		if (label == null) {
-			label = candidate.getDefaultLabel();
+		JGitEnvironmentRepository candidate = useRepository(this, application, profile, label);
+		try {
+			if (label == null) {
+				label = candidate.getDefaultLabel();
+			}
+			if (candidate == this) {
+				return super.findOne(application, profile, label, includeOrigin);
+			}
+			return candidate.findOne(application, profile, label, includeOrigin);
 		}
-		if (candidate == this) {
-			return super.findOne(application, profile, label, includeOrigin);
+		finally {
+			release(candidate);
 		}
-		return candidate.findOne(application, profile, label, includeOrigin);
 	}
 
-	private List<JGitEnvironmentRepository> getRepositories(JGitEnvironmentRepository repository, String application,
+	/**
+	 * The pattern repositories that match the application and any of the profiles, in
+	 * the order they were registered. Same as asking each of them whether it
+	 * {@link PatternMatchingJGitEnvironmentRepository#matches matches}, but answered
+	 * from a compiled router and remembered per (application, profile).
+	 */
+	private List<PatternMatchingJGitEnvironmentRepository> route(String application, String profile) {
+		Routing routing = this.routing;
+		if (routing == null || !routing.isCurrent(this.repos)) {
+			routing = new Routing(this.repos);
+			this.routing = routing;
+		}
+		return routing.route(application, profile);
+	}
+
+	/**
+	 * The repositories for each of the profiles, held for the request until they are
+	 * {@link #release(List) released}.
+	 */
+	private List<JGitEnvironmentRepository> useRepositories(JGitEnvironmentRepository repository, String application,
 			String profile, String label) {
 		List<JGitEnvironmentRepository> list = new ArrayList<>();
 		String[] profiles = profile == null ? new String[] { null }
 				: StringUtils.commaDelimitedListToStringArray(profile);
-		for (int i = profiles.length; i-- > 0;) {
-			list.add(getRepository(repository, application, profiles[i], label));
+		try {
+			for (int i = profiles.length; i-- > 0;) {
+				list.add(useRepository(repository, application, profiles[i], label));
+			}
+		}
+		catch (RuntimeException e) {
+			release(list);
+			throw e;
 		}
 		return list;
 	}
 
 	JGitEnvironmentRepository getRepository(JGitEnvironmentRepository repository, String application, String profile,
 			String label) {
+		return getRepository(repository, application, profile, label, false);
+	}
+
+	/**
+	 * Same as {@link #getRepository(JGitEnvironmentRepository, String, String, String)},
+	 * but an instance for a uri with placeholders keeps its local clone until it is
+	 * {@link #release(JGitEnvironmentRepository) released}, even if it is evicted
+	 * meanwhile.
+	 */
+	JGitEnvironmentRepository useRepository(JGitEnvironmentRepository repository, String application,
+			String profile, String label) {
+		return getRepository(repository, application, profile, label, true);
+	}
+
+	private JGitEnvironmentRepository getRepository(JGitEnvironmentRepository repository, String application,
+			String profile, String label, boolean use) {
 		if (!repository.getUri().contains("{")) {
 			return repository;
 		}
@@ -207,10 +550,98 @@ public class MultipleJGitEnvironmentRepository extends JGitEnvironmentRepository
 		if (label != null) {
 			key = key.replace("{label}", label);
 		}
-		if (!this.placeholders.containsKey(key)) {
-			this.placeholders.put(key, getRepository(repository, key));
+		JGitEnvironmentRepository result;
+		List<JGitEnvironmentRepository> evicted;
+		// one repository per uri, so concurrent first requests share its clone
+		synchronized (this.placeholders) {
+			result = this.placeholders.get(key);
+			if (result == null) {
+				result = getRepository(repository, key);
+				this.placeholders.put(key, result);
+			}
+			if (use) {
+				this.placeholderUsers.merge(result, 1, Integer::sum);
+			}
+			long now = System.currentTimeMillis();
+			this.placeholderAccess.put(key, now);
+			evicted = evictPlaceholders(key, now);
+		}
+		for (JGitEnvironmentRepository old : evicted) {
+			deleteBasedir(old);
+		}
+		return result;
+	}
+
+	private void release(List<JGitEnvironmentRepository> repositories) {
+		for (JGitEnvironmentRepository repository : repositories) {
+			release(repository);
+		}
+	}
+
+	void release(JGitEnvironmentRepository repository) {
+		boolean retired;
+		synchronized (this.placeholders) {
+			Integer users = this.placeholderUsers.get(repository);
+			if (users == null) {
+				// not a repository for a uri with placeholders
+				return;
+			}
+			if (users > 1) {
+				this.placeholderUsers.put(repository, users - 1);
+				return;
+			}
+			this.placeholderUsers.remove(repository);
+			retired = this.retiredPlaceholders.remove(repository);
+		}
+		if (retired) {
+			deleteBasedir(repository);
+		}
+	}
+
+	private List<JGitEnvironmentRepository> evictPlaceholders(String current, long now) {
+		List<JGitEnvironmentRepository> evicted = new ArrayList<>();
+		Iterator<Map.Entry<String, JGitEnvironmentRepository>> iterator = this.placeholders.entrySet().iterator();
+		while (iterator.hasNext()) {
+			Map.Entry<String, JGitEnvironmentRepository> entry = iterator.next();
+			boolean full = this.maxPlaceholderRepositories > 0
+					&& this.placeholders.size() > this.maxPlaceholderRepositories;
+			boolean idle = this.placeholderRepositoryIdleTimeout > 0 && now
+					- this.placeholderAccess.get(entry.getKey()) > this.placeholderRepositoryIdleTimeout * 1000L;
+			if (!full && !idle) {
+				// least recently used first, so the rest are newer
+				break;
+			}
+			if (entry.getKey().equals(current)) {
+				continue;
+			}
+			iterator.remove();
+			this.placeholderAccess.remove(entry.getKey());
+			this.placeholderEvictions.incrementAndGet();
+			if (this.placeholderUsers.containsKey(entry.getValue())) {
+				// still serving a request, so its clone is deleted once that is done
+				this.retiredPlaceholders.add(entry.getValue());
+			}
+			else {
+				evicted.add(entry.getValue());
+			}
+		}
+		return evicted;
+	}
+
+	private void deleteBasedir(JGitEnvironmentRepository repository) {
+		if (this.logger.isDebugEnabled()) {
+			this.logger.debug("Evicting repository for " + repository.getUri() + " from " + repository.getBasedir());
+		}
+		// wait for a fetch or checkout in progress on it
+		synchronized (repository) {
+			try {
+				FileUtils.delete(repository.getBasedir(),
+						FileUtils.RECURSIVE | FileUtils.RETRY | FileUtils.SKIP_MISSING);
+			}
+			catch (IOException e) {
+				this.logger.warn("Could not delete " + repository.getBasedir() + ": " + e.getMessage());
+			}
 		}
-		return this.placeholders.get(key);
 	}
 
 	private JGitEnvironmentRepository getRepository(JGitEnvironmentRepository source, String uri) {
@@ -227,11 +658,58 @@ public class MultipleJGitEnvironmentRepository extends JGitEnvironmentRepository
 		super.setOrder(order);
 	}
 
+	private static final class Routing {
+
+		private final PatternRouter<PatternMatchingJGitEnvironmentRepository> router;
+
+		private final long patternChanges;
+
+		private final Map<String, List<PatternMatchingJGitEnvironmentRepository>> routes = new ConcurrentHashMap<>();
+
+		private Routing(Map<String, PatternMatchingJGitEnvironmentRepository> repos) {
+			// read first, so a change while compiling makes this routing stale
+			this.patternChanges = PatternMatchingJGitEnvironmentRepository.PATTERN_CHANGES.get();
+			this.router = new PatternRouter<>(new ArrayList<>(repos.values()),
+					PatternMatchingJGitEnvironmentRepository::getPattern);
+		}
+
+		private boolean isCurrent(Map<String, PatternMatchingJGitEnvironmentRepository> repos) {
+			// repos can also be changed through getRepos()
+			return this.router.size() == repos.size()
+					&& this.patternChanges == PatternMatchingJGitEnvironmentRepository.PATTERN_CHANGES.get();
+		}
+
+		private List<PatternMatchingJGitEnvironmentRepository> route(String application, String profile) {
+			String key = application + "/" + profile;
+			List<PatternMatchingJGitEnvironmentRepository> route = this.routes.get(key);
+			if (route == null) {
+				String[] profiles = StringUtils.commaDelimitedListToStringArray(profile);
+				String[] candidates = new String[profiles.length];
+				for (int i = 0; i < profiles.length; i++) {
+					candidates[i] = application + "/" + profiles[i];
+				}
+				route = this.router.match(candidates);
+				if (this.routes.size() >= MAX_ROUTES) {
+					this.routes.clear();
+				}
+				this.routes.put(key, route);
+			}
+			return route;
+		}
+
+	}
+
 	/**
 	 * A {@link JGitEnvironmentProperties} that matches patterns.
 	 */
 	public static class PatternMatchingJGitEnvironmentRepository extends JGitEnvironmentRepository {
 
+		/**
+		 * Incremented whenever the patterns of any instance change, so that compiled
+		 * routes can tell they are stale.
+		 */
+		private static final AtomicLong PATTERN_CHANGES = new AtomicLong();
+
 		/**
 		 * Pattern to match on application name and profiles.
 		 */
@@ -315,6 +793,7 @@ public class MultipleJGitEnvironmentRepository extends JGitEnvironmentRepository
 				patterns = new LinkedHashSet<>(patterns);
 			}
 			this.pattern = patterns.toArray(new String[0]);
+			PATTERN_CHANGES.incrementAndGet();
 		}
 
 	}
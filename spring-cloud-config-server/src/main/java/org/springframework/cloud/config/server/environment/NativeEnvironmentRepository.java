@@ -41,6 +41,7 @@ import org.springframework.core.env.ConfigurableEnvironment;
 import org.springframework.core.env.MapPropertySource;
 import org.springframework.core.env.StandardEnvironment;
 import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.core.io.ResourceLoader;
 import org.springframework.util.StringUtils;
 
 /**
@@ -110,6 +111,12 @@ public class NativeEnvironmentRepository implements EnvironmentRepository, Searc
 	 */
 	private int order;
 
+	/**
+	 * Loads the config files from the search locations, a new
+	 * {@link DefaultResourceLoader} for each request if null.
+	 */
+	private ResourceLoader resourceLoader;
+
 	public NativeEnvironmentRepository(ConfigurableEnvironment environment, NativeEnvironmentProperties properties) {
 		this.environment = environment;
 		this.addLabelLocations = properties.getAddLabelLocations();
@@ -156,7 +163,8 @@ public class NativeEnvironmentRepository implements EnvironmentRepository, Searc
 			// 获取环境对象
 			ConfigurableEnvironment environment = getEnvironment(config, profile, label);
 			// 创建默认资源加载器
-			DefaultResourceLoader resourceLoader = new DefaultResourceLoader();
+			ResourceLoader resourceLoader = this.resourceLoader != null ? this.resourceLoader
+					: new DefaultResourceLoader();
 			// 创建属性源和属性源配置对象的映射关系
 			Map<org.springframework.core.env.PropertySource<?>, PropertySourceConfigData> propertySourceToConfigData = new HashMap<>();
 			// 处理propertySourceToConfigData对象，将数据补充完整
@@ -411,6 +419,18 @@ public class NativeEnvironmentRepository implements EnvironmentRepository, Searc
 		this.order = order;
 	}
 
+	public ResourceLoader getResourceLoader() {
+		return this.resourceLoader;
+	}
+
+	/**
+	 * @param resourceLoader loads the config files from the search locations, which need
+	 * not be on the file system
+	 */
+	public void setResourceLoader(ResourceLoader resourceLoader) {
+		this.resourceLoader = resourceLoader;
+	}
+
 	private final class PropertySourceConfigData {
 
 		private final ConfigDataLocation location;
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2013-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.config.server.environment;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.springframework.util.PatternMatchUtils;
+
+/**
+ * Finds the targets whose {@link PatternMatchUtils#simpleMatch(String, String) simple
+ * patterns} match a string without trying every pattern. Patterns without a wildcard are
+ * looked up in a hash map, the others are kept in a trie keyed by the text before their
+ * first wildcard, so only the patterns whose literal prefix is a prefix of the string
+ * are tried.
+ *
+ * @param <T> the type of the targets
+ */
+class PatternRouter<T> {
+
+	private final List<T> targets;
+
+	private final Map<String, BitSet> exact = new HashMap<>();
+
+	private final Node root = new Node();
+
+	PatternRouter(List<T> targets, Function<T, String[]> patterns) {
+		this.targets = targets;
+		for (int index = 0; index < targets.size(); index++) {
+			String[] values = patterns.apply(targets.get(index));
+			if (values == null) {
+				continue;
+			}
+			for (String pattern : values) {
+				if (pattern == null) {
+					continue;
+				}
+				int wildcard = pattern.indexOf('*');
+				if (wildcard < 0) {
+					this.exact.computeIfAbsent(pattern, key -> new BitSet()).set(index);
+				}
+				else {
+					Node node = this.root;
+					for (int i = 0; i < wildcard; i++) {
+						node = node.children.computeIfAbsent(pattern.charAt(i), key -> new Node());
+					}
+					node.patterns.add(new IndexedPattern(pattern, index));
+				}
+			}
+		}
+	}
+
+	int size() {
+		return this.targets.size();
+	}
+
+	/**
+	 * @param candidates the strings to match
+	 * @return the targets with a pattern that matches any of the candidates, in their
+	 * original order
+	 */
+	List<T> match(String... candidates) {
+		BitSet matched = new BitSet();
+		for (String candidate : candidates) {
+			BitSet exact = this.exact.get(candidate);
+			if (exact != null) {
+				matched.or(exact);
+			}
+			Node node = this.root;
+			int i = 0;
+			while (node != null) {
+				for (IndexedPattern pattern : node.patterns) {
+					if (!matched.get(pattern.index) && PatternMatchUtils.simpleMatch(pattern.pattern, candidate)) {
+						matched.set(pattern.index);
+					}
+				}
+				node = i < candidate.length() ? node.children.get(candidate.charAt(i++)) : null;
+			}
+		}
+		List<T> result = new ArrayList<>(matched.cardinality());
+		for (int index = matched.nextSetBit(0); index >= 0; index = matched.nextSetBit(index + 1)) {
+			result.add(this.targets.get(index));
+		}
+		return result;
+	}
+
+	private static final class Node {
+
+		private final Map<Character, Node> children = new HashMap<>();
+
+		private final List<IndexedPattern> patterns = new ArrayList<>();
+
+	}
+
+	private static final class IndexedPattern {
+
+		private final String pattern;
+
+		private final int index;
+
+		private IndexedPattern(String pattern, int index) {
+			this.pattern = pattern;
+			this.index = index;
+		}
+
+	}
+
+}
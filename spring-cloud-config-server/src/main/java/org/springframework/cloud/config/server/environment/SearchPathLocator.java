@@ -17,6 +17,9 @@
 package org.springframework.cloud.config.server.environment;
 
 import java.util.Arrays;
+import java.util.function.Function;
+
+import org.springframework.core.io.Resource;
 
 /**
  * Strategy for locating a search path for resource (e.g. in the file system or
@@ -29,6 +32,22 @@ public interface SearchPathLocator {
 
 	Locations getLocations(String application, String profile, String label);
 
+	/**
+	 * Looks a resource up in the search path. Locators whose locations can change under
+	 * the caller (e.g. a git working copy checked out at another label by a concurrent
+	 * request) run the finder while they cannot, and return a resource that still reads
+	 * the version it was found in.
+	 * @param application the application name
+	 * @param profile the profiles
+	 * @param label the label
+	 * @param finder looks the resource up in the locations, returns null if not found
+	 * @return the resource found, or null
+	 */
+	default Resource findResource(String application, String profile, String label,
+			Function<Locations, Resource> finder) {
+		return finder.apply(getLocations(application, profile, label));
+	}
+
 	/**
 	 * Locations POJO.
 	 */
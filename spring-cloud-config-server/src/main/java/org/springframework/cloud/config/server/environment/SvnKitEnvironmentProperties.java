@@ -27,9 +27,24 @@ public class SvnKitEnvironmentProperties extends AbstractScmAccessorProperties {
 
 	private static final String DEFAULT_LABEL = "trunk";
 
+	/**
+	 * Time (in seconds) between updates of the working copy, which then happen in the
+	 * background while requests are served from the last revision. Default 0 updates on
+	 * every request.
+	 */
+	private int refreshRate = 0;
+
 	public SvnKitEnvironmentProperties() {
 		super();
 		setDefaultLabel(DEFAULT_LABEL);
 	}
 
+	public int getRefreshRate() {
+		return this.refreshRate;
+	}
+
+	public void setRefreshRate(int refreshRate) {
+		this.refreshRate = refreshRate;
+	}
+
 }
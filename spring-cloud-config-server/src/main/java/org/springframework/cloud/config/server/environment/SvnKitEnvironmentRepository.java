@@ -18,33 +18,45 @@ package org.springframework.cloud.config.server.environment;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.core.env.ConfigurableEnvironment;
 import org.springframework.util.Assert;
 import org.springframework.util.StringUtils;
+import org.tmatesoft.svn.core.SVNDepth;
 import org.tmatesoft.svn.core.SVNException;
 import org.tmatesoft.svn.core.SVNURL;
 import org.tmatesoft.svn.core.internal.wc.DefaultSVNAuthenticationManager;
-import org.tmatesoft.svn.core.wc.SVNClientManager;
-import org.tmatesoft.svn.core.wc.SVNStatus;
+import org.tmatesoft.svn.core.wc.SVNRevision;
 import org.tmatesoft.svn.core.wc2.SvnCheckout;
+import org.tmatesoft.svn.core.wc2.SvnGetInfo;
+import org.tmatesoft.svn.core.wc2.SvnGetStatus;
 import org.tmatesoft.svn.core.wc2.SvnOperationFactory;
+import org.tmatesoft.svn.core.wc2.SvnStatus;
 import org.tmatesoft.svn.core.wc2.SvnTarget;
 import org.tmatesoft.svn.core.wc2.SvnUpdate;
 
 import java.io.File;
 import java.net.URI;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 
 import static org.springframework.util.StringUtils.hasText;
 
 /**
  * Subversion-backed {@link EnvironmentRepository}.
  *
+ * With a refresh rate the working copy is updated in the background, and only when the
+ * remote has a new revision, while requests are served from the last revision without
+ * going to the server.
+ *
  * @author Michael Prankl
  * @author Roy Clarkson
  */
 public class SvnKitEnvironmentRepository extends AbstractScmEnvironmentRepository
-	implements EnvironmentRepository, InitializingBean {
+	implements EnvironmentRepository, InitializingBean, DisposableBean {
 
 	private static final Log logger = LogFactory.getLog(SvnKitEnvironmentRepository.class);
 
@@ -54,9 +66,35 @@ public class SvnKitEnvironmentRepository extends AbstractScmEnvironmentRepositor
 	 */
 	private String defaultLabel;
 
+	/**
+	 * Time (in seconds) between updates of the working copy, 0 to update on every request.
+	 */
+	private int refreshRate;
+
+	/**
+	 * Reused by every operation, so that connections to the server are pooled. Guarded
+	 * by the lock.
+	 */
+	private SvnOperationFactory svnOperationFactory;
+
+	private final ReentrantLock svnLock = new ReentrantLock();
+
+	/**
+	 * The revision of the working copy, served as is between updates.
+	 */
+	private volatile String version;
+
+	/**
+	 * The last changed revision of the remote the working copy was last updated to.
+	 */
+	private volatile long remoteRevision = -1;
+
+	private ScheduledExecutorService executor;
+
 	public SvnKitEnvironmentRepository(ConfigurableEnvironment environment, SvnKitEnvironmentProperties properties) {
 		super(environment, properties);
 		this.defaultLabel = properties.getDefaultLabel();
+		this.refreshRate = properties.getRefreshRate();
 	}
 
 	public String getDefaultLabel() {
@@ -67,20 +105,74 @@ public class SvnKitEnvironmentRepository extends AbstractScmEnvironmentRepositor
 		this.defaultLabel = defaultLabel;
 	}
 
+	public int getRefreshRate() {
+		return this.refreshRate;
+	}
+
+	public void setRefreshRate(int refreshRate) {
+		this.refreshRate = refreshRate;
+	}
+
 	@Override
 	public synchronized Locations getLocations(String application, String profile, String label) {
 		// 设置标签
 		if (label == null) {
 			label = this.defaultLabel;
 		}
-		// 创建SVN操作工厂
-		SvnOperationFactory svnOperationFactory = new SvnOperationFactory();
-		// 如果存在用户名为SVN操作工厂设置用户名
-		if (hasText(getUsername())) {
-			svnOperationFactory.setAuthenticationManager(
-				new DefaultSVNAuthenticationManager(null, false, getUsername(), getPassword()));
+		// 有刷新间隔时直接使用最后的版本，由后台更新工作副本
+		String version = this.version;
+		if (version == null || this.refreshRate <= 0) {
+			version = refresh(label);
+		}
+		// 创建Locations对象
+		return new Locations(application, profile, label, version, getPaths(application, profile, label));
+	}
+
+	/**
+	 * Updates the working copy if the remote has a new revision since the last update.
+	 * Requests wait for the update itself, but not for the check.
+	 * @return true if the working copy was updated
+	 */
+	public boolean updateIfChanged() {
+		if (this.version == null) {
+			// not even checked out yet
+			return false;
+		}
+		long revision;
+		this.svnLock.lock();
+		try {
+			revision = getRemoteRevision();
+		} catch (SVNException e) {
+			logger.warn("Could not check " + getUri() + " for a new revision: " + e.getMessage());
+			return false;
+		} finally {
+			this.svnLock.unlock();
+		}
+		if (revision == this.remoteRevision) {
+			return false;
 		}
+		synchronized (this) {
+			this.svnLock.lock();
+			try {
+				this.version = doUpdate(getSvnOperationFactory());
+				this.remoteRevision = revision;
+				return true;
+			} catch (SVNException | RuntimeException e) {
+				logger.warn("Could not update " + getWorkingDirectory().getPath() + " from " + getUri() + ": "
+					+ e.getMessage());
+				return false;
+			} finally {
+				this.svnLock.unlock();
+			}
+		}
+	}
+
+	private String refresh(String label) {
+		this.svnLock.lock();
 		try {
+			SvnOperationFactory svnOperationFactory = getSvnOperationFactory();
+			// 先于更新读取，之后的提交留给后台更新
+			long revision = this.refreshRate > 0 ? getRemoteRevisionIfAvailable() : -1;
 			// 确认SVN版本
 			String version;
 			if (new File(getWorkingDirectory(), ".svn").exists()) {
@@ -88,13 +180,69 @@ public class SvnKitEnvironmentRepository extends AbstractScmEnvironmentRepositor
 			} else {
 				version = checkout(svnOperationFactory);
 			}
-			// 创建Locations对象
-			return new Locations(application, profile, label, version, getPaths(application, profile, label));
+			this.version = version;
+			this.remoteRevision = revision;
+			if (this.refreshRate > 0) {
+				scheduleUpdates();
+			}
+			return version;
 		} catch (SVNException e) {
 			throw new IllegalStateException("Cannot checkout repository", e);
 		} finally {
-			// 摧毁工厂
-			svnOperationFactory.dispose();
+			this.svnLock.unlock();
+		}
+	}
+
+	private SvnOperationFactory getSvnOperationFactory() {
+		if (this.svnOperationFactory == null) {
+			// 创建SVN操作工厂
+			SvnOperationFactory svnOperationFactory = new SvnOperationFactory();
+			svnOperationFactory.setAutoDisposeRepositoryPool(false);
+			// 如果存在用户名为SVN操作工厂设置用户名
+			if (hasText(getUsername())) {
+				svnOperationFactory.setAuthenticationManager(
+					new DefaultSVNAuthenticationManager(null, false, getUsername(), getPassword()));
+			}
+			this.svnOperationFactory = svnOperationFactory;
+		}
+		return this.svnOperationFactory;
+	}
+
+	private long getRemoteRevision() throws SVNException {
+		final SvnGetInfo info = getSvnOperationFactory().createGetInfo();
+		info.setSingleTarget(SvnTarget.fromURL(SVNURL.parseURIEncoded(getUri()), SVNRevision.HEAD));
+		info.setDepth(SVNDepth.EMPTY);
+		// the last change anywhere under the root
+		return info.run().getLastChangedRevision();
+	}
+
+	private long getRemoteRevisionIfAvailable() {
+		try {
+			return getRemoteRevision();
+		} catch (SVNException e) {
+			// the next check updates
+			return -1;
+		}
+	}
+
+	private void scheduleUpdates() {
+		if (this.executor == null) {
+			this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "config-server-svn-update");
+				thread.setDaemon(true);
+				return thread;
+			});
+			this.executor.scheduleWithFixedDelay(this::updateInBackground, this.refreshRate, this.refreshRate,
+				TimeUnit.SECONDS);
+		}
+	}
+
+	private void updateInBackground() {
+		try {
+			updateIfChanged();
+		} catch (RuntimeException e) {
+			// a failed run would cancel the next ones
+			logger.warn("Could not update " + getUri() + ": " + e.getMessage());
 		}
 	}
 
@@ -131,17 +279,7 @@ public class SvnKitEnvironmentRepository extends AbstractScmEnvironmentRepositor
 		logger.debug("Repo already checked out - updating instead.");
 
 		try {
-			final SvnUpdate update = svnOperationFactory.createUpdate();
-			update.setSingleTarget(SvnTarget.fromFile(getWorkingDirectory()));
-			long[] ids = update.run();
-			StringBuilder version = new StringBuilder();
-			for (long id : ids) {
-				if (version.length() > 0) {
-					version.append(",");
-				}
-				version.append(id);
-			}
-			return version.toString();
+			return doUpdate(svnOperationFactory);
 		} catch (Exception e) {
 			String message = "Could not update remote for " + label + " (current local="
 				+ getWorkingDirectory().getPath() + "), remote: " + this.getUri() + ")";
@@ -152,9 +290,42 @@ public class SvnKitEnvironmentRepository extends AbstractScmEnvironmentRepositor
 			}
 		}
 
-		final SVNStatus status = SVNClientManager.newInstance().getStatusClient().doStatus(getWorkingDirectory(),
-			false);
-		return status != null ? status.getRevision().toString() : null;
+		final SvnGetStatus getStatus = svnOperationFactory.createGetStatus();
+		getStatus.setSingleTarget(SvnTarget.fromFile(getWorkingDirectory()));
+		getStatus.setDepth(SVNDepth.EMPTY);
+		final SvnStatus status = getStatus.run();
+		return status != null ? String.valueOf(status.getRevision()) : null;
+	}
+
+	private String doUpdate(SvnOperationFactory svnOperationFactory) throws SVNException {
+		final SvnUpdate update = svnOperationFactory.createUpdate();
+		update.setSingleTarget(SvnTarget.fromFile(getWorkingDirectory()));
+		long[] ids = update.run();
+		StringBuilder version = new StringBuilder();
+		for (long id : ids) {
+			if (version.length() > 0) {
+				version.append(",");
+			}
+			version.append(id);
+		}
+		return version.toString();
+	}
+
+	@Override
+	public void destroy() {
+		if (this.executor != null) {
+			this.executor.shutdownNow();
+		}
+		this.svnLock.lock();
+		try {
+			if (this.svnOperationFactory != null) {
+				// 摧毁工厂
+				this.svnOperationFactory.dispose();
+				this.svnOperationFactory = null;
+			}
+		} finally {
+			this.svnLock.unlock();
+		}
 	}
 
 	@Override
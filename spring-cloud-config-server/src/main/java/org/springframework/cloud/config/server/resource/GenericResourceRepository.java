@@ -19,10 +19,16 @@ package org.springframework.cloud.config.server.resource;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
+import org.springframework.cloud.config.server.environment.NativeEnvironmentRepository;
 import org.springframework.cloud.config.server.environment.SearchPathLocator;
+import org.springframework.cloud.config.server.environment.SearchPathLocator.Locations;
 import org.springframework.cloud.config.server.support.PathUtils;
 import org.springframework.context.ResourceLoaderAware;
 import org.springframework.core.io.Resource;
@@ -30,16 +36,44 @@ import org.springframework.core.io.ResourceLoader;
 import org.springframework.util.StringUtils;
 
 /**
- * An {@link ResourceRepository} backed by a {@link SearchPathLocator}.
+ * An {@link ResourceRepository} backed by a {@link SearchPathLocator}. Lookups go through
+ * {@link SearchPathLocator#findResource}, so a locator that shares a working copy between
+ * labels (e.g. a git checkout) can hold its lock while the resource is found and hand back
+ * a resource that still reads the same content once the lock is released.
+ *
+ * When the locator reports a version for its locations (e.g. a git commit id) the location
+ * and path a resource was found at are remembered in an index for that version, so
+ * repeated lookups of the same resource only check that it still exists instead of
+ * probing every location and profile until the version changes.
  *
  * @author Dave Syer
  */
 public class GenericResourceRepository implements ResourceRepository, ResourceLoaderAware {
 
+	/**
+	 * Number of versions whose resource index is retained, so that requests for a few
+	 * different labels of the same repository do not keep evicting each other.
+	 */
+	private static final int MAX_INDEXED_VERSIONS = 16;
+
+	/**
+	 * Number of lookups indexed per version. Paths come from requests, so the least
+	 * recently used lookups are dropped beyond this.
+	 */
+	private static final int MAX_INDEXED_LOOKUPS = 1024;
+
 	private ResourceLoader resourceLoader;
 
 	private SearchPathLocator service;
 
+	private final Map<String, Map<String, String[]>> indexes = Collections
+			.synchronizedMap(new LinkedHashMap<String, Map<String, String[]>>(16, 0.75f, true) {
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, Map<String, String[]>> eldest) {
+					return size() > MAX_INDEXED_VERSIONS;
+				}
+			});
+
 	public GenericResourceRepository(SearchPathLocator service) {
 		this.service = service;
 	}
@@ -50,35 +84,86 @@ public class GenericResourceRepository implements ResourceRepository, ResourceLo
 	}
 
 	@Override
-	public synchronized Resource findOne(String application, String profile, String label, String path) {
+	public Resource findOne(String application, String profile, String label, String path) {
 
 		if (StringUtils.hasText(path)) {
-			String[] locations = this.service.getLocations(application, profile, label).getLocations();
-			ArrayList<Resource> locationResources = new ArrayList<>();
-			for (String location : locations) {
-				if (!PathUtils.isInvalidEncodedLocation(location)) {
-					locationResources.add(this.resourceLoader.getResource(location.replaceFirst("optional:", "")));
-				}
+			Resource file = this.service.findResource(application, profile, label,
+					locations -> find(locations, profile, path));
+			if (file != null) {
+				return file;
 			}
+		}
+		throw new NoSuchResourceException("Not found: " + path);
+	}
 
-			try {
-				for (Resource location : locationResources) {
-					for (String local : getProfilePaths(profile, path)) {
-						if (!PathUtils.isInvalidPath(local) && !PathUtils.isInvalidEncodedPath(local)) {
-							Resource file = location.createRelative(local);
-							if (file.exists() && file.isReadable()
-									&& PathUtils.checkResource(file, location, locationResources)) {
-								return file;
+	private Resource find(Locations locations, String profile, String path) {
+		List<String> validLocations = new ArrayList<>();
+		ArrayList<Resource> locationResources = new ArrayList<>();
+		for (String location : locations.getLocations()) {
+			if (!PathUtils.isInvalidEncodedLocation(location)) {
+				validLocations.add(location);
+				locationResources.add(this.resourceLoader.getResource(location.replaceFirst("optional:", "")));
+			}
+		}
+		Map<String, String[]> index = getIndex(locations.getVersion());
+		String lookup = validLocations + "::" + profile + "::" + path;
+		try {
+			String[] hit = index == null ? null : index.get(lookup);
+			if (hit != null) {
+				// found at this version before, so the same location and path still apply
+				// unless the file was deleted from a location whose version did not move
+				Resource file = locationResources.get(validLocations.indexOf(hit[0])).createRelative(hit[1]);
+				if (file.exists()) {
+					return file;
+				}
+				index.remove(lookup);
+			}
+			for (int i = 0; i < locationResources.size(); i++) {
+				Resource location = locationResources.get(i);
+				for (String local : getProfilePaths(profile, path)) {
+					if (!PathUtils.isInvalidPath(local) && !PathUtils.isInvalidEncodedPath(local)) {
+						Resource file = probe(location, local, locationResources);
+						if (file != null) {
+							if (index != null) {
+								index.put(lookup, new String[] { validLocations.get(i), local });
 							}
+							return file;
 						}
 					}
 				}
 			}
-			catch (IOException e) {
-				throw new NoSuchResourceException("Error : " + path + ". (" + e.getMessage() + ")");
-			}
 		}
-		throw new NoSuchResourceException("Not found: " + path);
+		catch (IOException e) {
+			throw new NoSuchResourceException("Error : " + path + ". (" + e.getMessage() + ")");
+		}
+		// misses are not indexed: they would grow the index with every unknown path
+		return null;
+	}
+
+	private Resource probe(Resource location, String local, List<Resource> locationResources) throws IOException {
+		Resource file = location.createRelative(local);
+		if (file.exists() && file.isReadable() && PathUtils.checkResource(file, location, locationResources)) {
+			return file;
+		}
+		return null;
+	}
+
+	/**
+	 * The location and path each lookup was found at for a version, or null if lookups
+	 * cannot be indexed. The version of a native repository is a fixed label rather than
+	 * a snapshot of its content, so only versions of other locators are indexed.
+	 */
+	private Map<String, String[]> getIndex(String version) {
+		if (version == null || this.service instanceof NativeEnvironmentRepository) {
+			return null;
+		}
+		return this.indexes.computeIfAbsent(version,
+				key -> Collections.synchronizedMap(new LinkedHashMap<String, String[]>(16, 0.75f, true) {
+					@Override
+					protected boolean removeEldestEntry(Map.Entry<String, String[]> eldest) {
+						return size() > MAX_INDEXED_LOOKUPS;
+					}
+				}));
 	}
 
 	private Collection<String> getProfilePaths(String profiles, String path) {
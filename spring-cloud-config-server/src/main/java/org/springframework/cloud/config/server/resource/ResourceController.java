@@ -31,6 +31,7 @@ import org.springframework.cloud.config.server.environment.EnvironmentRepository
 import org.springframework.core.io.Resource;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.util.StreamUtils;
 import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -64,6 +65,8 @@ public class ResourceController {
 
 	private static Log logger = LogFactory.getLog(ResourceController.class);
 
+	private static final String PLACEHOLDER_PREFIX = "${";
+
 	private ResourceRepository resourceRepository;
 
 	private EnvironmentRepository environmentRepository;
@@ -100,8 +103,8 @@ public class ResourceController {
 
 	@RequestMapping("/{name}/{profile}/{label}/**")
 	public String retrieve(@PathVariable String name, @PathVariable String profile, @PathVariable String label,
-						   ServletWebRequest request, @RequestParam(defaultValue = "true") boolean resolvePlaceholders)
-		throws IOException {
+			ServletWebRequest request, @RequestParam(defaultValue = "true") boolean resolvePlaceholders)
+			throws IOException {
 		// 获取路径地址
 		String path = getFilePath(request, name, profile, label);
 		return retrieve(request, name, profile, label, path, resolvePlaceholders);
@@ -127,8 +130,8 @@ public class ResourceController {
 		return path;
 	}
 
-	synchronized String retrieve(ServletWebRequest request, String name, String profile, String label, String path,
-								 boolean resolvePlaceholders) throws IOException {
+	String retrieve(ServletWebRequest request, String name, String profile, String label, String path,
+			boolean resolvePlaceholders) throws IOException {
 		// 确认name
 		name = Environment.normalize(name);
 		// 确认label
@@ -146,15 +149,22 @@ public class ResourceController {
 			if (ext != null) {
 				ext = ext.toLowerCase();
 			}
-			Environment environment = this.environmentRepository.findOne(name, profile, label, false);
-			if (resolvePlaceholders) {
+			// The environment is only needed for placeholders and decryption, so only
+			// look it up when one of them actually applies to this resource
+			Environment environment = null;
+			if (resolvePlaceholders && text.contains(PLACEHOLDER_PREFIX)) {
+				environment = this.environmentRepository.findOne(name, profile, label, false);
 				text = resolvePlaceholders(prepareEnvironment(environment), text);
 			}
 			if (ext != null && encryptEnabled && plainTextEncryptEnabled) {
 				ResourceEncryptor re = this.resourceEncryptorMap.get(ext);
 				if (re == null) {
 					logger.warn("Cannot decrypt for extension " + ext);
-				} else {
+				}
+				else {
+					if (environment == null) {
+						environment = this.environmentRepository.findOne(name, profile, label, false);
+					}
 					text = re.decrypt(text, environment);
 				}
 			}
@@ -171,40 +181,42 @@ public class ResourceController {
 	}
 
 	@RequestMapping(value = "/{name}/{profile}/{label}/**", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
-	public byte[] binary(@PathVariable String name, @PathVariable String profile, @PathVariable String label,
-			ServletWebRequest request) throws IOException {
+	public ResponseEntity<Resource> binary(@PathVariable String name, @PathVariable String profile,
+			@PathVariable String label, ServletWebRequest request) throws IOException {
 		String path = getFilePath(request, name, profile, label);
-		return binary(request, name, profile, label, path);
+		return binary(name, profile, label, path);
 	}
 
 	@RequestMapping(value = "/{name}/{profile}/{path:.*}", params = "useDefaultLabel",
 			produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
-	public byte[] binaryDefault(@PathVariable String name, @PathVariable String profile, @PathVariable String path,
-			ServletWebRequest request) throws IOException {
-		return binary(request, name, profile, null, path);
+	public ResponseEntity<Resource> binaryDefault(@PathVariable String name, @PathVariable String profile,
+			@PathVariable String path, ServletWebRequest request) throws IOException {
+		return binary(name, profile, null, path);
 	}
 
-	/*
-	 * Used only for unit tests.
+	/**
+	 * Locates a binary resource without reading it. The {@link Resource} itself is
+	 * returned so that it is streamed to the response rather than buffered on the heap,
+	 * which also lets Spring MVC answer HTTP Range requests with the matching
+	 * {@link org.springframework.core.io.support.ResourceRegion regions} and set the
+	 * Content-Length. The ETag and Last-Modified headers are used by Spring MVC for
+	 * conditional requests.
 	 */
-	byte[] binary(String name, String profile, String label, String path) throws IOException {
-		return binary(null, name, profile, label, path);
-	}
-
-	private synchronized byte[] binary(ServletWebRequest request, String name, String profile, String label,
-			String path) throws IOException {
+	ResponseEntity<Resource> binary(String name, String profile, String label, String path) throws IOException {
 		name = Environment.normalize(name);
 		label = Environment.normalize(label);
 		Resource resource = this.resourceRepository.findOne(name, profile, label, path);
-		if (checkNotModified(request, resource)) {
-			// Content was not modified. Just return.
-			return null;
+		ResponseEntity.BodyBuilder builder = ResponseEntity.ok();
+		try {
+			long lastModified = resource.lastModified();
+			long contentLength = resource.contentLength();
+			builder.lastModified(lastModified)
+					.eTag(Long.toHexString(lastModified) + "-" + Long.toHexString(contentLength));
 		}
-		// TODO: is this line needed for side effects?
-		prepareEnvironment(this.environmentRepository.findOne(name, profile, label));
-		try (InputStream is = resource.getInputStream()) {
-			return StreamUtils.copyToByteArray(is);
+		catch (IOException ex) {
+			// Ignore the exception since caching is optional.
 		}
+		return builder.body(resource);
 	}
 
 	private boolean checkNotModified(ServletWebRequest request, Resource resource) {
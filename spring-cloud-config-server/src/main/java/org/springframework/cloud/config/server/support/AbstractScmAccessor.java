@@ -214,6 +214,21 @@ public abstract class AbstractScmAccessor implements ResourceLoaderAware {
 	}
 
 	protected String[] getSearchLocations(File dir, String application, String profile, String label) {
+		Collection<String> output = new LinkedHashSet<String>();
+		for (String value : getSearchPatterns(application, profile, label)) {
+			output.addAll(matchingDirectories(dir, value));
+		}
+		return output.toArray(new String[0]);
+	}
+
+	/**
+	 * @param application the application names
+	 * @param profile the profiles
+	 * @param label the label
+	 * @return the search paths with the placeholders replaced, relative to the root of
+	 * the repository and ending with a slash, they can still contain wildcards
+	 */
+	protected String[] getSearchPatterns(String application, String profile, String label) {
 		// 设置搜索路径
 		String[] locations = this.searchPaths;
 		// 如果路径地址为空或者数量为0将路径地址设置为默认路径地址
@@ -251,7 +266,7 @@ public abstract class AbstractScmAccessor implements ResourceLoaderAware {
 					if (!value.endsWith("/")) {
 						value = value + "/";
 					}
-					output.addAll(matchingDirectories(dir, value));
+					output.add(value);
 				}
 			}
 		}
@@ -18,6 +18,7 @@ package org.springframework.cloud.config.server;
 
 import java.io.IOException;
 
+import org.apache.commons.logging.LogFactory;
 import org.eclipse.jgit.junit.MockSystemReader;
 import org.eclipse.jgit.util.SystemReader;
 import org.junit.BeforeClass;
@@ -27,10 +28,17 @@ import org.junit.runner.RunWith;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.cloud.config.client.ConfigClientProperties;
+import org.springframework.cloud.config.client.ConfigClientRequestTemplateFactory;
 import org.springframework.cloud.config.environment.Environment;
+import org.springframework.cloud.config.environment.EnvironmentMediaType;
 import org.springframework.cloud.config.server.test.ConfigServerTestUtils;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit4.SpringRunner;
@@ -79,6 +87,36 @@ public class NativeConfigServerIntegrationTests {
 		ConfigServerTestUtils.assertConfigEnabled(environment);
 	}
 
+	@Test
+	public void binaryEnvironment() {
+		ConfigClientProperties properties = new ConfigClientProperties(new StandardEnvironment());
+		properties.setMediaType(EnvironmentMediaType.V2_CBOR);
+		ConfigClientRequestTemplateFactory factory = new ConfigClientRequestTemplateFactory(
+				LogFactory.getLog(getClass()), properties);
+		HttpHeaders headers = new HttpHeaders();
+		headers.setAccept(factory.getAccept());
+		String url = "http://localhost:" + this.port + "/foo/development/";
+		ResponseEntity<Environment> response = factory.create().exchange(url, HttpMethod.GET,
+				new HttpEntity<>(headers), Environment.class);
+		assertThat(response.getHeaders().getContentType())
+				.isEqualTo(MediaType.valueOf(EnvironmentMediaType.V2_CBOR));
+		Environment environment = response.getBody();
+		Environment json = new TestRestTemplate()
+				.exchange(url, HttpMethod.GET, getV2AcceptEntity(), Environment.class).getBody();
+		assertThat(environment.getPropertySources()).hasSameSizeAs(json.getPropertySources());
+		for (int i = 0; i < json.getPropertySources().size(); i++) {
+			assertThat(environment.getPropertySources().get(i).getName())
+					.isEqualTo(json.getPropertySources().get(i).getName());
+			assertThat(environment.getPropertySources().get(i).getSource())
+					.isEqualTo(json.getPropertySources().get(i).getSource());
+		}
+		byte[] binary = factory.create().exchange(url, HttpMethod.GET, new HttpEntity<>(headers), byte[].class)
+				.getBody();
+		byte[] text = new TestRestTemplate().exchange(url, HttpMethod.GET, getV2AcceptEntity(), byte[].class)
+				.getBody();
+		assertThat(binary.length).isLessThan(text.length);
+	}
+
 	@Test
 	public void badYaml() {
 		ResponseEntity<String> response = new TestRestTemplate()
@@ -17,12 +17,18 @@
 package org.springframework.cloud.config.server.environment;
 
 import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mockito;
 
 import org.springframework.cloud.config.environment.Environment;
+import org.springframework.cloud.config.environment.PropertySource;
 import org.springframework.credhub.core.CredHubOperations;
 import org.springframework.credhub.core.credential.CredHubCredentialOperations;
 import org.springframework.credhub.support.CredentialDetails;
@@ -36,6 +42,11 @@ import static java.util.Collections.emptyList;
 import static java.util.Collections.singletonList;
 import static java.util.Collections.singletonMap;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -45,15 +56,17 @@ public class CredhubEnvironmentRepositoryTests {
 
 	private CredhubEnvironmentRepository credhubEnvironmentRepository;
 
+	private CredHubOperations credhubOperations;
+
 	private CredHubCredentialOperations credhubCredentialOperations;
 
 	@Before
 	public void setUp() {
-		CredHubOperations credhubOperations = Mockito.mock(CredHubOperations.class);
+		this.credhubOperations = Mockito.mock(CredHubOperations.class);
 		this.credhubCredentialOperations = Mockito.mock(CredHubCredentialOperations.class);
-		when(credhubOperations.credentials()).thenReturn(this.credhubCredentialOperations);
+		when(this.credhubOperations.credentials()).thenReturn(this.credhubCredentialOperations);
 
-		this.credhubEnvironmentRepository = new CredhubEnvironmentRepository(credhubOperations);
+		this.credhubEnvironmentRepository = new CredhubEnvironmentRepository(this.credhubOperations);
 	}
 
 	@Test
@@ -206,6 +219,108 @@ public class CredhubEnvironmentRepositoryTests {
 		assertThat(environment.getPropertySources().get(3).getSource()).isEqualTo(singletonMap("key4", "value4"));
 	}
 
+	@Test
+	public void shouldKeepOrderWhenReadingConcurrently() {
+		CredhubEnvironmentProperties properties = new CredhubEnvironmentProperties();
+		properties.setParallelism(4);
+		CredhubEnvironmentRepository repository = new CredhubEnvironmentRepository(this.credhubOperations,
+				properties);
+		stubCredentials("/my-application/production/mylabel", "toggles", "key1", "value1");
+		stubCredentials("/application/production/mylabel", "abs", "key2", "value2");
+		stubCredentials("/my-application/default/mylabel", "abs", "key3", "value3");
+		stubCredentials("/application/default/mylabel", "abs", "key4", "value4");
+
+		Environment environment = repository.findOne("my-application", "production", "mylabel");
+		repository.destroy();
+
+		assertThat(environment.getPropertySources()).extracting(PropertySource::getName).containsExactly(
+				"credhub-my-application-production-mylabel", "credhub-application-production-mylabel",
+				"credhub-my-application-default-mylabel", "credhub-application-default-mylabel");
+		assertThat(environment.getPropertySources().get(3).getSource()).isEqualTo(singletonMap("key4", "value4"));
+	}
+
+	@Test
+	public void shouldReuseCachedCredentials() {
+		CredhubEnvironmentProperties properties = new CredhubEnvironmentProperties();
+		properties.setCacheTtl(60);
+		CredhubEnvironmentRepository repository = new CredhubEnvironmentRepository(this.credhubOperations,
+				properties);
+		stubCredentials("/my-application/production/mylabel", "toggles", "key1", "value1");
+
+		repository.findOne("my-application", "production", "mylabel");
+		Environment environment = repository.findOne("my-application", "production", "mylabel");
+
+		assertThat(environment.getPropertySources().get(0).getSource()).isEqualTo(singletonMap("key1", "value1"));
+		verify(this.credhubCredentialOperations, times(1)).findByPath("/my-application/production/mylabel");
+		verify(this.credhubCredentialOperations, times(1)).getByName(
+				new SimpleCredentialName("/my-application/production/mylabel/toggles"), JsonCredential.class);
+	}
+
+	@Test
+	public void shouldNotCacheEmptyPaths() {
+		CredhubEnvironmentProperties properties = new CredhubEnvironmentProperties();
+		properties.setCacheTtl(60);
+		CredhubEnvironmentRepository repository = new CredhubEnvironmentRepository(this.credhubOperations, properties);
+		when(this.credhubCredentialOperations.findByPath("/my-application/production/mylabel")).thenReturn(emptyList());
+
+		repository.findOne("my-application", "production", "mylabel");
+		repository.findOne("my-application", "production", "mylabel");
+
+		verify(this.credhubCredentialOperations, times(2)).findByPath("/my-application/production/mylabel");
+	}
+
+	@Test
+	public void shouldDropLeastRecentlyUsedPaths() {
+		CredhubEnvironmentProperties properties = new CredhubEnvironmentProperties();
+		properties.setCacheTtl(60);
+		CredhubEnvironmentRepository repository = new CredhubEnvironmentRepository(this.credhubOperations, properties);
+		when(this.credhubCredentialOperations.findByPath(anyString())).thenAnswer(invocation -> singletonList(
+				new CredentialSummary(new SimpleCredentialName(invocation.getArgument(0) + "/toggles"))));
+		JsonCredential credentials = new JsonCredential();
+		credentials.put("key1", "value1");
+		when(this.credhubCredentialOperations.getByName(any(SimpleCredentialName.class), eq(JsonCredential.class)))
+				.thenReturn(new CredentialDetails<>("id1", new SimpleCredentialName("/toggles"), CredentialType.JSON,
+						credentials));
+
+		for (int i = 0; i < 2000; i++) {
+			repository.findOne("application", "profile" + i, "master");
+		}
+		repository.findOne("application", "profile0", "master");
+
+		verify(this.credhubCredentialOperations, times(2)).findByPath("/application/profile0/master");
+		verify(this.credhubCredentialOperations, times(1)).findByPath("/application/default/master");
+	}
+
+	@Test
+	public void shouldShareConcurrentReadsOfPath() throws Exception {
+		CredhubEnvironmentProperties properties = new CredhubEnvironmentProperties();
+		properties.setCacheTtl(60);
+		CredhubEnvironmentRepository repository = new CredhubEnvironmentRepository(this.credhubOperations,
+				properties);
+		stubCredentials("/application/default/master", "toggles", "key1", "value1");
+		CountDownLatch reading = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		List<CredentialSummary> summaries = singletonList(
+				new CredentialSummary(new SimpleCredentialName("/application/default/master/toggles")));
+		when(this.credhubCredentialOperations.findByPath("/application/default/master")).thenAnswer(invocation -> {
+			reading.countDown();
+			release.await();
+			return summaries;
+		});
+
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		Future<Environment> first = executor.submit(() -> repository.findOne("application", null, null));
+		reading.await();
+		Future<Environment> second = executor.submit(() -> repository.findOne("application", null, null));
+		Thread.sleep(100);
+		release.countDown();
+
+		assertThat(first.get().getPropertySources().get(0).getSource()).isEqualTo(singletonMap("key1", "value1"));
+		assertThat(second.get().getPropertySources().get(0).getSource()).isEqualTo(singletonMap("key1", "value1"));
+		executor.shutdown();
+		verify(this.credhubCredentialOperations, times(1)).findByPath("/application/default/master");
+	}
+
 	private void stubCredentials(String expectedPath, String name, String key, String value) {
 		SimpleCredentialName credentialsName = new SimpleCredentialName(expectedPath + "/" + name);
 		when(this.credhubCredentialOperations.findByPath(expectedPath))
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2013-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.config.server.environment;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import org.springframework.cloud.config.environment.Environment;
+import org.springframework.cloud.config.environment.PropertySource;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+public class EnvironmentBulkControllerTests {
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	private EnvironmentController environmentController = Mockito.mock(EnvironmentController.class);
+
+	private EnvironmentBulkController controller;
+
+	private MockMvc mvc;
+
+	@Before
+	public void init() {
+		this.controller = new EnvironmentBulkController(this.environmentController, this.objectMapper, 2);
+		this.mvc = MockMvcBuilders.standaloneSetup(this.controller).build();
+	}
+
+	@After
+	public void close() {
+		this.controller.destroy();
+	}
+
+	@Test
+	public void oneLinePerDistinctEntry() throws Exception {
+		when(this.environmentController.getEnvironment("foo", "dev", null, false))
+				.thenReturn(environment("foo", "dev", null));
+		when(this.environmentController.getEnvironment("bar", "dev", "main", false))
+				.thenReturn(environment("bar", "dev", "main"));
+		MvcResult result = this.mvc
+				.perform(post("/bulk").contentType(MediaType.APPLICATION_JSON)
+						.content("[{\"name\":\"foo\",\"profiles\":\"dev\"},"
+								+ "{\"name\":\"bar\",\"profiles\":\"dev\",\"label\":\"main\"},"
+								+ "{\"name\":\"foo\",\"profiles\":\"dev\"}]"))
+				.andExpect(status().isOk()).andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+				.andReturn();
+		List<String> names = new ArrayList<>();
+		for (JsonNode line : lines(result)) {
+			names.add(line.get("name").asText());
+			assertThat(line.get("propertySources")).hasSize(1);
+		}
+		assertThat(names).containsExactlyInAnyOrder("foo", "bar");
+		verify(this.environmentController, times(1)).getEnvironment("foo", "dev", null, false);
+	}
+
+	@Test
+	public void failedEntryDoesNotFailTheOthers() throws Exception {
+		when(this.environmentController.getEnvironment("foo", "dev", null, true))
+				.thenReturn(environment("foo", "dev", null));
+		when(this.environmentController.getEnvironment("foo", "dev", "nope", true))
+				.thenThrow(new NoSuchLabelException("No such label: nope"));
+		MvcResult result = this.mvc
+				.perform(post("/bulk?includeOrigin=true").contentType(MediaType.APPLICATION_JSON)
+						.content("[{\"name\":\"foo\",\"profiles\":\"dev\"},"
+								+ "{\"name\":\"foo\",\"profiles\":\"dev\",\"label\":\"nope\"}]"))
+				.andExpect(status().isOk()).andReturn();
+		List<JsonNode> lines = lines(result);
+		assertThat(lines).hasSize(2);
+		JsonNode failure = lines.get(0).has("status") ? lines.get(0) : lines.get(1);
+		assertThat(failure.get("status").asInt()).isEqualTo(404);
+		assertThat(failure.get("label").asText()).isEqualTo("nope");
+		assertThat(failure.get("error").asText()).contains("nope");
+	}
+
+	@Test
+	public void tooManyEntries() throws Exception {
+		this.controller.setMaxEntries(1);
+		this.mvc.perform(post("/bulk").contentType(MediaType.APPLICATION_JSON)
+				.content("[{\"name\":\"foo\",\"profiles\":\"dev\"},{\"name\":\"bar\",\"profiles\":\"dev\"}]"))
+				.andExpect(status().isBadRequest());
+	}
+
+	@Test
+	public void entryWithoutName() throws Exception {
+		this.mvc.perform(post("/bulk").contentType(MediaType.APPLICATION_JSON).content("[{\"profiles\":\"dev\"}]"))
+				.andExpect(status().isBadRequest());
+	}
+
+	@Test
+	public void invalidEntryStartsNoLookup() throws Exception {
+		this.mvc.perform(post("/bulk").contentType(MediaType.APPLICATION_JSON)
+				.content("[{\"name\":\"foo\",\"profiles\":\"dev\"},{\"profiles\":\"dev\"}]"))
+				.andExpect(status().isBadRequest());
+		verifyNoInteractions(this.environmentController);
+	}
+
+	private List<JsonNode> lines(MvcResult result) throws Exception {
+		List<JsonNode> lines = new ArrayList<>();
+		for (String line : result.getResponse().getContentAsString().split("\n")) {
+			lines.add(this.objectMapper.readTree(line));
+		}
+		return lines;
+	}
+
+	private static Environment environment(String name, String profiles, String label) {
+		Environment environment = new Environment(name, new String[] { profiles }, label, null, null);
+		environment.add(new PropertySource(name, Collections.singletonMap("foo", "bar")));
+		return environment;
+	}
+
+}
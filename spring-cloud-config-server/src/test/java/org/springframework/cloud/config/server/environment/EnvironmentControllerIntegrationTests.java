@@ -16,6 +16,7 @@
 
 package org.springframework.cloud.config.server.environment;
 
+import java.util.Collections;
 import java.util.HashMap;
 
 import org.hamcrest.Matchers;
@@ -119,6 +120,49 @@ public class EnvironmentControllerIntegrationTests {
 				.andExpect(MockMvcResultMatchers.status().isOk());
 	}
 
+	@Test
+	public void environmentNotModified() throws Exception {
+		Environment environment = new Environment("foo", new String[] { "default" }, "awesome", "v1", null);
+		environment.add(new PropertySource("foo", new HashMap<>()));
+		when(this.repository.findOne("foo", "default", "awesome", false)).thenReturn(environment);
+		this.mvc.perform(MockMvcRequestBuilders.get("/foo/default/awesome"))
+				.andExpect(MockMvcResultMatchers.status().isOk())
+				.andExpect(MockMvcResultMatchers.header().string("ETag", "\"v1\""));
+		this.mvc.perform(MockMvcRequestBuilders.get("/foo/default/awesome").header("If-None-Match", "\"v1\""))
+				.andExpect(MockMvcResultMatchers.status().isNotModified())
+				.andExpect(MockMvcResultMatchers.content().string(""));
+	}
+
+	@Test
+	public void environmentWithoutVersionHasNoETag() throws Exception {
+		when(this.repository.findOne("foo", "default", "awesome", false)).thenReturn(this.environment);
+		this.mvc.perform(MockMvcRequestBuilders.get("/foo/default/awesome"))
+				.andExpect(MockMvcResultMatchers.status().isOk())
+				.andExpect(MockMvcResultMatchers.header().doesNotExist("ETag"));
+	}
+
+	@Test
+	public void diffWithLabel() throws Exception {
+		Environment previous = new Environment("foo", new String[] { "default" }, "awesome", "v1", null);
+		previous.add(new PropertySource("foo", new HashMap<>()));
+		Environment current = new Environment("foo", new String[] { "default" }, "awesome", "v2", null);
+		current.add(new PropertySource("foo", Collections.singletonMap("a", "b")));
+		when(this.repository.findOne("foo", "default", "awesome", false)).thenReturn(current);
+		when(this.repository.findOne("foo", "default", "v1", false)).thenReturn(previous);
+		this.mvc.perform(MockMvcRequestBuilders.get("/foo/default/awesome/diff").param("from", "v1"))
+				.andExpect(MockMvcResultMatchers.status().isOk())
+				.andExpect(MockMvcResultMatchers.jsonPath("$.to").value("v2"))
+				.andExpect(MockMvcResultMatchers.jsonPath("$.propertySources[0].added.a").value("b"));
+	}
+
+	@Test
+	public void diffFromMissingVersion() throws Exception {
+		when(this.repository.findOne("foo", "default", "awesome", false)).thenReturn(this.environment);
+		when(this.repository.findOne("foo", "default", "v1", false)).thenThrow(new NoSuchLabelException("Planned"));
+		this.mvc.perform(MockMvcRequestBuilders.get("/foo/default/awesome/diff").param("from", "v1"))
+				.andExpect(MockMvcResultMatchers.status().isNotFound());
+	}
+
 	@Test
 	public void environmentWithMissingLabel() throws Exception {
 		when(this.repository.findOne("foo", "default", "missing", false))
@@ -176,6 +220,11 @@ public class EnvironmentControllerIntegrationTests {
 			return new EnvironmentController(environmentRepository());
 		}
 
+		@Bean
+		public EnvironmentETagAdvice environmentETagAdvice() {
+			return new EnvironmentETagAdvice();
+		}
+
 	}
 
 }
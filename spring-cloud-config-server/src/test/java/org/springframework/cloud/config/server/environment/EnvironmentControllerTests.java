@@ -34,6 +34,7 @@ import org.skyscreamer.jsonassert.JSONCompareMode;
 import org.yaml.snakeyaml.Yaml;
 
 import org.springframework.cloud.config.environment.Environment;
+import org.springframework.cloud.config.environment.EnvironmentDiff;
 import org.springframework.cloud.config.environment.PropertySource;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
@@ -646,4 +647,35 @@ public class EnvironmentControllerTests {
 		this.controller.labelled("foo%23", "bar", "mylabel");
 	}
 
+	@Test
+	public void diffBetweenVersions() {
+		Environment previous = new Environment("foo", new String[] { "bar" }, "master", "v1", null);
+		previous.add(new PropertySource("one", Collections.singletonMap("a", "b")));
+		Environment current = new Environment("foo", new String[] { "bar" }, "master", "v2", null);
+		current.add(new PropertySource("one", Collections.singletonMap("a", "c")));
+		when(this.repository.findOne("foo", "bar", "master", false)).thenReturn(current);
+		when(this.repository.findOne("foo", "bar", "v1", false)).thenReturn(previous);
+		EnvironmentDiff diff = this.controller.diff("foo", "bar", "master", "v1");
+		assertThat(diff.getFrom()).isEqualTo("v1");
+		assertThat(diff.getTo()).isEqualTo("v2");
+		assertThat(diff.getPropertySources()).hasSize(1);
+		assertThat(diff.getPropertySources().get(0).getChanged()).containsEntry("a", "c");
+	}
+
+	@Test
+	public void diffFromCurrentVersionIsEmpty() {
+		Environment current = new Environment("foo", new String[] { "bar" }, "master", "v2", null);
+		current.add(new PropertySource("one", Collections.singletonMap("a", "c")));
+		when(this.repository.findOne("foo", "bar", null, false)).thenReturn(current);
+		assertThat(this.controller.diffDefaultLabel("foo", "bar", "v2").getPropertySources()).isEmpty();
+	}
+
+	@Test
+	public void diffFromUnknownVersion() {
+		when(this.repository.findOne("foo", "bar", "master", false)).thenReturn(this.environment);
+		when(this.repository.findOne("foo", "bar", "v1", false)).thenReturn(this.environment);
+		expected.expect(NoSuchLabelException.class);
+		this.controller.diff("foo", "bar", "master", "v1");
+	}
+
 }
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2013-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.config.server.environment;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.cloud.config.environment.Environment;
+import org.springframework.cloud.config.server.config.ConfigServerWarmupHealthIndicator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class EnvironmentWarmupTests {
+
+	private EnvironmentRepository repository = Mockito.mock(EnvironmentRepository.class);
+
+	@Test
+	public void looksUpEachEnvironmentOnce() throws Exception {
+		when(this.repository.findOne("foo", "dev", null, false))
+				.thenReturn(new Environment("foo", new String[] { "dev" }));
+		when(this.repository.findOne("bar", "dev,db", "feature/x", false))
+				.thenThrow(new NoSuchLabelException("No such label: feature/x"));
+		EnvironmentWarmup warmup = new EnvironmentWarmup(this.repository,
+				Arrays.asList("foo/dev", "bar/dev,db/feature(_)x", "foo/dev"), 2);
+		ConfigServerWarmupHealthIndicator health = new ConfigServerWarmupHealthIndicator(warmup);
+		assertThat(health.health().getStatus()).isEqualTo(Status.OUT_OF_SERVICE);
+		warmup.run(null);
+		assertThat(warmup.isDone()).isTrue();
+		assertThat(warmup.getTotal()).isEqualTo(2);
+		assertThat(warmup.getCompleted()).isEqualTo(2);
+		assertThat(warmup.getFailed()).isEqualTo(1);
+		verify(this.repository, times(1)).findOne("foo", "dev", null, false);
+		assertThat(health.health().getStatus()).isEqualTo(Status.UP);
+		assertThat(health.health().getDetails()).containsEntry("failed", 1);
+	}
+
+	@Test
+	public void nothingToWarmUp() throws Exception {
+		EnvironmentWarmup warmup = new EnvironmentWarmup(this.repository, Collections.emptyList(), 4);
+		warmup.run(null);
+		assertThat(warmup.isDone()).isTrue();
+		Mockito.verifyNoInteractions(this.repository);
+	}
+
+	@Test
+	public void invalidEnvironment() {
+		assertThatIllegalArgumentException()
+				.isThrownBy(() -> new EnvironmentWarmup(this.repository, Collections.singletonList("foo"), 1));
+	}
+
+}
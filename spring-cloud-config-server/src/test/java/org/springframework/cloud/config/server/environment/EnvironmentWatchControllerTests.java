@@ -0,0 +1,285 @@
+/*
+ * Copyright 2013-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.config.server.environment;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import org.springframework.cloud.config.environment.Environment;
+import org.springframework.cloud.config.environment.PropertySource;
+import org.springframework.mock.web.DelegatingServletOutputStream;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+public class EnvironmentWatchControllerTests {
+
+	private EnvironmentRepository repository = Mockito.mock(EnvironmentRepository.class);
+
+	private EnvironmentChangeMonitor monitor = new EnvironmentChangeMonitor(this.repository);
+
+	private CountDownLatch blocked = new CountDownLatch(1);
+
+	private volatile boolean blocking;
+
+	private EnvironmentWatchController controller;
+
+	private MockMvc mvc;
+
+	@Before
+	public void init() {
+		this.controller = new EnvironmentWatchController(this.monitor);
+		this.controller.setTimeout(100);
+		this.mvc = MockMvcBuilders.standaloneSetup(this.controller).addFilters(this::blockWhenAsked).build();
+	}
+
+	@After
+	public void close() {
+		this.blocked.countDown();
+		this.controller.destroy();
+	}
+
+	@Test
+	public void differentVersionReturnsImmediately() throws Exception {
+		when(this.repository.findOne("foo", "default", "master", false)).thenReturn(environment("v2", "a"));
+		MvcResult result = this.mvc.perform(get("/foo/default/master/watch").param("version", "v1"))
+				.andExpect(request().asyncStarted()).andReturn();
+		this.mvc.perform(asyncDispatch(result)).andExpect(status().isOk()).andExpect(jsonPath("$.version").value("v2"))
+				.andExpect(jsonPath("$.propertySources").isEmpty());
+		assertThat(this.monitor.getWatchedCount()).isEqualTo(0);
+	}
+
+	@Test
+	public void sameVersionTimesOut() throws Exception {
+		when(this.repository.findOne("foo", "default", null, false)).thenReturn(environment("v1", "a"));
+		MvcResult result = this.mvc.perform(get("/foo/default/watch?useDefaultLabel").param("version", "v1"))
+				.andExpect(request().asyncStarted()).andReturn();
+		assertThat(this.monitor.getWatchedCount()).isEqualTo(1);
+		MockAsyncContext context = (MockAsyncContext) result.getRequest().getAsyncContext();
+		for (AsyncListener listener : context.getListeners()) {
+			listener.onTimeout(null);
+		}
+		this.mvc.perform(asyncDispatch(result)).andExpect(status().isNotModified());
+		assertThat(this.monitor.getWatchedCount()).isEqualTo(0);
+	}
+
+	@Test
+	public void changeWakesUpWatcher() throws Exception {
+		when(this.repository.findOne("foo", "default", "master", false)).thenReturn(environment("v1", "a"),
+				environment("v2", "b"));
+		MvcResult result = this.mvc.perform(get("/foo/default/master/watch").param("version", "v1"))
+				.andExpect(request().asyncStarted()).andReturn();
+		this.monitor.check();
+		this.mvc.perform(asyncDispatch(result)).andExpect(status().isOk()).andExpect(jsonPath("$.version").value("v2"));
+	}
+
+	@Test
+	public void unversionedChangeIsDetectedByContent() {
+		when(this.repository.findOne("foo", "default", "master", false)).thenReturn(environment(null, "a"),
+				environment(null, "a"), environment(null, "b"));
+		StringBuilder notified = new StringBuilder();
+		this.monitor.watch("foo", "default", "master", null, environment -> notified.append("changed"));
+		this.monitor.check();
+		assertThat(notified.toString()).isEmpty();
+		this.monitor.check();
+		assertThat(notified.toString()).isEqualTo("changed");
+	}
+
+	@Test
+	public void checkReportsOnlyEffectiveChanges() {
+		when(this.repository.findOne("foo", "default", null, false)).thenReturn(environment("v1", "a"),
+				environment("v2", "a"), environment("v3", "b"));
+		this.monitor.watch("foo", "default", null, "v1", environment -> {
+		});
+		assertThat(this.monitor.check()).isEmpty();
+		assertThat(this.monitor.check()).extracting(Environment::getVersion).containsExactly("v3");
+	}
+
+	@Test
+	public void effectiveChangesAreNotUsedUpByChecks() {
+		when(this.repository.findOne("foo", "default", null, false)).thenReturn(environment("v1", "a"),
+				environment("v2", "b"));
+		this.monitor.watch("foo", "default", null, "v1", environment -> {
+		});
+		assertThat(this.monitor.check()).extracting(Environment::getVersion).containsExactly("v2");
+		assertThat(this.monitor.checkEffectiveChanges()).extracting(Environment::getVersion).containsExactly("v2");
+		assertThat(this.monitor.checkEffectiveChanges()).isEmpty();
+	}
+
+	@Test
+	public void missingLabelIsNotFound() throws Exception {
+		when(this.repository.findOne("foo", "default", "missing", false))
+				.thenThrow(new NoSuchLabelException("Planned"));
+		this.mvc.perform(get("/foo/default/missing/watch")).andExpect(status().isNotFound());
+		assertThat(this.monitor.getWatchedCount()).isEqualTo(0);
+	}
+
+	@Test
+	public void streamSendsCurrentVersionThenDiffs() throws Exception {
+		when(this.repository.findOne("foo", "default", "master", false)).thenReturn(environment("v1", "a"),
+				environment("v2", "b"));
+		when(this.repository.findOne("bar", "default", null, false)).thenReturn(environment("v1", "a"));
+		MvcResult result = this.mvc.perform(get("/watch").param("env", "foo/default/master", "bar/default")
+				.param("diff", "true")).andExpect(request().asyncStarted()).andReturn();
+		assertThat(this.monitor.getWatchedCount()).isEqualTo(2);
+		this.monitor.check();
+		String body = awaitBody(result, "\"changed\":{\"a\":\"b\"}");
+		assertThat(body).contains("event:change").contains("id:v1").contains("event:diff").contains("id:v2")
+				.contains("\"changed\":{\"a\":\"b\"}");
+	}
+
+	@Test
+	public void streamOmitsIdOfUnversionedEnvironment() throws Exception {
+		when(this.repository.findOne("foo", "default", "master", false)).thenReturn(environment(null, "a"),
+				environment(null, "b"));
+		MvcResult result = this.mvc.perform(get("/watch").param("env", "foo/default/master"))
+				.andExpect(request().asyncStarted()).andReturn();
+		this.monitor.check();
+		assertThat(awaitBody(result, "event:change")).contains("event:change").doesNotContain("id:");
+	}
+
+	@Test
+	public void slowStreamClientDoesNotHoldUpChecks() throws Exception {
+		this.controller.setSendTimeout(200);
+		when(this.repository.findOne("foo", "default", "master", false)).thenReturn(environment("v1", "a"),
+				environment("v2", "b"));
+		MvcResult result = this.mvc.perform(get("/watch").param("env", "foo/default/master"))
+				.andExpect(request().asyncStarted()).andReturn();
+		awaitBody(result, "id:v1");
+		this.blocking = true;
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			// the client takes nothing, yet the check completes
+			executor.submit(() -> this.monitor.check()).get(5, TimeUnit.SECONDS);
+		}
+		finally {
+			executor.shutdownNow();
+		}
+		// and its stream is closed once the send timeout is over
+		long deadline = System.currentTimeMillis() + 5000;
+		while (this.monitor.getWatchedCount() > 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(20);
+		}
+		assertThat(this.monitor.getWatchedCount()).isEqualTo(0);
+	}
+
+	@Test
+	public void streamIsClosedWhenSenderHasNoRoom() throws Exception {
+		this.controller.destroy();
+		this.controller = new EnvironmentWatchController(this.monitor, 1, 1);
+		this.mvc = MockMvcBuilders.standaloneSetup(this.controller).addFilters(this::blockWhenAsked).build();
+		for (String name : new String[] { "foo", "bar", "baz" }) {
+			when(this.repository.findOne(name, "default", "master", false)).thenReturn(environment("v1", "a"),
+					environment("v2", "b"));
+			MvcResult result = this.mvc.perform(get("/watch").param("env", name + "/default/master"))
+					.andExpect(request().asyncStarted()).andReturn();
+			awaitBody(result, "id:v1");
+		}
+		this.blocking = true;
+		// one event is being written, one waits and there is no room for the third
+		this.monitor.check();
+		long deadline = System.currentTimeMillis() + 5000;
+		while (this.monitor.getWatchedCount() > 2 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(20);
+		}
+		assertThat(this.monitor.getWatchedCount()).isLessThanOrEqualTo(2);
+	}
+
+	@Test
+	public void streamRejectsInvalidEnvironment() throws Exception {
+		this.mvc.perform(get("/watch").param("env", "foo")).andExpect(status().isBadRequest());
+		assertThat(this.monitor.getWatchedCount()).isEqualTo(0);
+	}
+
+	private String awaitBody(MvcResult result, String expected) throws Exception {
+		long deadline = System.currentTimeMillis() + 5000;
+		String body = result.getResponse().getContentAsString();
+		while (!body.contains(expected) && System.currentTimeMillis() < deadline) {
+			Thread.sleep(20);
+			body = result.getResponse().getContentAsString();
+		}
+		return body;
+	}
+
+	private void blockWhenAsked(ServletRequest request, ServletResponse response, FilterChain chain)
+			throws IOException, ServletException {
+		chain.doFilter(request, new HttpServletResponseWrapper((HttpServletResponse) response) {
+			@Override
+			public ServletOutputStream getOutputStream() throws IOException {
+				ServletOutputStream output = super.getOutputStream();
+				return new DelegatingServletOutputStream(output) {
+					@Override
+					public void write(byte[] bytes, int offset, int length) throws IOException {
+						awaitUnblocked();
+						super.write(bytes, offset, length);
+					}
+
+					@Override
+					public void write(int b) throws IOException {
+						awaitUnblocked();
+						super.write(b);
+					}
+				};
+			}
+		});
+	}
+
+	private void awaitUnblocked() {
+		if (this.blocking) {
+			try {
+				this.blocked.await();
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private Environment environment(String version, String value) {
+		Environment environment = new Environment("foo", new String[] { "default" }, "master", version, null);
+		environment.add(new PropertySource("foo.yml", Collections.singletonMap("a", value)));
+		return environment;
+	}
+
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2013-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.config.server.environment;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class GitMaintenanceSchedulerTests {
+
+	private JGitEnvironmentRepository first = Mockito.mock(JGitEnvironmentRepository.class);
+
+	private JGitEnvironmentRepository second = Mockito.mock(JGitEnvironmentRepository.class);
+
+	@Test
+	public void checksEveryRepository() {
+		when(this.first.maintainIfDue()).thenThrow(new IllegalStateException("Disk full"));
+		when(this.second.maintainIfDue()).thenReturn(2);
+		GitMaintenanceScheduler scheduler = new GitMaintenanceScheduler(Arrays.asList(this.first, this.second));
+		assertThat(scheduler.check()).isEqualTo(2);
+		verify(this.first).maintainIfDue();
+	}
+
+	@Test
+	public void startsOnlyWhenSomeRepositoryIsMaintained() {
+		GitMaintenanceScheduler scheduler = new GitMaintenanceScheduler(Arrays.asList(this.first, this.second));
+		scheduler.start();
+		assertThat(scheduler.isRunning()).isFalse();
+		when(this.second.isMaintenanceEnabled()).thenReturn(true);
+		scheduler.start();
+		assertThat(scheduler.isRunning()).isTrue();
+		scheduler.stop();
+		assertThat(scheduler.isRunning()).isFalse();
+	}
+
+}
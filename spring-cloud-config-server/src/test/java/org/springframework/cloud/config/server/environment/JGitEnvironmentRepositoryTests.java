@@ -18,11 +18,19 @@ package org.springframework.cloud.config.server.environment;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.logging.Log;
 import org.assertj.core.api.Assertions;
@@ -57,6 +65,8 @@ import org.eclipse.jgit.transport.CredentialItem;
 import org.eclipse.jgit.transport.CredentialsProvider;
 import org.eclipse.jgit.transport.FetchResult;
 import org.eclipse.jgit.transport.ReceiveCommand;
+import org.eclipse.jgit.transport.RefSpec;
+import org.eclipse.jgit.transport.RemoteConfig;
 import org.eclipse.jgit.transport.TrackingRefUpdate;
 import org.eclipse.jgit.transport.URIish;
 import org.eclipse.jgit.transport.UsernamePasswordCredentialsProvider;
@@ -75,6 +85,7 @@ import org.springframework.cloud.config.server.support.GitSkipSslValidationCrede
 import org.springframework.cloud.config.server.support.PassphraseCredentialsProvider;
 import org.springframework.cloud.config.server.test.ConfigServerTestUtils;
 import org.springframework.core.env.StandardEnvironment;
+import org.springframework.util.unit.DataSize;
 
 import static junit.framework.TestCase.assertTrue;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -130,6 +141,313 @@ public class JGitEnvironmentRepositoryTests {
 		assertVersion(environment);
 	}
 
+	@Test
+	public void concurrentRequestsShareFetch() throws Exception {
+		AtomicInteger fetches = new AtomicInteger();
+		JGitEnvironmentRepository repository = new JGitEnvironmentRepository(this.environment,
+				new JGitEnvironmentProperties()) {
+			@Override
+			protected FetchResult fetch(Git git, String label, Collection<RefSpec> refSpecs) {
+				fetches.incrementAndGet();
+				try {
+					Thread.sleep(200);
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return super.fetch(git, label, refSpecs);
+			}
+		};
+		// a plain path rather than a file: uri, so that it is cloned and fetched from
+		repository.setUri(new File(this.repository.getUri().substring("file:".length())).getAbsolutePath());
+		repository.setBasedir(this.basedir);
+		repository.getLocations("bar", "staging", "master");
+		// otherwise there is nothing to fetch
+		commit(new File(repository.getUri()), "bar.properties", "foo: baz");
+		fetches.set(0);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<SearchPathLocator.Locations>> results = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			results.add(executor.submit(() -> {
+				start.await();
+				return repository.getLocations("bar", "staging", "master");
+			}));
+		}
+		start.countDown();
+		for (Future<SearchPathLocator.Locations> result : results) {
+			assertThat(result.get().getVersion()).isNotNull();
+		}
+		executor.shutdown();
+		assertThat(fetches.get()).isBetween(1, 2);
+	}
+
+	@Test
+	public void sparseCheckoutKeepsOnlySearchedFiles() throws Exception {
+		File remote = localRemote("another-config-repo");
+		commit(remote, "other/foo.properties", "foo: 1");
+		JGitEnvironmentRepository repository = new JGitEnvironmentRepository(this.environment,
+				new JGitEnvironmentProperties());
+		repository.setUri(remote.getAbsolutePath());
+		repository.setBasedir(this.basedir);
+		repository.setSearchPaths("sub");
+		repository.setSparseCheckout(true);
+		Environment environment = repository.findOne("bar", "staging", "master");
+		assertThat(environment.getPropertySources()).hasSize(2);
+		assertThat(new File(this.basedir, "sub/application.yml")).exists();
+		assertThat(new File(this.basedir, "bar.properties")).exists();
+		assertThat(new File(this.basedir, "other")).doesNotExist();
+		commit(remote, "other/foo.properties", "foo: 2");
+		// the pruned files do not make the clone dirty, so it is still updated
+		assertThat(repository.findOne("bar", "staging", "master").getVersion()).isNotEqualTo(environment.getVersion());
+		assertThat(new File(this.basedir, "other")).doesNotExist();
+	}
+
+	@Test
+	public void singleBranchFetchesOtherLabelsOnDemand() throws Exception {
+		File remote = localRemote("another-config-repo");
+		JGitEnvironmentRepository repository = new JGitEnvironmentRepository(this.environment,
+				new JGitEnvironmentProperties());
+		repository.setUri(remote.getAbsolutePath());
+		repository.setBasedir(this.basedir);
+		repository.setSingleBranch(true);
+		repository.findOne("bar", "staging", "master");
+		try (Git git = Git.open(this.basedir)) {
+			assertThat(git.getRepository().exactRef("refs/remotes/origin/raw")).isNull();
+		}
+		assertThat(repository.findOne("bar", "staging", "raw").getLabel()).isEqualTo("raw");
+		try (Git git = Git.open(this.basedir)) {
+			assertThat(git.getRepository().exactRef("refs/remotes/origin/raw")).isNotNull();
+			assertThat(new RemoteConfig(git.getRepository().getConfig(), "origin").getFetchRefSpecs()).hasSize(2);
+		}
+	}
+
+	@Test
+	public void inMemoryReadsFromFetchedObjects() throws Exception {
+		File remote = localRemote("another-config-repo");
+		JGitEnvironmentRepository repository = new JGitEnvironmentRepository(this.environment,
+				new JGitEnvironmentProperties());
+		repository.setUri(remote.getAbsolutePath());
+		repository.setBasedir(this.basedir);
+		repository.setSearchPaths("sub");
+		repository.setInMemory(true);
+		Environment environment = repository.findOne("bar", "staging", "master");
+		assertThat(environment.getPropertySources()).extracting("name")
+				.containsExactly(repository.getUri() + "/sub/application.yml", repository.getUri() + "/bar.properties");
+		assertThat(environment.getPropertySources().get(1).getSource().get("foo")).isEqualTo("bar");
+		assertVersion(environment);
+		assertThat(this.basedir).doesNotExist();
+		assertThat(repository.getInMemorySize()).isPositive();
+		commit(remote, "bar.properties", "foo: baz");
+		environment = repository.findOne("bar", "staging", "master");
+		assertThat(environment.getPropertySources().get(1).getSource().get("foo")).isEqualTo("baz");
+		assertThat(repository.findOne("bar", "staging", "raw").getLabel()).isEqualTo("raw");
+		this.exception.expect(NoSuchLabelException.class);
+		repository.findOne("bar", "staging", "missing");
+	}
+
+	@Test
+	public void inMemoryRepositoryTooBig() throws Exception {
+		JGitEnvironmentRepository repository = new JGitEnvironmentRepository(this.environment,
+				new JGitEnvironmentProperties());
+		repository.setUri(localRemote("another-config-repo").getAbsolutePath());
+		repository.setInMemory(true);
+		repository.setInMemoryMaxSize(DataSize.ofBytes(10));
+		this.exception.expect(IllegalStateException.class);
+		this.exception.expectMessage("in-memory maximum");
+		repository.findOne("bar", "staging", "master");
+	}
+
+	@Test
+	public void unchangedRemoteIsNotFetched() throws Exception {
+		File remote = localRemote("another-config-repo");
+		List<Collection<RefSpec>> fetches = new ArrayList<>();
+		JGitEnvironmentRepository repository = new JGitEnvironmentRepository(this.environment,
+				new JGitEnvironmentProperties()) {
+			@Override
+			protected FetchResult fetch(Git git, String label, Collection<RefSpec> refSpecs) {
+				fetches.add(refSpecs);
+				return super.fetch(git, label, refSpecs);
+			}
+		};
+		repository.setUri(remote.getAbsolutePath());
+		repository.setBasedir(this.basedir);
+		String version = repository.getLocations("bar", "staging", "master").getVersion();
+		assertThat(repository.getLocations("bar", "staging", "master").getVersion()).isEqualTo(version);
+		assertThat(fetches).isEmpty();
+		commit(remote, "bar.properties", "foo: baz");
+		assertThat(repository.getLocations("bar", "staging", "master").getVersion()).isNotEqualTo(version);
+		assertThat(fetches).hasSize(1);
+		// only the branch that moved
+		assertThat(fetches.get(0)).extracting(RefSpec::toString)
+				.containsExactly("+refs/heads/master:refs/remotes/origin/master");
+	}
+
+	@Test
+	public void unchangedRemoteServesCheckedOutVersion() throws Exception {
+		File remote = localRemote("another-config-repo");
+		AtomicInteger lookups = new AtomicInteger();
+		JGitEnvironmentRepository repository = new JGitEnvironmentRepository(this.environment,
+				new JGitEnvironmentProperties());
+		repository.setGitFactory(new JGitEnvironmentRepository.JGitFactory() {
+			@Override
+			public Git getGitByOpen(File file) throws IOException {
+				Git git = spy(super.getGitByOpen(file));
+				Mockito.doAnswer(invocation -> {
+					lookups.incrementAndGet();
+					return invocation.callRealMethod();
+				}).when(git).branchList();
+				return git;
+			}
+		});
+		repository.setUri(remote.getAbsolutePath());
+		repository.setBasedir(this.basedir);
+		String version = repository.getLocations("bar", "staging", "master").getVersion();
+		// index written in the same tick as its snapshot is always scanned
+		assertThat(new File(this.basedir, ".git/index").setLastModified(System.currentTimeMillis() - 10000))
+				.isTrue();
+		repository.getLocations("bar", "staging", "master");
+		lookups.set(0);
+		assertThat(repository.getLocations("bar", "staging", "master").getVersion()).isEqualTo(version);
+		assertThat(lookups.get()).isEqualTo(0);
+		commit(remote, "bar.properties", "foo: baz");
+		assertThat(repository.getLocations("bar", "staging", "master").getVersion()).isNotEqualTo(version);
+		assertThat(lookups.get()).isPositive();
+	}
+
+	@Test
+	public void cleanWorkingTreeIsNotScannedAgain() throws Exception {
+		File remote = localRemote("another-config-repo");
+		AtomicInteger scans = new AtomicInteger();
+		JGitEnvironmentRepository repository = new JGitEnvironmentRepository(this.environment,
+				new JGitEnvironmentProperties());
+		repository.setGitFactory(new JGitEnvironmentRepository.JGitFactory() {
+			@Override
+			public Git getGitByOpen(File file) throws IOException {
+				Git git = spy(super.getGitByOpen(file));
+				Mockito.doAnswer(invocation -> {
+					scans.incrementAndGet();
+					return invocation.callRealMethod();
+				}).when(git).status();
+				return git;
+			}
+		});
+		repository.setUri(remote.getAbsolutePath());
+		repository.setBasedir(this.basedir);
+		repository.findOne("bar", "staging", "master");
+		commit(remote, "bar.properties", "foo: baz");
+		Environment environment = repository.findOne("bar", "staging", "master");
+		assertThat(environment.getPropertySources().get(0).getSource().get("foo")).isEqualTo("baz");
+		// as if a while had passed, index written in the same tick as its snapshot is
+		// always scanned
+		File index = new File(this.basedir, ".git/index");
+		assertThat(index.setLastModified(System.currentTimeMillis() - 10000)).isTrue();
+		repository.findOne("bar", "staging", "master");
+		scans.set(0);
+		repository.findOne("bar", "staging", "master");
+		repository.findOne("bar", "staging", "master");
+		assertThat(scans.get()).isEqualTo(0);
+		// someone else staged a change
+		Files.write(new File(this.basedir, "bar.properties").toPath(), "foo: local".getBytes(StandardCharsets.UTF_8));
+		try (Git git = Git.open(this.basedir)) {
+			git.add().addFilepattern("bar.properties").call();
+		}
+		repository.findOne("bar", "staging", "master");
+		assertThat(scans.get()).isPositive();
+	}
+
+	@Test
+	public void maintenancePacksObjectsAndRefs() throws Exception {
+		File remote = localRemote("another-config-repo");
+		JGitEnvironmentRepository repository = new JGitEnvironmentRepository(this.environment,
+				new JGitEnvironmentProperties());
+		repository.setUri(remote.getAbsolutePath());
+		repository.setBasedir(this.basedir);
+		repository.setMaintenanceRate(3600);
+		repository.findOne("bar", "staging", "master");
+		commit(remote, "bar.properties", "foo: baz");
+		repository.findOne("bar", "staging", "master");
+		assertThat(repository.maintainIfDue()).as("nothing to collect right after cloning").isEqualTo(0);
+		assertThat(repository.maintain()).isTrue();
+		assertThat(repository.getMaintenanceCount()).isEqualTo(1);
+		assertThat(repository.getMaintenanceStatistic("numberOfLooseObjects")).isEqualTo(0);
+		assertThat(repository.getMaintenanceStatistic("numberOfPackedObjects")).isPositive();
+		assertThat(repository.getMaintenanceStatistic("numberOfLooseRefs")).as("only HEAD").isEqualTo(1);
+		assertThat(repository.getMaintenanceStatistic("numberOfPackedRefs")).isPositive();
+		assertThat(repository.maintainIfDue()).isEqualTo(0);
+		Environment environment = repository.findOne("bar", "staging", "master");
+		assertThat(environment.getPropertySources().get(0).getSource().get("foo")).isEqualTo("baz");
+	}
+
+	@Test
+	public void checkedOutLabelIsServedWhileOtherLabelWaitsForMaintenance() throws Exception {
+		File remote = localRemote("another-config-repo");
+		try (Git git = Git.open(remote)) {
+			git.branchCreate().setName("other").call();
+		}
+		CountDownLatch collecting = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		JGitEnvironmentRepository repository = new JGitEnvironmentRepository(this.environment,
+				new JGitEnvironmentProperties());
+		repository.setGitFactory(new JGitEnvironmentRepository.JGitFactory() {
+			@Override
+			public Git getGitByOpen(File file) throws IOException {
+				Git git = spy(super.getGitByOpen(file));
+				Mockito.doAnswer(invocation -> {
+					collecting.countDown();
+					release.await();
+					return invocation.callRealMethod();
+				}).when(git).gc();
+				return git;
+			}
+		});
+		repository.setUri(remote.getAbsolutePath());
+		repository.setBasedir(this.basedir);
+		String version = repository.findOne("bar", "staging", "master").getVersion();
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+		try {
+			Future<Boolean> maintenance = executor.submit(repository::maintain);
+			collecting.await();
+			Future<Environment> other = executor.submit(() -> repository.findOne("bar", "staging", "other"));
+			// the other label is waiting for the maintenance to finish
+			Thread.sleep(200);
+			assertThat(other.isDone()).isFalse();
+			Future<Environment> checkedOut = executor.submit(() -> repository.findOne("bar", "staging", "master"));
+			assertThat(checkedOut.get(5, TimeUnit.SECONDS).getVersion()).isEqualTo(version);
+			assertThat(other.isDone()).isFalse();
+			release.countDown();
+			assertThat(maintenance.get(10, TimeUnit.SECONDS)).isTrue();
+			assertThat(other.get(10, TimeUnit.SECONDS).getLabel()).isEqualTo("other");
+		}
+		finally {
+			release.countDown();
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void maintenanceLeavesLocalRepositoriesAlone() {
+		this.repository.setMaintenanceRate(1);
+		this.repository.findOne("bar", "staging", "master");
+		assertThat(this.repository.maintain()).isFalse();
+		assertThat(this.repository.getMaintenanceCount()).isEqualTo(0);
+	}
+
+	private static File localRemote(String name) throws IOException {
+		// a plain path rather than a file: uri, so that it is cloned from
+		return new File(ConfigServerTestUtils.prepareLocalRepo(name).substring("file:".length())).getAbsoluteFile();
+	}
+
+	private static void commit(File repository, String path, String content) throws Exception {
+		File file = new File(repository, path);
+		file.getParentFile().mkdirs();
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+		try (Git git = Git.open(repository)) {
+			git.add().addFilepattern(path).call();
+			git.commit().setMessage("Update " + path).call();
+		}
+	}
+
 	@Test
 	public void nested() throws IOException {
 		String uri = ConfigServerTestUtils.prepareLocalRepo("another-config-repo");
@@ -16,8 +16,16 @@
 
 package org.springframework.cloud.config.server.environment;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.eclipse.jgit.junit.MockSystemReader;
 import org.eclipse.jgit.util.SystemReader;
@@ -113,6 +121,60 @@ public class MultipleJGitEnvironmentApplicationPlaceholderRepositoryTests {
 		assertVersion(environment);
 	}
 
+	@Test
+	public void leastRecentlyUsedRepositoryIsEvicted() {
+		this.repository.setMaxPlaceholderRepositories(1);
+		PatternMatchingJGitEnvironmentRepository template = this.repository.getRepos().get("templates");
+		JGitEnvironmentRepository first = this.repository.getRepository(template, "test1-config-repo", "staging",
+				"master");
+		first.getBasedir().mkdirs();
+		assertThat(this.repository.getRepository(template, "test1-config-repo", "staging", "master")).isSameAs(first);
+		this.repository.findOne("test2-config-repo", "staging", "master");
+		assertThat(this.repository.getPlaceholderRepositoryCount()).isEqualTo(1);
+		assertThat(this.repository.getPlaceholderRepositoryEvictions()).isEqualTo(1);
+		assertThat(first.getBasedir()).doesNotExist();
+		assertThat(this.repository.getRepository(template, "test1-config-repo", "staging", "master"))
+				.isNotSameAs(first);
+	}
+
+	@Test
+	public void evictedRepositoryKeepsCloneUntilReleased() {
+		this.repository.setMaxPlaceholderRepositories(1);
+		PatternMatchingJGitEnvironmentRepository template = this.repository.getRepos().get("templates");
+		JGitEnvironmentRepository first = this.repository.useRepository(template, "test1-config-repo", "staging",
+				"master");
+		first.getBasedir().mkdirs();
+		this.repository.findOne("test2-config-repo", "staging", "master");
+		assertThat(this.repository.getPlaceholderRepositoryEvictions()).isEqualTo(1);
+		assertThat(first.getBasedir()).exists();
+		this.repository.release(first);
+		assertThat(first.getBasedir()).doesNotExist();
+		assertThat(this.repository.getRepository(template, "test1-config-repo", "staging", "master"))
+				.isNotSameAs(first);
+	}
+
+	@Test
+	public void concurrentRequestsShareRepository() throws Exception {
+		PatternMatchingJGitEnvironmentRepository template = this.repository.getRepos().get("templates");
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<JGitEnvironmentRepository>> results = new ArrayList<>();
+		for (int i = 0; i < 8; i++) {
+			results.add(executor.submit(() -> {
+				start.await();
+				return this.repository.getRepository(template, "test1-config-repo", "staging", "master");
+			}));
+		}
+		start.countDown();
+		Set<JGitEnvironmentRepository> repositories = new HashSet<>();
+		for (Future<JGitEnvironmentRepository> result : results) {
+			repositories.add(result.get());
+		}
+		executor.shutdown();
+		assertThat(repositories).hasSize(1);
+		assertThat(this.repository.getPlaceholderRepositoryCount()).isEqualTo(1);
+	}
+
 	@Test
 	@Ignore("not supported yet (placeholders in search paths with lists)")
 	public void profilesInSearchPaths() {
@@ -21,7 +21,10 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import org.eclipse.jgit.api.TransportConfigCallback;
 import org.eclipse.jgit.junit.MockSystemReader;
@@ -160,6 +163,53 @@ public class MultipleJGitEnvironmentRepositoryTests {
 		assertThat(this.repository.getRepos().get("test1").getBasedir().toString()).contains("/test1");
 	}
 
+	@Test
+	public void changedPatternIsRouted() {
+		assertThat(this.repository.findOne("test1-svc", "staging", "master").getPropertySources().get(0).getName())
+				.isEqualTo(getUri("*test1*") + "/test1-svc.properties");
+		this.repository.getRepos().get("test1").setPattern(new String[] { "other*" });
+		assertThat(this.repository.findOne("test1-svc", "staging", "master").getPropertySources().get(0).getName())
+				.isEqualTo(this.repository.getUri() + "/application.yml");
+	}
+
+	@Test
+	public void patternRepositoriesAreInitializedInParallel() throws Exception {
+		CountDownLatch started = new CountDownLatch(3);
+		Map<String, PatternMatchingJGitEnvironmentRepository> repos = new LinkedHashMap<>();
+		for (String name : new String[] { "one", "two", "three" }) {
+			PatternMatchingJGitEnvironmentRepository repo = new PatternMatchingJGitEnvironmentRepository() {
+				@Override
+				public synchronized void afterPropertiesSet() throws Exception {
+					started.countDown();
+					// only returns if the others are being initialized at the same time
+					if (!started.await(5, TimeUnit.SECONDS)) {
+						throw new IllegalStateException("Not initialized in parallel: " + getName());
+					}
+					super.afterPropertiesSet();
+				}
+			};
+			repo.setUri(this.repository.getUri());
+			repos.put(name, repo);
+		}
+		this.repository.setRepos(repos);
+		this.repository.setCloneOnStartParallelism(3);
+		this.repository.afterPropertiesSet();
+		assertThat(started.getCount()).isZero();
+		assertThat(repos.get("two").getName()).isEqualTo("two");
+	}
+
+	@Test
+	public void parallelInitializationFailsWithFirstError() throws Exception {
+		Map<String, PatternMatchingJGitEnvironmentRepository> repos = new LinkedHashMap<>();
+		repos.put("good", createRepository("good", "good", this.repository.getUri()));
+		repos.put("bad", new PatternMatchingJGitEnvironmentRepository());
+		this.repository.setRepos(repos);
+		this.repository.setCloneOnStartParallelism(2);
+		this.exception.expect(IllegalStateException.class);
+		this.exception.expectMessage("You need to configure a uri for the git repository");
+		this.repository.afterPropertiesSet();
+	}
+
 	@Test
 	public void mappingRepo() {
 		Environment environment = this.repository.findOne("test1-svc", "staging", "master");
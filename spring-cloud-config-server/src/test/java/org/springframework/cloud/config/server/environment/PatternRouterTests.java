@@ -0,0 +1,76 @@
+/*
+ * Copyright 2013-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.config.server.environment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import org.springframework.util.PatternMatchUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PatternRouterTests {
+
+	@Test
+	public void exactAndWildcardPatterns() {
+		List<String[]> targets = Arrays.asList(new String[] { "foo/dev" }, new String[] { "foo*" },
+				new String[] { "*/prod" }, new String[] { "bar/*", "baz/*" }, new String[0]);
+		PatternRouter<String[]> router = new PatternRouter<>(targets, patterns -> patterns);
+		assertThat(router.match("foo/dev")).containsExactly(targets.get(0), targets.get(1));
+		assertThat(router.match("foo/prod")).containsExactly(targets.get(1), targets.get(2));
+		assertThat(router.match("baz/dev", "other/prod")).containsExactly(targets.get(2), targets.get(3));
+		assertThat(router.match("other/dev")).isEmpty();
+	}
+
+	@Test
+	public void sameAnswersAsSimpleMatch() {
+		Random random = new Random(0);
+		String[] words = { "app", "api", "a", "dev", "prod", "*", "**", "-", "/" };
+		List<String[]> targets = new ArrayList<>();
+		for (int i = 0; i < 200; i++) {
+			String[] patterns = new String[1 + random.nextInt(3)];
+			for (int j = 0; j < patterns.length; j++) {
+				patterns[j] = words(random, words);
+			}
+			targets.add(patterns);
+		}
+		PatternRouter<String[]> router = new PatternRouter<>(targets, patterns -> patterns);
+		for (int i = 0; i < 500; i++) {
+			String candidate = words(random, words).replace("*", "");
+			List<String[]> expected = new ArrayList<>();
+			for (String[] patterns : targets) {
+				if (PatternMatchUtils.simpleMatch(patterns, candidate)) {
+					expected.add(patterns);
+				}
+			}
+			assertThat(router.match(candidate)).as(candidate).containsExactlyElementsOf(expected);
+		}
+	}
+
+	private static String words(Random random, String[] words) {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < 1 + random.nextInt(4); i++) {
+			builder.append(words[random.nextInt(words.length)]);
+		}
+		return builder.toString();
+	}
+
+}
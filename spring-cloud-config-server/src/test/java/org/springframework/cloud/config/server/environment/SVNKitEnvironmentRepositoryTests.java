@@ -18,10 +18,17 @@ package org.springframework.cloud.config.server.environment;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 
 import org.eclipse.jgit.util.FileUtils;
 import org.junit.Before;
 import org.junit.Test;
+import org.tmatesoft.svn.core.SVNURL;
+import org.tmatesoft.svn.core.wc2.SvnCheckout;
+import org.tmatesoft.svn.core.wc2.SvnCommit;
+import org.tmatesoft.svn.core.wc2.SvnOperationFactory;
+import org.tmatesoft.svn.core.wc2.SvnTarget;
 
 import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
 import org.springframework.boot.builder.SpringApplicationBuilder;
@@ -127,6 +134,44 @@ public class SVNKitEnvironmentRepositoryTests {
 		this.vanilla();
 	}
 
+	@Test
+	public void refreshRateServesLastRevision() throws Exception {
+		this.repository.setBasedir(this.basedir);
+		this.repository.setRefreshRate(3600);
+		Environment environment = this.findOne();
+		assertThat(this.repository.updateIfChanged()).isFalse();
+		commit("trunk/bar.properties", "foo: changed");
+		// served without going to the server
+		assertThat(this.findOne().getVersion()).isEqualTo(environment.getVersion());
+		assertThat(this.repository.updateIfChanged()).isTrue();
+		Environment updated = this.findOne();
+		assertThat(updated.getVersion()).isNotEqualTo(environment.getVersion());
+		assertThat(updated.getPropertySources().get(0).getSource().get("foo")).isEqualTo("changed");
+		this.repository.destroy();
+	}
+
+	private void commit(String path, String content) throws Exception {
+		File workingCopy = new File("target/svn-working-copy");
+		if (workingCopy.exists()) {
+			FileUtils.delete(workingCopy, FileUtils.RECURSIVE | FileUtils.RETRY);
+		}
+		SvnOperationFactory factory = new SvnOperationFactory();
+		try {
+			SvnCheckout checkout = factory.createCheckout();
+			checkout.setSource(SvnTarget.fromURL(SVNURL.parseURIEncoded(this.repository.getUri())));
+			checkout.setSingleTarget(SvnTarget.fromFile(workingCopy));
+			checkout.run();
+			Files.write(new File(workingCopy, path).toPath(), content.getBytes(StandardCharsets.UTF_8));
+			SvnCommit commit = factory.createCommit();
+			commit.setSingleTarget(SvnTarget.fromFile(workingCopy));
+			commit.setCommitMessage("Change " + path);
+			commit.run();
+		}
+		finally {
+			factory.dispose();
+		}
+	}
+
 	private Environment findOne() {
 		return this.repository.findOne("bar", "staging", "trunk");
 	}
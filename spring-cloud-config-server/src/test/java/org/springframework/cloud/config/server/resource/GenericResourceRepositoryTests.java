@@ -16,21 +16,44 @@
 
 package org.springframework.cloud.config.server.resource;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jgit.api.Git;
+
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
 
 import org.springframework.boot.WebApplicationType;
 import org.springframework.boot.builder.SpringApplicationBuilder;
 import org.springframework.boot.test.system.OutputCaptureRule;
+import org.springframework.cloud.config.server.environment.JGitEnvironmentProperties;
+import org.springframework.cloud.config.server.environment.JGitEnvironmentRepository;
 import org.springframework.cloud.config.server.environment.NativeEnvironmentProperties;
 import org.springframework.cloud.config.server.environment.NativeEnvironmentRepository;
 import org.springframework.cloud.config.server.environment.NativeEnvironmentRepositoryTests;
+import org.springframework.cloud.config.server.environment.SearchPathLocator;
 import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.core.io.Resource;
+import org.springframework.util.StreamUtils;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.hamcrest.Matchers.containsString;
 
 /**
@@ -45,6 +68,9 @@ public class GenericResourceRepositoryTests {
 	@Rule
 	public ExpectedException exception = ExpectedException.none();
 
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
 	private GenericResourceRepository repository;
 
 	private ConfigurableApplicationContext context;
@@ -124,6 +150,105 @@ public class GenericResourceRepositoryTests {
 		this.repository.findOne("blah", "local", "master", file);
 	}
 
+	@Test
+	public void indexesResourcesPerVersion() throws Exception {
+		File dir = this.folder.newFolder();
+		File file = new File(dir, "foo.txt");
+		assertThat(file.createNewFile()).isTrue();
+		String[] version = new String[] { "v1" };
+		GenericResourceRepository repository = new GenericResourceRepository(
+				(application, profile, label) -> new SearchPathLocator.Locations(application, profile, label,
+						version[0], new String[] { dir.toURI().toString() }));
+		repository.setResourceLoader(new DefaultResourceLoader());
+		assertThat(repository.findOne("blah", "default", "master", "foo.txt").exists()).isTrue();
+
+		// Same version: a file deleted since it was indexed is not served
+		assertThat(file.delete()).isTrue();
+		assertThatThrownBy(() -> repository.findOne("blah", "default", "master", "foo.txt"))
+				.isInstanceOf(NoSuchResourceException.class);
+
+		// New version: the index is rebuilt
+		assertThat(file.createNewFile()).isTrue();
+		version[0] = "v2";
+		assertThat(repository.findOne("blah", "default", "master", "foo.txt").exists()).isTrue();
+	}
+
+	@Test
+	public void missesAreNotIndexed() throws Exception {
+		File dir = this.folder.newFolder();
+		GenericResourceRepository repository = new GenericResourceRepository(
+				(application, profile, label) -> new SearchPathLocator.Locations(application, profile, label, "v1",
+						new String[] { dir.toURI().toString() }));
+		repository.setResourceLoader(new DefaultResourceLoader());
+		assertThatThrownBy(() -> repository.findOne("blah", "default", "master", "foo.txt"))
+				.isInstanceOf(NoSuchResourceException.class);
+		assertThat(new File(dir, "foo.txt").createNewFile()).isTrue();
+		assertThat(repository.findOne("blah", "default", "master", "foo.txt").exists()).isTrue();
+	}
+
+	@Test
+	public void resourceOfLabelKeepsContentWhenAnotherLabelIsCheckedOut() throws Exception {
+		GenericResourceRepository repository = twoLabelRepository();
+		Resource master = repository.findOne("blah", "default", "master", "foo.txt");
+		Resource other = repository.findOne("blah", "default", "other", "foo.txt");
+		assertThat(read(master)).isEqualTo("master");
+		assertThat(read(other)).isEqualTo("other");
+		assertThat(master.contentLength()).isEqualTo("master".length());
+	}
+
+	@Test
+	public void concurrentLookupsOfTwoLabelsReadTheirOwnContent() throws Exception {
+		GenericResourceRepository repository = twoLabelRepository();
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (String label : new String[] { "master", "other" }) {
+				futures.add(executor.submit(() -> {
+					for (int i = 0; i < 20; i++) {
+						assertThat(read(repository.findOne("blah", "default", label, "foo.txt"))).isEqualTo(label);
+					}
+					return null;
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get(60, TimeUnit.SECONDS);
+			}
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private GenericResourceRepository twoLabelRepository() throws Exception {
+		File remote = this.folder.newFolder("remote");
+		try (Git git = Git.init().setDirectory(remote).call()) {
+			commit(git, "master");
+			git.checkout().setCreateBranch(true).setName("other").call();
+			commit(git, "other");
+			git.checkout().setName("master").call();
+		}
+		JGitEnvironmentRepository environmentRepository = new JGitEnvironmentRepository(new StandardEnvironment(),
+				new JGitEnvironmentProperties());
+		environmentRepository.setUri(remote.getAbsolutePath());
+		environmentRepository.setBasedir(this.folder.newFolder("basedir"));
+		GenericResourceRepository repository = new GenericResourceRepository(environmentRepository);
+		repository.setResourceLoader(new DefaultResourceLoader());
+		return repository;
+	}
+
+	private static void commit(Git git, String content) throws Exception {
+		Files.write(new File(git.getRepository().getWorkTree(), "foo.txt").toPath(),
+				content.getBytes(StandardCharsets.UTF_8));
+		git.add().addFilepattern("foo.txt").call();
+		git.commit().setMessage("Update foo.txt").call();
+	}
+
+	private static String read(Resource resource) throws IOException {
+		try (InputStream is = resource.getInputStream()) {
+			return StreamUtils.copyToString(is, StandardCharsets.UTF_8);
+		}
+	}
+
 	private void testInvalidPath(String label) {
 		this.exception.expect(NoSuchResourceException.class);
 		this.nativeRepository.setSearchLocations("file:./src/test/resources/test/local");
@@ -50,6 +50,7 @@ import org.springframework.util.MimeTypeUtils;
 import org.springframework.web.context.WebApplicationContext;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
@@ -87,12 +88,13 @@ public class ResourceControllerIntegrationTests {
 	@Test
 	public void environmentNoLabel() throws Exception {
 		when(this.repository.findOne("foo", "default", "master", false)).thenReturn(new Environment("foo", "default"));
-		when(this.resources.findOne("foo", "default", "master", "foo.txt"))
-				.thenReturn(new ClassPathResource("resource-controller/foo.txt"));
-		this.mvc.perform(MockMvcRequestBuilders.get("/foo/default/master/foo.txt"))
-				.andExpect(MockMvcResultMatchers.status().isOk());
+		when(this.resources.findOne("foo", "default", "master", "placeholder.txt"))
+				.thenReturn(new ClassPathResource("resource-controller/placeholder.txt"));
+		this.mvc.perform(MockMvcRequestBuilders.get("/foo/default/master/placeholder.txt"))
+				.andExpect(MockMvcResultMatchers.status().isOk())
+				.andExpect(MockMvcResultMatchers.content().string("hello ${foo}"));
 		verify(this.repository).findOne("foo", "default", "master", false);
-		verify(this.resources).findOne("foo", "default", "master", "foo.txt");
+		verify(this.resources).findOne("foo", "default", "master", "placeholder.txt");
 	}
 
 	@Test
@@ -103,7 +105,7 @@ public class ResourceControllerIntegrationTests {
 				.thenReturn(new ClassPathResource("resource-controller/foo.txt"));
 		this.mvc.perform(MockMvcRequestBuilders.get("/foo/default/master/foo.txt"))
 				.andExpect(MockMvcResultMatchers.status().isOk());
-		verify(this.repository).findOne("foo", "default", "master", false);
+		verify(this.repository, never()).findOne("foo", "default", "master", false);
 		verify(this.resources).findOne("foo", "default", "master", "foo.txt");
 	}
 
@@ -117,7 +119,7 @@ public class ResourceControllerIntegrationTests {
 		ResponseEntity<String> response = new TestRestTemplate()
 				.getForEntity("http://localhost:" + port + "/foo/default/master/foo.txt", String.class);
 		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
-		verify(this.repository).findOne("foo", "default", "master", false);
+		verify(this.repository, never()).findOne("foo", "default", "master", false);
 		verify(this.resources).findOne("foo", "default", "master", "foo.txt");
 	}
 
@@ -129,7 +131,7 @@ public class ResourceControllerIntegrationTests {
 				.thenReturn(new ClassPathResource("resource-controller/foo.txt"));
 		this.mvc.perform(MockMvcRequestBuilders.get("/foo/default/foo.txt").param("useDefaultLabel", ""))
 				.andExpect(MockMvcResultMatchers.status().isOk());
-		verify(this.repository).findOne("foo", "default", null, false);
+		verify(this.repository, never()).findOne("foo", "default", null, false);
 		verify(this.resources).findOne("foo", "default", null, "foo.txt");
 	}
 
@@ -143,7 +145,7 @@ public class ResourceControllerIntegrationTests {
 		ResponseEntity<String> response = new TestRestTemplate()
 				.getForEntity("http://localhost:" + port + "/foo/default/foo.txt?useDefaultLabel", String.class);
 		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
-		verify(this.repository).findOne("foo", "default", null, false);
+		verify(this.repository, never()).findOne("foo", "default", null, false);
 		verify(this.resources).findOne("foo", "default", null, "foo.txt");
 	}
 
@@ -155,10 +157,37 @@ public class ResourceControllerIntegrationTests {
 		this.mvc.perform(MockMvcRequestBuilders.get("/foo/default/foo.txt").param("useDefaultLabel", "")
 				.header(HttpHeaders.ACCEPT, MimeTypeUtils.APPLICATION_OCTET_STREAM_VALUE))
 				.andExpect(MockMvcResultMatchers.status().isOk());
-		verify(this.repository).findOne("foo", "default", null);
+		verify(this.repository, never()).findOne("foo", "default", null);
 		verify(this.resources).findOne("foo", "default", null, "foo.txt");
 	}
 
+	@Test
+	public void binaryResourceRange() throws Exception {
+		when(this.resources.findOne("foo", "default", "master", "foo.txt"))
+				.thenReturn(new ClassPathResource("resource-controller/foo.txt"));
+		this.mvc.perform(MockMvcRequestBuilders.get("/foo/default/master/foo.txt")
+				.header(HttpHeaders.ACCEPT, MimeTypeUtils.APPLICATION_OCTET_STREAM_VALUE)
+				.header(HttpHeaders.RANGE, "bytes=1-3")).andExpect(MockMvcResultMatchers.status().isPartialContent())
+				.andExpect(MockMvcResultMatchers.header().string(HttpHeaders.CONTENT_RANGE, "bytes 1-3/5"))
+				.andExpect(MockMvcResultMatchers.header().exists(HttpHeaders.ETAG))
+				.andExpect(MockMvcResultMatchers.content().string("ell"));
+	}
+
+	@Test
+	public void binaryResourceNotModified() throws Exception {
+		when(this.resources.findOne("foo", "default", "master", "foo.txt"))
+				.thenReturn(new ClassPathResource("resource-controller/foo.txt"));
+		String etag = this.mvc
+				.perform(MockMvcRequestBuilders.get("/foo/default/master/foo.txt").header(HttpHeaders.ACCEPT,
+						MimeTypeUtils.APPLICATION_OCTET_STREAM_VALUE))
+				.andExpect(MockMvcResultMatchers.status().isOk())
+				.andExpect(MockMvcResultMatchers.header().longValue(HttpHeaders.CONTENT_LENGTH, 5)).andReturn()
+				.getResponse().getHeader(HttpHeaders.ETAG);
+		this.mvc.perform(MockMvcRequestBuilders.get("/foo/default/master/foo.txt")
+				.header(HttpHeaders.ACCEPT, MimeTypeUtils.APPLICATION_OCTET_STREAM_VALUE)
+				.header(HttpHeaders.IF_NONE_MATCH, etag)).andExpect(MockMvcResultMatchers.status().isNotModified());
+	}
+
 	@SpringBootConfiguration
 	@EnableAutoConfiguration
 	public static class ControllerConfiguration {
@@ -16,6 +16,8 @@
 
 package org.springframework.cloud.config.server.resource;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.Map;
 
 import org.junit.After;
@@ -31,8 +33,11 @@ import org.springframework.cloud.config.server.environment.NativeEnvironmentProp
 import org.springframework.cloud.config.server.environment.NativeEnvironmentRepository;
 import org.springframework.cloud.config.server.environment.NativeEnvironmentRepositoryTests;
 import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.io.Resource;
+import org.springframework.http.ResponseEntity;
 import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.StreamUtils;
 import org.springframework.web.context.request.ServletWebRequest;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -98,7 +103,7 @@ public class ResourceControllerTests {
 	@Test
 	public void templateReplacementNotForBinary() throws Exception {
 		this.environmentRepository.setSearchLocations("classpath:/test");
-		String resource = new String(this.controller.binary("foo", "bar", "dev", "template.json"));
+		String resource = new String(read(this.controller.binary("foo", "bar", "dev", "template.json")));
 		assertThat(replaceNewLines(resource)).matches("\\{\\s*\"foo\": \"\\$\\{foo\\}\"\\s*\\}")
 				.as("Wrong content: " + resource);
 	}
@@ -225,35 +230,35 @@ public class ResourceControllerTests {
 	@Test
 	public void applicationAndLabelPlaceholdersWithoutSlashForBinary() throws Exception {
 		this.environmentRepository.setSearchLocations("classpath:/test/{application}/{label}");
-		byte[] resource = this.controller.binary("dev", "bar", "spam", "foo.txt");
+		byte[] resource = read(this.controller.binary("dev", "bar", "spam", "foo.txt"));
 		assertThat(new String(resource)).isEqualToIgnoringNewLines("foo: dev_bar/spam");
 	}
 
 	@Test
 	public void applicationPlaceholderWithSlashForBinary() throws Exception {
 		this.environmentRepository.setSearchLocations("classpath:/test/{application}");
-		byte[] resource = this.controller.binary("dev(_)spam", "bar", "", "foo.txt");
+		byte[] resource = read(this.controller.binary("dev(_)spam", "bar", "", "foo.txt"));
 		assertThat(new String(resource)).isEqualToIgnoringNewLines("foo: dev_bar/spam");
 	}
 
 	@Test
 	public void applicationPlaceholderWithSlashForBinaryNullLabel() throws Exception {
 		this.environmentRepository.setSearchLocations("classpath:/test/{application}");
-		byte[] resource = this.controller.binary("dev(_)spam", "bar", null, "foo.txt");
+		byte[] resource = read(this.controller.binary("dev(_)spam", "bar", null, "foo.txt"));
 		assertThat(new String(resource)).isEqualToIgnoringNewLines("foo: dev_bar/spam");
 	}
 
 	@Test
 	public void labelPlaceholderWithSlashForBinary() throws Exception {
 		this.environmentRepository.setSearchLocations("classpath:/test/{label}");
-		byte[] resource = this.controller.binary("dev", "bar", "dev(_)spam", "foo.txt");
+		byte[] resource = read(this.controller.binary("dev", "bar", "dev(_)spam", "foo.txt"));
 		assertThat(new String(resource)).isEqualToIgnoringNewLines("foo: dev_bar/spam");
 	}
 
 	@Test
 	public void profilePlaceholderForBinaryNullLabel() throws Exception {
 		this.environmentRepository.setSearchLocations("classpath:/test/{profile}");
-		byte[] resource = this.controller.binary("bar", "dev", null, "spam/foo.txt");
+		byte[] resource = read(this.controller.binary("bar", "dev", null, "spam/foo.txt"));
 		assertThat(new String(resource)).isEqualToIgnoringNewLines("foo: dev_bar/spam");
 	}
 
@@ -271,14 +276,14 @@ public class ResourceControllerTests {
 	@Test
 	public void labelWithSlashForBinary() throws Exception {
 		this.environmentRepository.setSearchLocations("classpath:/test");
-		byte[] resource = this.controller.binary("foo", "bar", "dev(_)spam", "foo.txt");
+		byte[] resource = read(this.controller.binary("foo", "bar", "dev(_)spam", "foo.txt"));
 		assertThat(new String(resource)).isEqualToIgnoringNewLines("foo: dev_bar/spam");
 	}
 
 	@Test
 	public void resourceWithSlashForBinary() throws Exception {
 		this.environmentRepository.setSearchLocations("classpath:/test");
-		byte[] resource = this.controller.binary("foo", "bar", "dev", "spam/foo.txt");
+		byte[] resource = read(this.controller.binary("foo", "bar", "dev", "spam/foo.txt"));
 		assertThat(new String(resource)).isEqualToIgnoringNewLines("foo: dev_bar/spam");
 	}
 
@@ -288,10 +293,16 @@ public class ResourceControllerTests {
 		MockHttpServletRequest request = new MockHttpServletRequest();
 		ServletWebRequest webRequest = new ServletWebRequest(request, new MockHttpServletResponse());
 		request.setRequestURI("/foo/bar/dev/" + "spam/foo.txt");
-		byte[] resource = this.controller.binary("foo", "bar", "dev", webRequest);
+		byte[] resource = read(this.controller.binary("foo", "bar", "dev", webRequest));
 		assertThat(new String(resource)).isEqualToIgnoringNewLines("foo: dev_bar/spam");
 	}
 
+	private byte[] read(ResponseEntity<Resource> entity) throws IOException {
+		try (InputStream is = entity.getBody().getInputStream()) {
+			return StreamUtils.copyToByteArray(is);
+		}
+	}
+
 	private String replaceNewLines(String text) {
 		return text.replace("\n", "").replace("\t", "");
 	}
@@ -302,7 +313,7 @@ public class ResourceControllerTests {
 		MockHttpServletRequest request = new MockHttpServletRequest();
 		ServletWebRequest webRequest = new ServletWebRequest(request, new MockHttpServletResponse());
 		request.setRequestURI("/dev/spam/bar/" + "foo.txt");
-		byte[] resource = this.controller.binary("dev/spam", "bar", null, webRequest);
+		byte[] resource = read(this.controller.binary("dev/spam", "bar", null, webRequest));
 		assertThat(new String(resource)).isEqualToIgnoringNewLines("foo: dev_bar/spam");
 	}
 